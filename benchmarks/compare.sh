@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+# Сравнение двух JSON-результатов run.sh: время (или пропускная способность) и аллокации на операцию.
+# Код выхода 1, если какой-то бенчмарк ухудшился больше порога (по умолчанию 10%).
+#   benchmarks/compare.sh benchmarks/results/base.json benchmarks/results/new.json [порог-в-процентах]
+set -euo pipefail
+
+if [ $# -lt 2 ]; then
+    echo "usage: $0 base.json new.json [threshold-percent]" >&2
+    exit 2
+fi
+
+python3 - "$1" "$2" "${3:-10}" <<'PY'
+import json, sys
+
+base_file, new_file, threshold = sys.argv[1], sys.argv[2], float(sys.argv[3])
+
+def load(path):
+    results = {}
+    for r in json.load(open(path)):
+        params = ",".join(f"{k}={v}" for k, v in sorted((r.get("params") or {}).items()))
+        name = r["benchmark"].rsplit(".", 2)[-2] + "." + r["benchmark"].rsplit(".", 1)[-1]
+        # Имена вторичных метрик в старых версиях JMH начинаются с «·»
+        secondary = {k.lstrip("·"): v for k, v in r.get("secondaryMetrics", {}).items()}
+        alloc = secondary.get("gc.alloc.rate.norm", {}).get("score")
+        results[(name, params)] = (r["mode"], r["primaryMetric"]["score"], r["primaryMetric"]["scoreUnit"], alloc)
+    return results
+
+base, new = load(base_file), load(new_file)
+regressions = 0
+print(f"{'benchmark':<70} {'base':>12} {'new':>12} {'delta':>8} {'B/op base':>10} {'B/op new':>10}")
+for key in sorted(base.keys() & new.keys()):
+    mode, b, unit, b_alloc = base[key]
+    _, n, _, n_alloc = new[key]
+    delta = (n - b) / b * 100 if b else 0.0
+    # Для thrpt больше — лучше, для avgt/sample/ss — меньше
+    worse = -delta if mode == "thrpt" else delta
+    mark = " !" if worse > threshold else ""
+    regressions += bool(mark)
+    name = key[0] + (f" [{key[1]}]" if key[1] else "")
+    alloc = lambda v: f"{v:.0f}" if v is not None else "-"
+    print(f"{name:<70} {b:>12.3f} {n:>12.3f} {delta:>+7.1f}% {alloc(b_alloc):>10} {alloc(n_alloc):>10}  {unit}{mark}")
+
+for key in sorted(base.keys() ^ new.keys()):
+    print(f"только в {'base' if key in base else 'new'}: {key[0]} {key[1]}")
+
+sys.exit(1 if regressions else 0)
+PY
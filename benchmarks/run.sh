@@ -0,0 +1,16 @@
+#!/usr/bin/env bash
+# Прогон JMH с профайлерами gc (аллокации на операцию) и stack (горячие методы).
+# Результаты пишутся в benchmarks/results/<дата>-<коммит>.json для сравнения через compare.sh.
+# Аргументы передаются JMH как есть, например: benchmarks/run.sh CardMappingBenchmark -p pageSize=100
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RESULTS=benchmarks/results
+mkdir -p "$RESULTS"
+
+mvn -q install -DskipTests
+mvn -q -f benchmarks/pom.xml package
+
+OUT="$RESULTS/$(date +%Y%m%d-%H%M%S)-$(git rev-parse --short HEAD).json"
+java -jar benchmarks/target/benchmarks.jar -prof gc -prof stack -rf json -rff "$OUT" "$@"
+echo "Результаты: $OUT"
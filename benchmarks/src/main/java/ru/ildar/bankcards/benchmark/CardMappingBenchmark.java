@@ -0,0 +1,87 @@
+package ru.ildar.bankcards.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import ru.ildar.bankcards.dto.response.CardResponseDto;
+import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.repository.CardView;
+import ru.ildar.bankcards.service.CardServiceImpl;
+import ru.ildar.bankcards.util.CardNumberEncryptor;
+import ru.ildar.bankcards.util.CardNumberMasker;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сборка страницы CardResponseDto в CardServiceImpl.getCardsForUser без БД: репозиторий отдаёт
+ * заранее подготовленную страницу CardView, измеряется только маппинг и маскирование номеров.
+ * legacyPercent — доля карт без last4, номер которых приходится расшифровывать
+ * (0 — все карты обработаны CardNumberBackfillJob).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardMappingBenchmark {
+
+    private static final String USERNAME = "benchmark-user";
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    @Param({"0", "100"})
+    private int legacyPercent;
+
+    private CardServiceImpl cardService;
+    private Pageable pageable;
+
+    @Setup
+    public void setup() {
+        CardNumberEncryptor encryptor = new CardNumberEncryptor("benchmarkFingerprintSecret");
+        pageable = PageRequest.of(0, pageSize);
+
+        List<CardView> views = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            String number = String.format("220070%010d", i);
+            boolean legacy = i * 100 < legacyPercent * pageSize;
+            views.add(new CardView(UUID.randomUUID(),
+                    legacy ? null : number.substring(12),
+                    encryptor.encrypt(number),
+                    USERNAME,
+                    LocalDate.of(2030, 1, 31),
+                    CardStatus.ACTIVE,
+                    new BigDecimal("1250.00")));
+        }
+        Page<CardView> page = new PageImpl<>(views, pageable, 1000);
+
+        // Репозиторий-заглушка без Mockito: нужен только метод, который вызывает getCardsForUser
+        CardRepository cardRepository = (CardRepository) Proxy.newProxyInstance(
+                CardRepository.class.getClassLoader(),
+                new Class<?>[]{CardRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findViewsByOwnerUsername")) {
+                        return page;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        cardService = new CardServiceImpl(cardRepository, null, encryptor, new CardNumberMasker(),
+                null, null, null);
+    }
+
+    @Benchmark
+    public Page<CardResponseDto> getCardsForUser() {
+        return cardService.getCardsForUser(USERNAME, pageable);
+    }
+}
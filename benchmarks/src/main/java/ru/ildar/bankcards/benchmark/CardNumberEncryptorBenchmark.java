@@ -0,0 +1,68 @@
+package ru.ildar.bankcards.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ildar.bankcards.util.CardNumberEncryptor;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расшифровка номера карты: прежняя реализация (Cipher.getInstance и SecretKeySpec на каждый вызов)
+ * против переиспользуемого шифра с буферами потока. Аллокации смотреть с профайлером gc:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar CardNumberEncryptorBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardNumberEncryptorBenchmark {
+
+    private static final String CARD_NUMBER = "2200701234567890";
+
+    private CardNumberEncryptor encryptor;
+    private String cipherText;
+    private String legacyCipherText;
+
+    @Setup
+    public void setup() throws Exception {
+        encryptor = new CardNumberEncryptor("benchmarkFingerprintSecret");
+        cipherText = encryptor.encrypt(CARD_NUMBER);
+
+        // Старый формат: фиксированный нулевой IV, без префикса версии
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec("1234567890123456".getBytes(), "AES"),
+                new GCMParameterSpec(128, new byte[12]));
+        legacyCipherText = Base64.getEncoder().encodeToString(cipher.doFinal(CARD_NUMBER.getBytes()));
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        GCMParameterSpec spec = new GCMParameterSpec(128, new byte[12]);
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec("1234567890123456".getBytes(), "AES"), spec);
+        byte[] decoded = Base64.getDecoder().decode(legacyCipherText);
+        return new String(cipher.doFinal(decoded));
+    }
+
+    @Benchmark
+    public String pooledDecrypt() {
+        return encryptor.decrypt(cipherText);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return encryptor.encrypt(CARD_NUMBER);
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return encryptor.fingerprint(CARD_NUMBER);
+    }
+}
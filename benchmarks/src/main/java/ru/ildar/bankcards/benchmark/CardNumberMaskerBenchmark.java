@@ -0,0 +1,40 @@
+package ru.ildar.bankcards.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ildar.bankcards.util.CardNumberMasker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Маскирование номера карты в ответах API: полный номер (карты без last4, после расшифровки)
+ * против маски по сохранённым last4 и выделения last4 из номера с разделителями.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardNumberMaskerBenchmark {
+
+    private final CardNumberMasker masker = new CardNumberMasker();
+
+    private String cardNumber = "2200701234567890";
+    private String formattedNumber = "2200 7012 3456 7890";
+    private String last4 = "7890";
+
+    @Benchmark
+    public String mask() {
+        return masker.mask(cardNumber);
+    }
+
+    @Benchmark
+    public String maskLast4() {
+        return masker.maskLast4(last4);
+    }
+
+    @Benchmark
+    public String lastFour() {
+        return CardNumberMasker.lastFour(formattedNumber);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.ildar.bankcards.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.ildar.bankcards.dto.response.CardResponseDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация ответа листинга карт: Page&lt;CardResponseDto&gt; (GET /api/cards) против
+ * CursorPageDto (GET /api/cards/slice). Page несёт pageable, sort и счётчики,
+ * которые Jackson собирает через геттеры PageImpl на каждый ответ.
+ * ObjectMapper строится Jackson2ObjectMapperBuilder — с теми же модулями, что и в приложении.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardPageSerializationBenchmark {
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private ObjectWriter writer;
+    private Page<CardResponseDto> page;
+    private CursorPageDto<CardResponseDto> cursorPage;
+
+    @Setup
+    public void setup() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writer();
+
+        List<CardResponseDto> cards = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            cards.add(CardResponseDto.builder()
+                    .id(UUID.randomUUID())
+                    .number(String.format("**** **** **** %04d", i))
+                    .ownerUsername("benchmark-user")
+                    .expirationDate(LocalDate.of(2030, 1, 31))
+                    .status(CardStatus.ACTIVE)
+                    .balance(new BigDecimal("1250.00"))
+                    .build());
+        }
+        page = new PageImpl<>(cards, PageRequest.of(0, pageSize), 1000);
+        cursorPage = CursorPageDto.<CardResponseDto>builder()
+                .items(cards)
+                .nextCursor("benchmark-cursor")
+                .build();
+    }
+
+    @Benchmark
+    public byte[] page() throws JsonProcessingException {
+        return writer.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] cursorPage() throws JsonProcessingException {
+        return writer.writeValueAsBytes(cursorPage);
+    }
+}
@@ -0,0 +1,168 @@
+package ru.ildar.bankcards.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.ildar.bankcards.util.CardNumberEncryptor;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расшифровка номера карты и хэш токена так, как их видит запрос на виртуальных потоках:
+ * каждая операция выполняется в новом потоке (поток на запрос).
+ * <ul>
+ *     <li>threadLocal* — прежний кэш в ThreadLocal: в новом потоке он пуст, и Cipher/Mac/MessageDigest
+ *     создаются заново на каждый запрос, а затем выбрасываются вместе с потоком;</li>
+ *     <li>pooledDecrypt — CardNumberEncryptor с ограниченным пулом контекстов;</li>
+ *     <li>perCallDigest — MessageDigest.getInstance на каждый вызов, как в JwtTokenProvider;</li>
+ *     <li>baseline — пустая задача: стоимость запуска потока, которую нужно вычесть из остальных.</li>
+ * </ul>
+ * Виртуальные потоки есть начиная с Java 21; на Java 17 задачи запускаются в новых платформенных потоках
+ * (для ThreadLocal это то же самое — новый поток без значений), абсолютные времена при этом больше:
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar CryptoOnVirtualThreadsBenchmark -t 8
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CryptoOnVirtualThreadsBenchmark {
+
+    private static final String CARD_NUMBER = "2200701234567890";
+    private static final String TOKEN = "eyJhbGciOiJIUzI1NiJ9." + "a".repeat(180) + ".signature";
+    private static final SecretKey KEY = new SecretKeySpec("1234567890123456".getBytes(StandardCharsets.US_ASCII), "AES");
+    private static final SecretKey FINGERPRINT_KEY =
+            new SecretKeySpec("benchmarkFingerprintSecret".getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+
+    // Прежняя реализация: Cipher и Mac создаются при первом обращении потока
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(FINGERPRINT_KEY);
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private ExecutorService threadPerTask;
+    private CardNumberEncryptor encryptor;
+    private String cipherText;
+    private byte[] decoded;
+
+    @Setup
+    public void setup() {
+        threadPerTask = threadPerTaskExecutor();
+        encryptor = new CardNumberEncryptor("benchmarkFingerprintSecret");
+        cipherText = encryptor.encrypt(CARD_NUMBER);
+        decoded = Base64.getDecoder().decode(cipherText.substring("v2:".length()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        threadPerTask.shutdown();
+    }
+
+    @Benchmark
+    public Object baseline() throws Exception {
+        return threadPerTask.submit(() -> CARD_NUMBER).get();
+    }
+
+    @Benchmark
+    public String threadLocalDecrypt() throws Exception {
+        return threadPerTask.submit(() -> {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, KEY, new GCMParameterSpec(128, decoded, 0, 12));
+            return new String(cipher.doFinal(decoded, 12, decoded.length - 12), StandardCharsets.UTF_8);
+        }).get();
+    }
+
+    @Benchmark
+    public String pooledDecrypt() throws Exception {
+        return threadPerTask.submit(() -> encryptor.decrypt(cipherText)).get();
+    }
+
+    @Benchmark
+    public byte[] threadLocalDigest() throws Exception {
+        return threadPerTask.submit(() -> {
+            MessageDigest digest = SHA_256.get();
+            digest.reset();
+            return digest.digest(TOKEN.getBytes(StandardCharsets.US_ASCII));
+        }).get();
+    }
+
+    @Benchmark
+    public byte[] perCallDigest() throws Exception {
+        return threadPerTask.submit(() ->
+                MessageDigest.getInstance("SHA-256").digest(TOKEN.getBytes(StandardCharsets.US_ASCII))).get();
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() через отражение: модуль собирается под Java 17.
+     */
+    private static ExecutorService threadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return new ThreadPerTaskExecutor();
+        }
+    }
+
+    // Java 17: новый платформенный поток на задачу
+    private static final class ThreadPerTaskExecutor extends AbstractExecutorService {
+
+        private volatile boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            new Thread(command).start();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ru.ildar.bankcards.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import ru.ildar.bankcards.config.JwtConfig;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.security.JwtKeyRing;
+import ru.ildar.bankcards.security.JwtTokenProvider;
+
+import java.security.Key;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение пути JwtAuthFilter до и после перехода на однократный разбор токена.
+ * <ul>
+ *     <li>legacy — validateToken + getUsernameFromJwt: два parserBuilder().build() и две проверки HMAC;</li>
+ *     <li>singleParse — один разбор заранее построенным парсером, кэш выключен;</li>
+ *     <li>cached — один разбор, повторный токен берётся из кэша проверенных токенов;</li>
+ *     <li>validateToken — публичная проверка JwtTokenProvider.validateToken без кэша.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET =
+            "verySecretKeyExample1234567890verySecretKeyExample1234567890verySecretKeyExample1234567890";
+    private static final long EXPIRATION_MS = 3_600_000;
+    private static final long REFRESH_EXPIRATION_MS = 604_800_000;
+
+    private Key legacyKey;
+    private JwtTokenProvider uncachedProvider;
+    private JwtTokenProvider cachedProvider;
+    private String token;
+
+    @Setup
+    public void setup() {
+        legacyKey = Keys.hmacShaKeyFor(SECRET.getBytes());
+
+        JwtConfig jwtConfig = new JwtConfig(SECRET, "default", "", EXPIRATION_MS, REFRESH_EXPIRATION_MS);
+        JwtKeyRing keyRing = new JwtKeyRing(jwtConfig);
+
+        uncachedProvider = new JwtTokenProvider(jwtConfig, keyRing, 0);
+        uncachedProvider.init();
+
+        cachedProvider = new JwtTokenProvider(jwtConfig, keyRing, 10_000);
+        cachedProvider.init();
+
+        User user = User.builder()
+                .id(UUID.randomUUID())
+                .username("benchmark-user")
+                .roles(Set.of(Role.ROLE_USER))
+                .build();
+        token = uncachedProvider.generateToken(user);
+    }
+
+    @Benchmark
+    public String legacy() {
+        Jwts.parserBuilder().setSigningKey(legacyKey).build().parseClaimsJws(token);
+        return Jwts.parserBuilder()
+                .setSigningKey(legacyKey)
+                .build()
+                .parseClaimsJws(token)
+                .getBody()
+                .getSubject();
+    }
+
+    @Benchmark
+    public Claims singleParse() {
+        return uncachedProvider.parseAndValidate(token).orElseThrow();
+    }
+
+    @Benchmark
+    public Claims cached() {
+        return cachedProvider.parseAndValidate(token).orElseThrow();
+    }
+
+    @Benchmark
+    public boolean validateToken() {
+        return uncachedProvider.validateToken(token);
+    }
+}
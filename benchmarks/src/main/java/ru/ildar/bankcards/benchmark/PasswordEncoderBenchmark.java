@@ -0,0 +1,55 @@
+package ru.ildar.bankcards.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.ildar.bankcards.config.SecurityConfig;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность проверки пароля при входе для настроек auth.password.* —
+ * исходные данные для расчёта числа ядер под вход. Один поток JMH занимает одно ядро,
+ * поэтому результат в ops/s — это проверок в секунду на ядро. Кодировщик строится тем же
+ * SecurityConfig.passwordEncoder, что и в приложении; настройка задаётся строкой
+ * bcrypt:strength или argon2:memory-kib:iterations:parallelism.
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar PasswordEncoderBenchmark
+ * java -jar benchmarks/target/benchmarks.jar PasswordEncoderBenchmark -p setting=bcrypt:11,argon2:19456:2:1
+ * </pre>
+ * Для Argon2 с parallelism больше 1 один вызов занимает несколько ядер: результат делить на parallelism.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PasswordEncoderBenchmark {
+
+    private static final String PASSWORD = "Benchmark-Passw0rd";
+
+    @Param({"bcrypt:10", "bcrypt:11", "bcrypt:12", "argon2:16384:2:1", "argon2:19456:2:1", "argon2:65536:3:1"})
+    private String setting;
+
+    private PasswordEncoder encoder;
+    private String encodedPassword;
+
+    @Setup
+    public void setup() {
+        String[] parts = setting.split(":");
+        encoder = switch (parts[0]) {
+            case "bcrypt" -> new SecurityConfig(null).passwordEncoder("bcrypt",
+                    Integer.parseInt(parts[1]), 16384, 2, 1);
+            case "argon2" -> new SecurityConfig(null).passwordEncoder("argon2", 10,
+                    Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+            default -> throw new IllegalArgumentException("Неизвестная настройка: " + setting);
+        };
+        encodedPassword = encoder.encode(PASSWORD);
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches(PASSWORD, encodedPassword);
+    }
+}
@@ -0,0 +1,40 @@
+// Нагрузочный тест k6: 5000 одновременных соединений читают свои карты (JWT + запрос в PostgreSQL).
+// Сравнение режимов — см. load-test/compare.sh и раздел «Виртуальные потоки» в README.md.
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8081';
+const VUS = Number(__ENV.VUS || 5000);
+
+export const options = {
+    scenarios: {
+        slice: {
+            executor: 'constant-vus',
+            vus: VUS,
+            duration: __ENV.DURATION || '2m',
+        },
+    },
+    // 503 от лимита одновременных запросов — ожидаемый ответ под перегрузкой, не ошибка теста
+    summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+export function setup() {
+    const username = `load-${Date.now()}`;
+    const credentials = { username, password: 'load-password', email: `${username}@load.test` };
+    http.post(`${BASE_URL}/api/auth/register`, JSON.stringify(credentials),
+        { headers: { 'Content-Type': 'application/json' } });
+    const login = http.post(`${BASE_URL}/api/auth/login`,
+        JSON.stringify({ username, password: credentials.password }),
+        { headers: { 'Content-Type': 'application/json' } });
+    return { token: login.json('accessToken') };
+}
+
+export default function (data) {
+    const response = http.get(`${BASE_URL}/api/cards/slice?size=20`, {
+        headers: { Authorization: `Bearer ${data.token}` },
+        tags: { name: 'cards-slice' },
+    });
+    check(response, {
+        'ok or shed': (r) => r.status === 200 || r.status === 503,
+    });
+}
@@ -0,0 +1,44 @@
+#!/usr/bin/env bash
+# Сравнение пропускной способности: платформенные потоки Tomcat (профиль dev)
+# и виртуальные потоки (профили dev,virtual-threads, сборка -Pjava21, JDK 21).
+# Результаты k6 (--summary-export) пишутся в load-test/results/<режим>.json.
+#
+# Требуется: JDK 21, k6, запущенный PostgreSQL из docker-compose (порт 5434),
+# ulimit -n не меньше 20000 на машине с k6 и на машине с приложением.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RESULTS=load-test/results
+mkdir -p "$RESULTS"
+
+export SPRING_DATASOURCE_URL=${SPRING_DATASOURCE_URL:-jdbc:postgresql://localhost:5434/bankcardsdb}
+
+mvn -q -Pjava21 -DskipTests package
+
+run() {
+    local mode=$1 profiles=$2
+    java -jar target/bankcards-1.0.0-exec.jar --spring.profiles.active="$profiles" \
+        --server.tomcat.max-connections=10000 --server.tomcat.accept-count=1000 \
+        > "$RESULTS/$mode.log" 2>&1 &
+    local pid=$!
+    trap 'kill $pid 2>/dev/null || true' EXIT
+    until curl -sf http://localhost:8082/actuator/health > /dev/null; do sleep 1; done
+
+    k6 run --summary-export "$RESULTS/$mode.json" load-test/cards-slice.js
+
+    kill "$pid"
+    wait "$pid" || true
+    trap - EXIT
+}
+
+run platform-threads dev
+run virtual-threads dev,virtual-threads
+
+for mode in platform-threads virtual-threads; do
+    printf '%-17s %s\n' "$mode" "$(python3 -c "
+import json, sys
+m = json.load(open('$RESULTS/$mode.json'))['metrics']
+d = m['http_req_duration']
+print(f\"{m['http_reqs']['rate']:.0f} req/s, p95 {d['p(95)']:.0f} ms, p99 {d['p(99)']:.0f} ms\")
+")"
+done
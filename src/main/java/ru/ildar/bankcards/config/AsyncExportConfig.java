@@ -0,0 +1,56 @@
+package ru.ildar.bankcards.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+
+/**
+ * Длинный тайм-аут только для потоковых выгрузок. Общий тайм-аут асинхронных запросов остаётся
+ * стандартным, а обработчикам с @LongRunningExport он заменяется на export.async-timeout
+ * перед запуском асинхронной обработки: выписка за несколько лет пишется дольше 30 секунд.
+ */
+@Configuration
+public class AsyncExportConfig implements WebMvcConfigurer {
+
+    private final Duration exportTimeout;
+
+    public AsyncExportConfig(@Value("${export.async-timeout:30m}") Duration exportTimeout) {
+        this.exportTimeout = exportTimeout;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new ExportTimeoutInterceptor(exportTimeout.toMillis()));
+    }
+
+    static class ExportTimeoutInterceptor implements CallableProcessingInterceptor {
+
+        private final long timeoutMs;
+
+        ExportTimeoutInterceptor(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        // Вызывается до startAsync, когда тайм-аут запроса ещё можно изменить
+        @Override
+        public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+            Object handler = request.getAttribute(
+                    HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+            if (request instanceof AsyncWebRequest asyncRequest
+                    && handler instanceof HandlerMethod method
+                    && method.hasMethodAnnotation(LongRunningExport.class)) {
+                asyncRequest.setTimeout(timeoutMs);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.ildar.bankcards.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.ildar.bankcards.exception.ApiError;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничивает число одновременно обрабатываемых запросов.
+ * <p>
+ * С виртуальными потоками Tomcat больше не ограничивает параллелизм пулом потоков: каждое соединение
+ * получает свой поток, и тысячи запросов одновременно встают в очередь Hikari за соединением,
+ * упираясь в connection-timeout и раздувая задержки у всех. Семафор пропускает дальше не больше
+ * max-concurrent запросов, остальные ждут до acquire-timeout, а затем получают 503 с Retry-After.
+ * Фильтр стоит раньше Spring Security, поэтому отклонённый запрос не тратит время на разбор JWT.
+ * <p>
+ * Разрешение освобождается, когда запрос вернулся из цепочки фильтров: асинхронная часть потоковой
+ * выгрузки им уже не учитывается.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "request-limit.enabled", havingValue = "true")
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final Semaphore permits;
+    private final long acquireTimeoutNanos;
+    private final ObjectMapper objectMapper;
+    private final Counter rejectedCounter;
+
+    public ConcurrencyLimitFilter(@Value("${request-limit.max-concurrent:200}") int maxConcurrent,
+                                  @Value("${request-limit.acquire-timeout:1s}") Duration acquireTimeout,
+                                  ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeoutNanos = acquireTimeout.toNanos();
+        this.objectMapper = objectMapper;
+        this.rejectedCounter = Counter.builder("request.limit.rejected")
+                .description("Запросы, отклонённые с 503 из-за лимита одновременных запросов")
+                .register(meterRegistry);
+        Gauge.builder("request.limit.available", permits, Semaphore::availablePermits)
+                .description("Свободные разрешения лимита одновременных запросов")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // Health-check и метрики должны отвечать и под перегрузкой
+        return request.getRequestURI().startsWith("/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedCounter.increment();
+            reject(response);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(response.getWriter(),
+                new ApiError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Сервер перегружен, повторите запрос позже"));
+    }
+}
@@ -5,19 +5,47 @@ import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class JwtConfig {
-    @Value("${jwt.secret}")
-    private String secret;
 
-    @Value("${jwt.access-token-expiration-ms}")
-    private Long accessTokenExpirationMs;
+    private final String secret;
 
-    @Value("${jwt.refresh-token-expiration-ms}")
-    private Long refreshTokenExpirationMs;
+    private final String keyId;
+
+    private final String keyRingFile;
+
+    private final Long accessTokenExpirationMs;
+
+    private final Long refreshTokenExpirationMs;
+
+    public JwtConfig(@Value("${jwt.secret}") String secret,
+                     @Value("${jwt.key-id:default}") String keyId,
+                     @Value("${jwt.key-ring-file:}") String keyRingFile,
+                     @Value("${jwt.access-token-expiration-ms}") Long accessTokenExpirationMs,
+                     @Value("${jwt.refresh-token-expiration-ms}") Long refreshTokenExpirationMs) {
+        this.secret = secret;
+        this.keyId = keyId;
+        this.keyRingFile = keyRingFile;
+        this.accessTokenExpirationMs = accessTokenExpirationMs;
+        this.refreshTokenExpirationMs = refreshTokenExpirationMs;
+    }
 
     public String getSecret() {
         return secret;
     }
 
+    /**
+     * kid ключа из jwt.secret. Старые токены без kid в заголовке проверяются ключом с этим kid.
+     */
+    public String getKeyId() {
+        return keyId;
+    }
+
+    /**
+     * Путь к properties-файлу с набором ключей (kid=secret и active=kid), пусто — только jwt.secret.
+     */
+    public String getKeyRingFile() {
+        return keyRingFile;
+    }
+
     public Long getAccessTokenExpirationMs() {
         return accessTokenExpirationMs;
     }
@@ -25,4 +53,4 @@ public class JwtConfig {
     public Long getRefreshTokenExpirationMs() {
         return refreshTokenExpirationMs;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package ru.ildar.bankcards.config;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Обработчик потоковой выгрузки (StreamingResponseBody), которому нужен тайм-аут export.async-timeout
+ * вместо общего тайм-аута асинхронных запросов.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LongRunningExport {
+}
@@ -0,0 +1,26 @@
+package ru.ildar.bankcards.config;
+
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.aop.ObservedAspect;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Метрики и трассировка сервисов. Классы сервисов помечены {@code @Observed(SERVICE_OBSERVATION)}:
+ * каждый публичный метод получает таймер service.calls с тегами class, method и error
+ * и спан с именем вида card-service-impl#get-user-cards. Для асинхронных методов время
+ * считается до завершения CompletableFuture.
+ * <p>
+ * Спаны уходят в экспортёр OTLP, если задан management.otlp.tracing.endpoint, и в любые бины
+ * SpanExporter (в тестах — InMemorySpanExporter). traceId и spanId попадают в MDC и в строки логов.
+ */
+@Configuration
+public class MetricsConfig {
+
+    public static final String SERVICE_OBSERVATION = "service.calls";
+
+    @Bean
+    public ObservedAspect observedAspect(ObservationRegistry observationRegistry) {
+        return new ObservedAspect(observationRegistry);
+    }
+}
@@ -1,6 +1,7 @@
 package ru.ildar.bankcards.config;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -11,19 +12,26 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import ru.ildar.bankcards.security.JwtAuthFilter;
 
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
 @RequiredArgsConstructor
 public class SecurityConfig {
 
+    private static final int ARGON2_SALT_LENGTH = 16;
+    private static final int ARGON2_HASH_LENGTH = 32;
+
     private final JwtAuthFilter jwtAuthFilter;
 
     private static final String[] SWAGGER_WHITELIST = {
@@ -44,6 +52,8 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers(SWAGGER_WHITELIST).permitAll()
+                        // Без токена для сборщика метрик: actuator доступен только на management.server.port, не на порту API
+                        .requestMatchers("/actuator/health/**", "/actuator/prometheus").permitAll()
                         .anyRequest().authenticated()
                 )
                 .sessionManagement(session -> session
@@ -53,9 +63,29 @@ public class SecurityConfig {
                 .build();
     }
 
+    /**
+     * Хэши пишутся с префиксом алгоритма ({bcrypt}, {argon2}), поэтому алгоритм и его стоимость можно
+     * менять без миграции: старые хэши проверяются своим кодировщиком и перехэшируются при входе.
+     * Хэши без префикса, записанные до перехода на DelegatingPasswordEncoder, — это BCrypt.
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${auth.password.encoder:bcrypt}") String encoderId,
+                                           @Value("${auth.password.bcrypt.strength:10}") int bcryptStrength,
+                                           @Value("${auth.password.argon2.memory-kib:16384}") int argon2MemoryKib,
+                                           @Value("${auth.password.argon2.iterations:2}") int argon2Iterations,
+                                           @Value("${auth.password.argon2.parallelism:1}") int argon2Parallelism) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(bcryptStrength);
+        Map<String, PasswordEncoder> encoders = Map.of(
+                "bcrypt", bcrypt,
+                "argon2", new Argon2PasswordEncoder(ARGON2_SALT_LENGTH, ARGON2_HASH_LENGTH,
+                        argon2Parallelism, argon2MemoryKib, argon2Iterations));
+        if (!encoders.containsKey(encoderId)) {
+            throw new IllegalStateException("auth.password.encoder должен быть одним из " + encoders.keySet());
+        }
+
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(encoderId, encoders);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
     }
 
     // ✅ In-memory пользователь с ролью ADMIN
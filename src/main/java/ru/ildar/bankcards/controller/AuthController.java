@@ -1,29 +1,45 @@
 package ru.ildar.bankcards.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.ildar.bankcards.dto.request.LoginDto;
+import ru.ildar.bankcards.dto.request.RefreshTokenDto;
 import ru.ildar.bankcards.dto.request.RegisterDto;
 import ru.ildar.bankcards.dto.response.JwtResponseDto;
+import ru.ildar.bankcards.security.LoginRateLimiter;
 import ru.ildar.bankcards.service.AuthService;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
 public class AuthController {
 
     private final AuthService authService;
+    private final LoginRateLimiter loginRateLimiter;
 
+    // Поток запроса освобождается сразу, ответ отправляется после проверки пароля на пуле BCrypt
     @PostMapping("/login")
-    public ResponseEntity<JwtResponseDto> login(@RequestBody LoginDto loginDto) {
-        JwtResponseDto jwtResponse = authService.login(loginDto);
-        return ResponseEntity.ok(jwtResponse);
+    public CompletableFuture<ResponseEntity<JwtResponseDto>> login(@RequestBody LoginDto loginDto,
+                                                                   HttpServletRequest request) {
+        loginRateLimiter.acquire(loginDto.getUsername(), request.getRemoteAddr());
+        return authService.login(loginDto).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/register")
-    public ResponseEntity<JwtResponseDto> register(@RequestBody RegisterDto registerDto) {
-        JwtResponseDto jwtResponse = authService.register(registerDto);
+    public CompletableFuture<ResponseEntity<JwtResponseDto>> register(@RequestBody RegisterDto registerDto,
+                                                                      HttpServletRequest request) {
+        loginRateLimiter.acquire(request.getRemoteAddr());
+        return authService.register(registerDto).thenApply(ResponseEntity::ok);
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<JwtResponseDto> refresh(@Valid @RequestBody RefreshTokenDto refreshTokenDto) {
+        JwtResponseDto jwtResponse = authService.refresh(refreshTokenDto);
         return ResponseEntity.ok(jwtResponse);
     }
 }
@@ -3,53 +3,115 @@ package ru.ildar.bankcards.controller;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.ildar.bankcards.config.LongRunningExport;
+import ru.ildar.bankcards.dto.request.BatchTransferRequestDto;
 import ru.ildar.bankcards.dto.request.CardCreateDto;
+import ru.ildar.bankcards.dto.request.CardIssueBatchDto;
+import ru.ildar.bankcards.dto.request.CardSearchFilter;
+import ru.ildar.bankcards.dto.request.ExportFormat;
 import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.dto.response.BatchTransferResponseDto;
+import ru.ildar.bankcards.dto.response.CardBlockRequestDto;
+import ru.ildar.bankcards.dto.response.CardIssueBatchResponseDto;
 import ru.ildar.bankcards.dto.response.CardResponseDto;
+import ru.ildar.bankcards.dto.response.CardTransactionDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.entity.CardBlockRequestStatus;
+import ru.ildar.bankcards.service.CardBlockRequestService;
+import ru.ildar.bankcards.service.CardIssuanceService;
 import ru.ildar.bankcards.service.CardService;
+import ru.ildar.bankcards.service.CardStatementService;
+import ru.ildar.bankcards.service.IdempotencyService;
 import ru.ildar.bankcards.service.TransferService;
 
+import java.time.OffsetDateTime;
 import java.util.UUID;
 
 @RestController
-@RequestMapping("/api/cards")
+@RequestMapping("/api")
 @RequiredArgsConstructor
 public class CardController {
 
     private final CardService cardService;
     private final TransferService transferService;
+    private final IdempotencyService idempotencyService;
+    private final CardStatementService cardStatementService;
+    private final CardBlockRequestService cardBlockRequestService;
+    private final CardIssuanceService cardIssuanceService;
 
     // ADMIN: создание карты
-    @PostMapping
+    @PostMapping("/cards")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<CardResponseDto> createCard(@Valid @RequestBody CardCreateDto dto) {
         return ResponseEntity.ok(cardService.createCard(dto));
     }
 
-    @PutMapping("/{id}/block")
+    // ADMIN: выпуск до 50 000 карт одному пользователю за запрос
+    @PostMapping("/cards:batch")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CardIssueBatchResponseDto> issueCards(@Valid @RequestBody CardIssueBatchDto dto) {
+        return ResponseEntity.ok(cardIssuanceService.issueCards(dto));
+    }
+
+    @PutMapping("/cards/{id}/block")
     public ResponseEntity<Void> blockCard(@PathVariable UUID id) {
         cardService.blockCard(id);
         return ResponseEntity.noContent().build(); // 204 без тела
     }
 
-    @PutMapping("/{id}/activate")
+    @PutMapping("/cards/{id}/activate")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<CardResponseDto> activateCard(@PathVariable UUID id) {
         return ResponseEntity.ok(cardService.activateCard(id));
     }
 
-    @DeleteMapping("/{id}")
+    @DeleteMapping("/cards/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Void> deleteCard(@PathVariable UUID id) {
         cardService.deleteCard(id);
         return ResponseEntity.noContent().build();
     }
 
+    // ADMIN: поиск карт по статусу, владельцу, сроку действия и балансу; следующая страница — по nextCursor
+    @GetMapping("/admin/cards")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPageDto<CardResponseDto>> searchCards(@ModelAttribute CardSearchFilter filter) {
+        return ResponseEntity.ok(cardService.searchCards(filter));
+    }
+
+    // ADMIN: очередь заявок на блокировку от старых к новым; следующая страница — по nextCursor
+    @GetMapping("/admin/card-block-requests")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CursorPageDto<CardBlockRequestDto>> getCardBlockRequests(
+            @RequestParam(defaultValue = "PENDING") CardBlockRequestStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(cardBlockRequestService.getRequests(status, cursor, size));
+    }
+
+    // ADMIN: одобрение заявки; карта блокируется в фоне — 202
+    @PostMapping("/admin/card-block-requests/{id}/approve")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CardBlockRequestDto> approveCardBlockRequest(@PathVariable UUID id) {
+        return ResponseEntity.accepted().body(cardBlockRequestService.approve(id));
+    }
+
+    @PostMapping("/admin/card-block-requests/{id}/reject")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<CardBlockRequestDto> rejectCardBlockRequest(@PathVariable UUID id) {
+        return ResponseEntity.ok(cardBlockRequestService.reject(id));
+    }
+
     // USER: просмотр своих карт
-    @GetMapping
+    @GetMapping("/cards")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<Page<CardResponseDto>> getUserCards(
             @RequestParam(defaultValue = "0") int page,
@@ -57,19 +119,81 @@ public class CardController {
         return ResponseEntity.ok(cardService.getUserCards(page, size));
     }
 
-    // USER: запрос блокировки своей карты
-    @PostMapping("/{id}/request-block")
+    // USER: просмотр своих карт keyset-страницами по nextCursor, без подсчёта общего числа
+    @GetMapping("/cards/slice")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<Void> requestCardBlock(@PathVariable UUID id) {
-        cardService.requestCardBlock(id);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<CursorPageDto<CardResponseDto>> getUserCardsSlice(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "5") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        return ResponseEntity.ok(cardService.getUserCardsSlice(cursor, size, withTotal));
     }
 
-    // USER: перевод между своими картами
-    @PostMapping("/transfer")
+    // USER: выписка по своей карте, от новых проводок к старым; следующая страница — по nextCursor
+    @GetMapping("/cards/{id}/transactions")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<Void> transfer(@Valid @RequestBody TransferRequestDto dto) {
-        transferService.transfer(dto);
-        return ResponseEntity.ok().build();
+    public ResponseEntity<CursorPageDto<CardTransactionDto>> getCardTransactions(
+            @PathVariable UUID id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(cardStatementService.getStatement(id, cursor, size));
+    }
+
+    // USER: потоковая выгрузка выписки за период в NDJSON или CSV
+    @GetMapping("/cards/{id}/transactions/export")
+    @LongRunningExport
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<StreamingResponseBody> exportCardTransactions(
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime to) {
+        StreamingResponseBody body = cardStatementService.exportStatement(id, format, from, to);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"statement-" + id + "." + format.getExtension() + "\"")
+                .body(body);
+    }
+
+    // USER: заявка на блокировку своей карты; карта блокируется после одобрения администратором — 202
+    @PostMapping("/cards/{id}/request-block")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<CardBlockRequestDto> requestCardBlock(@PathVariable UUID id) {
+        return ResponseEntity.accepted().body(cardBlockRequestService.requestBlock(id));
+    }
+
+    // USER: перевод между своими картами; с Idempotency-Key повтор запроса не выполняет перевод второй раз
+    @PostMapping("/cards/transfer")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<?> transfer(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody TransferRequestDto dto) {
+        if (idempotencyKey == null) {
+            transferService.transfer(dto);
+            return ResponseEntity.ok().build();
+        }
+        return idempotencyService.execute(idempotencyKey, dto, () -> {
+            transferService.transfer(dto);
+            return ResponseEntity.ok().build();
+        });
+    }
+
+    // USER: пакет переводов между своими картами в одной транзакции (режимы ALL_OR_NOTHING и BEST_EFFORT)
+    @PostMapping("/cards/transfers:batch")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<?> transferBatch(
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody BatchTransferRequestDto dto) {
+        if (idempotencyKey == null) {
+            return batchResponse(transferService.transferBatch(dto));
+        }
+        return idempotencyService.execute(idempotencyKey, dto, () -> batchResponse(transferService.transferBatch(dto)));
+    }
+
+    // Отменённый пакет ALL_OR_NOTHING — 422 с результатами по каждому переводу
+    private static ResponseEntity<BatchTransferResponseDto> batchResponse(BatchTransferResponseDto response) {
+        return ResponseEntity.status(response.isCommitted() ? HttpStatus.OK : HttpStatus.UNPROCESSABLE_ENTITY)
+                .body(response);
     }
 }
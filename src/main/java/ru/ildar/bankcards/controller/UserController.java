@@ -1,13 +1,19 @@
 package ru.ildar.bankcards.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.ildar.bankcards.config.LongRunningExport;
+import ru.ildar.bankcards.dto.request.ExportFormat;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.dto.response.UserResponseDto;
 import ru.ildar.bankcards.entity.User;
 import ru.ildar.bankcards.service.UserService;
 
-import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -17,10 +23,25 @@ public class UserController {
 
     private final UserService userService;
 
+    // ADMIN: пользователи keyset-страницами по id; следующая страница — по nextCursor
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<User>> getAllUsers() {
-        return ResponseEntity.ok(userService.getAllUsers());
+    public ResponseEntity<CursorPageDto<UserResponseDto>> getUsers(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(userService.listUsers(cursor, size));
+    }
+
+    // ADMIN: потоковая выгрузка всех пользователей в NDJSON или CSV
+    @GetMapping("/export")
+    @LongRunningExport
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportUsers(
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users." + format.getExtension() + "\"")
+                .body(userService.exportUsers(format));
     }
 
     @GetMapping("/{id}")
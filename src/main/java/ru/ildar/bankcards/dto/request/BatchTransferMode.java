@@ -0,0 +1,10 @@
+package ru.ildar.bankcards.dto.request;
+
+public enum BatchTransferMode {
+
+    // Любой отклонённый перевод отменяет весь пакет
+    ALL_OR_NOTHING,
+
+    // Отклонённые переводы пропускаются, остальные применяются
+    BEST_EFFORT
+}
@@ -0,0 +1,20 @@
+package ru.ildar.bankcards.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchTransferRequestDto {
+
+    @NotNull
+    private BatchTransferMode mode = BatchTransferMode.ALL_OR_NOTHING;
+
+    @NotEmpty
+    @Size(max = 1000)
+    private List<@Valid @NotNull TransferRequestDto> transfers;
+}
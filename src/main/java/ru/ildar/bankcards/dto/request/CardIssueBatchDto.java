@@ -0,0 +1,32 @@
+package ru.ildar.bankcards.dto.request;
+
+import jakarta.validation.constraints.Future;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+@Data
+public class CardIssueBatchDto {
+
+    @NotNull
+    private UUID userId;
+
+    @Min(1)
+    @Max(50_000)
+    private int count;
+
+    @Future
+    @NotNull
+    private LocalDate expirationDate;
+
+    @NotNull
+    private BigDecimal initialBalance;
+
+    // BIN из card.number.bins; не задан — первый из списка
+    private String bin;
+}
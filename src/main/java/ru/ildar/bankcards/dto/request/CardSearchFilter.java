@@ -0,0 +1,43 @@
+package ru.ildar.bankcards.dto.request;
+
+import lombok.Data;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import ru.ildar.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Параметры поиска карт администратором. Все фильтры необязательны и объединяются через AND;
+ * границы диапазонов включительные.
+ */
+@Data
+public class CardSearchFilter {
+
+    private CardStatus status;
+
+    private UUID ownerId;
+
+    private String ownerUsername;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate expiresFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate expiresTo;
+
+    private BigDecimal minBalance;
+
+    private BigDecimal maxBalance;
+
+    private CardSearchSort sort = CardSearchSort.ID;
+
+    private Sort.Direction direction = Sort.Direction.ASC;
+
+    // nextCursor предыдущей страницы; действителен только с теми же фильтрами и сортировкой
+    private String cursor;
+
+    private int size = 20;
+}
@@ -0,0 +1,18 @@
+package ru.ildar.bankcards.dto.request;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Поле сортировки поиска карт. Вторым ключом всегда идёт id, поэтому порядок однозначен
+ * и по паре (значение, id) строится keyset-курсор.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum CardSearchSort {
+    ID("id"),
+    EXPIRATION_DATE("expirationDate"),
+    BALANCE("balance");
+
+    private final String attribute;
+}
@@ -0,0 +1,11 @@
+package ru.ildar.bankcards.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class RefreshTokenDto {
+
+    @NotBlank
+    private String refreshToken;
+}
@@ -0,0 +1,20 @@
+package ru.ildar.bankcards.dto.response;
+
+import lombok.*;
+import ru.ildar.bankcards.dto.request.BatchTransferMode;
+
+import java.util.List;
+
+@Builder
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchTransferResponseDto {
+    private BatchTransferMode mode;
+    // false — пакет ALL_OR_NOTHING отменён, балансы не изменились
+    private boolean committed;
+    private int applied;
+    private int rejected;
+    private List<TransferLegResultDto> results;
+}
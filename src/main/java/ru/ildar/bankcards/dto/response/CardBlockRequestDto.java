@@ -0,0 +1,22 @@
+package ru.ildar.bankcards.dto.response;
+
+import lombok.*;
+import ru.ildar.bankcards.entity.CardBlockRequestStatus;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Builder
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardBlockRequestDto {
+    private UUID id;
+    private UUID cardId;
+    private UUID requestedBy;
+    private CardBlockRequestStatus status;
+    private Instant createdAt;
+    private Instant decidedAt;
+    private Instant completedAt;
+}
@@ -0,0 +1,13 @@
+package ru.ildar.bankcards.dto.response;
+
+import lombok.*;
+
+@Builder
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardIssueBatchResponseDto {
+    private int issued;
+    private String bin;
+}
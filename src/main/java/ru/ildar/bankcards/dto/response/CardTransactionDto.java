@@ -0,0 +1,24 @@
+package ru.ildar.bankcards.dto.response;
+
+import lombok.*;
+import ru.ildar.bankcards.entity.LedgerEntryType;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Builder
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CardTransactionDto {
+    // Номер проводки в журнале
+    private long id;
+    private UUID transferId;
+    private UUID counterpartyCardId;
+    // Списание — отрицательная сумма, зачисление — положительная
+    private BigDecimal amount;
+    private LedgerEntryType type;
+    private OffsetDateTime createdAt;
+}
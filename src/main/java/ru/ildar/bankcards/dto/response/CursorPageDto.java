@@ -0,0 +1,18 @@
+package ru.ildar.bankcards.dto.response;
+
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageDto<T> {
+    private List<T> items;
+    // Курсор следующей страницы; null — страниц больше нет
+    private String nextCursor;
+    // Приблизительное общее число элементов; заполняется только по запросу клиента
+    private Long approximateTotal;
+}
@@ -10,4 +10,9 @@ public class JwtResponseDto {
     private String accessToken;
     private String tokenType = "Bearer";
     private String token;
+    private String refreshToken;
+
+    public JwtResponseDto(String accessToken, String tokenType, String token) {
+        this(accessToken, tokenType, token, null);
+    }
 }
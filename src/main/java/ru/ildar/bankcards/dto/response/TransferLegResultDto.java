@@ -0,0 +1,15 @@
+package ru.ildar.bankcards.dto.response;
+
+import lombok.*;
+
+@Builder
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransferLegResultDto {
+    // Позиция перевода в запросе
+    private int index;
+    private TransferLegStatus status;
+    private String error;
+}
@@ -0,0 +1,11 @@
+package ru.ildar.bankcards.dto.response;
+
+public enum TransferLegStatus {
+
+    APPLIED,
+
+    REJECTED,
+
+    // Перевод прошёл проверки, но пакет ALL_OR_NOTHING отменён из-за другого перевода
+    ROLLED_BACK
+}
@@ -0,0 +1,19 @@
+package ru.ildar.bankcards.dto.response;
+
+import lombok.*;
+import ru.ildar.bankcards.entity.Role;
+
+import java.util.Set;
+import java.util.UUID;
+
+@Builder
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserResponseDto {
+    private UUID id;
+    private String username;
+    private String email;
+    private Set<Role> roles;
+}
@@ -20,10 +20,18 @@ public class Card {
     @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
 
-    // Зашифрованный номер карты
-    @Column(nullable = false, unique = true, length = 255)
+    // Зашифрованный номер карты (случайный IV, поэтому по нему нельзя искать)
+    @Column(nullable = false, length = 255)
     private String encryptedNumber;
 
+    // Последние 4 цифры номера — ответы строятся без расшифровки
+    @Column(length = 4)
+    private String last4;
+
+    // HMAC-SHA256 номера карты (hex) — поиск и проверка уникальности номера
+    @Column(unique = true, length = 64)
+    private String fingerprint;
+
     @Column(nullable = false)
     private BigDecimal balance;
 
@@ -34,6 +42,11 @@ public class Card {
     @Column(nullable = false)
     private LocalDate expirationDate;
 
+    // Версия строки для оптимистической блокировки (transfer.locking-mode=OPTIMISTIC)
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User owner;
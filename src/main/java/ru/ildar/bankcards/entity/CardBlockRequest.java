@@ -0,0 +1,46 @@
+package ru.ildar.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Заявка пользователя на блокировку карты. Карта и пользователи хранятся как id без связей:
+ * очередь заявок читается одним запросом без подгрузки карт и владельцев.
+ */
+@Entity
+@Table(name = "card_block_requests")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CardBlockRequest {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private UUID id;
+
+    @Column(nullable = false)
+    private UUID cardId;
+
+    @Column(nullable = false)
+    private UUID requestedBy;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CardBlockRequestStatus status;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // Администратор, одобривший или отклонивший заявку
+    private UUID decidedBy;
+
+    private Instant decidedAt;
+
+    // Когда диспетчер заблокировал карту
+    private Instant completedAt;
+}
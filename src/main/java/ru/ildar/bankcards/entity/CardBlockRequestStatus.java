@@ -0,0 +1,12 @@
+package ru.ildar.bankcards.entity;
+
+public enum CardBlockRequestStatus {
+    // Ждёт решения администратора
+    PENDING,
+    // Одобрена, блокировку применит диспетчер outbox
+    APPROVED,
+    // Отклонена администратором
+    REJECTED,
+    // Карта заблокирована
+    COMPLETED
+}
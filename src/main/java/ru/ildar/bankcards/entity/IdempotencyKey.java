@@ -0,0 +1,38 @@
+package ru.ildar.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Сохранённый результат запроса с заголовком Idempotency-Key.
+ * Строка вставляется в той же транзакции, что и сама операция, поэтому снаружи
+ * видна только вместе с готовым ответом.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyKey {
+
+    // Ключ клиента с префиксом пользователя: ключи разных пользователей не пересекаются
+    @Id
+    @Column(length = 200)
+    private String id;
+
+    // SHA-256 тела запроса: повтор ключа с другим телом отклоняется
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    private Integer responseStatus;
+
+    @Column(columnDefinition = "TEXT")
+    private String responseBody;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+}
@@ -0,0 +1,46 @@
+package ru.ildar.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Проводка журнала движений по карте. Журнал только дописывается (LedgerService),
+ * seq и created_at присваивает БД.
+ */
+@Entity
+@Immutable
+@Table(name = "ledger_entries")
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+
+    @Column(nullable = false)
+    private UUID transferId;
+
+    @Column(nullable = false)
+    private UUID cardId;
+
+    private UUID counterpartyCardId;
+
+    // Списание отрицательное, зачисление положительное
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private LedgerEntryType entryType;
+
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Instant createdAt;
+}
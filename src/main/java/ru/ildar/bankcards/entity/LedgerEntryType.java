@@ -0,0 +1,8 @@
+package ru.ildar.bankcards.entity;
+
+public enum LedgerEntryType {
+    // Начальный баланс при выпуске карты
+    OPENING,
+    // Проводка перевода между картами
+    TRANSFER
+}
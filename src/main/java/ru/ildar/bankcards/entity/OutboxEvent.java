@@ -0,0 +1,45 @@
+package ru.ildar.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Событие transactional outbox. Пишется в транзакции изменения, к которому относится,
+ * и обрабатывается OutboxDispatcherJob после коммита, вне потока запроса.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private OutboxEventType eventType;
+
+    @Column(nullable = false)
+    private UUID aggregateId;
+
+    @Column(nullable = false, insertable = false, updatable = false)
+    private Instant createdAt;
+
+    // null — событие ещё не обработано
+    private Instant processedAt;
+
+    // Неудачные попытки обработки; по достижении outbox.dispatcher.max-attempts событие снимается с обработки
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(length = 500)
+    private String lastError;
+}
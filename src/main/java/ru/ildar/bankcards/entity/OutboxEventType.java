@@ -0,0 +1,8 @@
+package ru.ildar.bankcards.entity;
+
+public enum OutboxEventType {
+    // Пользователь подал заявку на блокировку — уведомление администраторов
+    CARD_BLOCK_REQUESTED,
+    // Администратор одобрил заявку — блокировка карты
+    CARD_BLOCK_APPROVED
+}
@@ -0,0 +1,27 @@
+package ru.ildar.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * jti refresh-токена, который уже обменян на новую пару токенов.
+ * Хранится до exp токена — дальше токен отклоняется по сроку действия.
+ */
+@Entity
+@Table(name = "revoked_refresh_tokens")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RevokedRefreshToken {
+
+    @Id
+    private UUID jti;
+
+    @Column(nullable = false)
+    private Instant expiresAt;
+}
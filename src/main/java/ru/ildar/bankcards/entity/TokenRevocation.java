@@ -0,0 +1,27 @@
+package ru.ildar.bankcards.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Отзыв всех токенов пользователя, выпущенных не позже revokedAt.
+ * Нужен, пока жив последний выпущенный до отзыва access-токен.
+ */
+@Entity
+@Table(name = "token_revocations")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TokenRevocation {
+
+    @Id
+    private UUID userId;
+
+    @Column(nullable = false)
+    private Instant revokedAt;
+}
@@ -1,15 +1,20 @@
 package ru.ildar.bankcards.exception;
 
 public class CardOperationException extends RuntimeException {
-    public CardOperationException() {
-        super();
-    }
 
-    public CardOperationException(String message) {
+    private final ErrorReason reason;
+
+    public CardOperationException(ErrorReason reason, String message) {
         super(message);
+        this.reason = reason;
     }
 
-    public CardOperationException(String message, Throwable cause) {
+    public CardOperationException(ErrorReason reason, String message, Throwable cause) {
         super(message, cause);
+        this.reason = reason;
+    }
+
+    public ErrorReason getReason() {
+        return reason;
     }
 }
@@ -0,0 +1,35 @@
+package ru.ildar.bankcards.exception;
+
+import java.util.Locale;
+
+/**
+ * Причина отказа CardOperationException. Тег reason метрики card.operation.errors берётся отсюда,
+ * а не из текста сообщения: текст локализован и может меняться, а число серий должно быть ограничено.
+ */
+public enum ErrorReason {
+
+    NOT_AUTHENTICATED,
+    USER_NOT_FOUND,
+    CARD_NOT_FOUND,
+    CARD_ALREADY_ACTIVE,
+    CARD_ALREADY_BLOCKED,
+    CARD_NOT_ACTIVE,
+    NOT_CARD_OWNER,
+    INVALID_AMOUNT,
+    SAME_CARD,
+    INSUFFICIENT_FUNDS,
+    BLOCK_REQUEST_NOT_FOUND,
+    DUPLICATE_BLOCK_REQUEST,
+    UNSUPPORTED_BIN,
+    BIN_EXHAUSTED,
+    INVALID_CURSOR,
+    INVALID_IDEMPOTENCY_KEY,
+    CONCURRENT_MODIFICATION,
+    INTERRUPTED;
+
+    private final String tag = name().toLowerCase(Locale.ROOT);
+
+    public String getTag() {
+        return tag;
+    }
+}
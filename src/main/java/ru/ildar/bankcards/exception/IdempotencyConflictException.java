@@ -0,0 +1,15 @@
+package ru.ildar.bankcards.exception;
+
+/**
+ * Запрос с тем же Idempotency-Key ещё выполняется или ключ повторно использован с другим телом.
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+
+    public IdempotencyConflictException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,17 @@
+package ru.ildar.bankcards.exception;
+
+import lombok.Getter;
+
+/**
+ * Запрос отклонён ограничением частоты; клиенту отдаётся 429 с Retry-After.
+ */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
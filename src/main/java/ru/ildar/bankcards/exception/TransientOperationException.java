@@ -0,0 +1,12 @@
+package ru.ildar.bankcards.exception;
+
+/**
+ * Операция не выполнена из-за параллельного изменения данных или прерывания потока.
+ * Повтор того же запроса может пройти, поэтому такой отказ не сохраняется под Idempotency-Key.
+ */
+public class TransientOperationException extends CardOperationException {
+
+    public TransientOperationException(ErrorReason reason, String message, Throwable cause) {
+        super(reason, message, cause);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.ildar.bankcards.job;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.ildar.bankcards.repository.CardRepository;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Переводит карты с истёкшим сроком действия из ACTIVE в EXPIRED.
+ * Работа идёт пачками по batch-size карт, каждая пачка — отдельный UPDATE в своей транзакции,
+ * поэтому блокировки держатся недолго, а прерванный запуск просто продолжится следующим.
+ * Узлы не мешают друг другу: пачка берёт строки FOR UPDATE SKIP LOCKED.
+ * <p>
+ * Метрики: card.expiry.expired — всего переведено карт, card.expiry.batch — время пачки,
+ * card.expiry.last-run.expired — карт за последний запуск.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "card.expiry.enabled", havingValue = "true", matchIfMissing = true)
+public class CardExpiryJob {
+
+    private final CardRepository cardRepository;
+    private final int batchSize;
+    private final Counter expiredCounter;
+    private final Timer batchTimer;
+    private final AtomicLong lastRunExpired = new AtomicLong();
+
+    public CardExpiryJob(CardRepository cardRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${card.expiry.batch-size:1000}") int batchSize) {
+        this.cardRepository = cardRepository;
+        this.batchSize = batchSize;
+        this.expiredCounter = Counter.builder("card.expiry.expired")
+                .description("Карты, переведённые в EXPIRED")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("card.expiry.batch")
+                .description("Время одной пачки UPDATE")
+                .register(meterRegistry);
+        Gauge.builder("card.expiry.last-run.expired", lastRunExpired, AtomicLong::get)
+                .description("Карты, переведённые в EXPIRED за последний запуск")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${card.expiry.initial-delay-ms:60000}",
+            fixedDelayString = "${card.expiry.interval-ms:300000}")
+    public void run() {
+        // Срок действия включает сам день expiration_date
+        LocalDate today = LocalDate.now();
+        long expired = 0;
+
+        while (true) {
+            int updated = batchTimer.record(() -> cardRepository.expireDueBatch(today, batchSize));
+            expired += updated;
+            expiredCounter.increment(updated);
+            if (updated < batchSize) {
+                break;
+            }
+            log.debug("Истечение срока карт: переведено {} карт, продолжаем", expired);
+        }
+
+        lastRunExpired.set(expired);
+        if (expired > 0) {
+            log.info("Истечение срока карт: {} карт переведено в EXPIRED", expired);
+        }
+    }
+}
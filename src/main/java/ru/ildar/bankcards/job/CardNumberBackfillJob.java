@@ -0,0 +1,115 @@
+package ru.ildar.bankcards.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.util.CardNumberEncryptor;
+import ru.ildar.bankcards.util.CardNumberMasker;
+import ru.ildar.bankcards.util.UuidOrder;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Заполняет last4 и fingerprint у карт, выпущенных до появления этих колонок,
+ * и перешифровывает их номера со случайным IV вместо фиксированного.
+ * Карты обрабатываются пачками по id, каждая пачка — в своей транзакции.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "card.backfill.enabled", havingValue = "true", matchIfMissing = true)
+public class CardNumberBackfillJob {
+
+    private final CardRepository cardRepository;
+    private final CardNumberEncryptor cardNumberEncryptor;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public CardNumberBackfillJob(CardRepository cardRepository,
+                                 CardNumberEncryptor cardNumberEncryptor,
+                                 TransactionTemplate transactionTemplate,
+                                 @Value("${card.backfill.batch-size:500}") int batchSize) {
+        this.cardRepository = cardRepository;
+        this.cardNumberEncryptor = cardNumberEncryptor;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${card.backfill.initial-delay-ms:30000}",
+            fixedDelayString = "${card.backfill.interval-ms:600000}")
+    public void run() {
+        UUID lastId = UuidOrder.MIN;
+        int processed = 0;
+
+        while (true) {
+            UUID afterId = lastId;
+            BatchResult batch = transactionTemplate.execute(status -> backfillBatch(afterId));
+            if (batch == null || batch.size() == 0) {
+                break;
+            }
+            processed += batch.updated();
+            lastId = batch.lastId();
+        }
+
+        if (processed > 0) {
+            log.info("Backfill номеров карт: обработано {} карт", processed);
+        }
+    }
+
+    private BatchResult backfillBatch(UUID afterId) {
+        List<Card> cards = cardRepository.findByFingerprintIsNullAndIdGreaterThanOrderByIdAsc(
+                afterId, Limit.of(batchSize));
+
+        Map<Card, String> plainNumbers = new LinkedHashMap<>();
+        Map<Card, String> fingerprints = new HashMap<>();
+        for (Card card : cards) {
+            try {
+                String plainNumber = cardNumberEncryptor.decrypt(card.getEncryptedNumber());
+                plainNumbers.put(card, plainNumber);
+                fingerprints.put(card, cardNumberEncryptor.fingerprint(plainNumber));
+            } catch (RuntimeException e) {
+                // Битая запись не должна останавливать обработку остальных; id идёт дальше по keyset
+                log.warn("Не удалось обработать номер карты {}: {}", card.getId(), e.getMessage());
+            }
+        }
+
+        // Отпечаток уникален: дубликат номера среди уже заполненных карт или внутри пачки
+        // нарушил бы ux_cards_fingerprint при коммите и откатывал бы пачку на каждом запуске
+        Set<String> taken = new HashSet<>(fingerprints.isEmpty()
+                ? List.of()
+                : cardRepository.findExistingFingerprints(fingerprints.values()));
+        int updated = 0;
+        for (Map.Entry<Card, String> entry : plainNumbers.entrySet()) {
+            Card card = entry.getKey();
+            String plainNumber = entry.getValue();
+            String fingerprint = fingerprints.get(card);
+            if (!taken.add(fingerprint)) {
+                log.warn("Номер карты {} совпадает с номером другой карты — отпечаток не заполнен", card.getId());
+                continue;
+            }
+            card.setLast4(CardNumberMasker.lastFour(plainNumber));
+            card.setFingerprint(fingerprint);
+            if (cardNumberEncryptor.isLegacy(card.getEncryptedNumber())) {
+                card.setEncryptedNumber(cardNumberEncryptor.encrypt(plainNumber));
+            }
+            updated++;
+        }
+
+        UUID lastId = cards.isEmpty() ? afterId : cards.get(cards.size() - 1).getId();
+        return new BatchResult(cards.size(), updated, lastId);
+    }
+
+    private record BatchResult(int size, int updated, UUID lastId) {
+    }
+}
@@ -0,0 +1,46 @@
+package ru.ildar.bankcards.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.ildar.bankcards.repository.IdempotencyKeyRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Удаляет сохранённые результаты Idempotency-Key старше idempotency.ttl.
+ * Удаление идёт пачками, чтобы не держать длинную транзакцию и блокировки.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeyCleanupJob {
+
+    private final IdempotencyKeyRepository repository;
+    private final Duration ttl;
+    private final int batchSize;
+
+    public IdempotencyKeyCleanupJob(IdempotencyKeyRepository repository,
+                                    @Value("${idempotency.ttl:24h}") Duration ttl,
+                                    @Value("${idempotency.cleanup.batch-size:1000}") int batchSize) {
+        this.repository = repository;
+        this.ttl = ttl;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.cleanup.interval-ms:600000}")
+    public void run() {
+        Instant before = Instant.now().minus(ttl);
+        int removed = 0;
+        int batch;
+        do {
+            batch = repository.deleteExpired(before, batchSize);
+            removed += batch;
+        } while (batch == batchSize);
+
+        if (removed > 0) {
+            log.info("Удалено {} просроченных ключей идемпотентности", removed);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.ildar.bankcards.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.repository.LedgerEntryRepository;
+import ru.ildar.bankcards.util.UuidOrder;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Периодически сворачивает хвост журнала проводок в card_balance_snapshots,
+ * чтобы баланс по журналу считался по снимку и короткому хвосту, а не по всей истории карты.
+ * Карты обходятся пачками по id; перед снимком пачка блокируется FOR SHARE, иначе в снимок
+ * не попала бы проводка перевода, закоммиченного уже после начала запроса.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "ledger.snapshot.enabled", havingValue = "true", matchIfMissing = true)
+public class LedgerSnapshotJob {
+
+    private final CardRepository cardRepository;
+    private final LedgerEntryRepository ledgerEntryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public LedgerSnapshotJob(CardRepository cardRepository,
+                             LedgerEntryRepository ledgerEntryRepository,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${ledger.snapshot.batch-size:500}") int batchSize) {
+        this.cardRepository = cardRepository;
+        this.ledgerEntryRepository = ledgerEntryRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${ledger.snapshot.initial-delay-ms:60000}",
+            fixedDelayString = "${ledger.snapshot.interval-ms:3600000}")
+    public void run() {
+        UUID lastId = UuidOrder.MIN;
+        int snapshots = 0;
+
+        while (true) {
+            List<UUID> cardIds = cardRepository.findIdsAfter(lastId, Limit.of(batchSize));
+            if (cardIds.isEmpty()) {
+                break;
+            }
+            Integer updated = transactionTemplate.execute(status -> {
+                cardRepository.lockAllForShare(cardIds);
+                return ledgerEntryRepository.snapshot(cardIds);
+            });
+            snapshots += updated != null ? updated : 0;
+            lastId = cardIds.get(cardIds.size() - 1);
+        }
+
+        if (snapshots > 0) {
+            log.info("Снимки балансов по журналу обновлены для {} карт", snapshots);
+        }
+    }
+}
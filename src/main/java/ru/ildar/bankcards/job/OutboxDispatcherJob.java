@@ -0,0 +1,137 @@
+package ru.ildar.bankcards.job;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.entity.OutboxEvent;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.repository.OutboxEventRepository;
+import ru.ildar.bankcards.service.CardBlockRequestService;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Разбирает transactional outbox пачками по batch-size событий.
+ * Пачка берётся FOR UPDATE SKIP LOCKED в транзакции, которая держит блокировку строк и ставит отметки
+ * processed_at, attempts и last_error, — узлы делят очередь без ожидания.
+ * Каждое событие обрабатывается в собственной транзакции (REQUIRES_NEW): ошибка одного события
+ * откатывает только его изменения и не мешает остальным событиям пачки.
+ * <p>
+ * Событие, которое нельзя обработать (CardOperationException), снимается с обработки сразу.
+ * При любой другой ошибке растёт attempts, причина пишется в last_error, и событие повторяется
+ * следующим запуском; после max-attempts попыток оно тоже снимается с обработки.
+ * Обработчики идемпотентны: если транзакция пачки откатится после обработки события, повтор безопасен.
+ * <p>
+ * Метрики: outbox.events.processed и outbox.events.failed.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "outbox.dispatcher.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxDispatcherJob {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final CardBlockRequestService cardBlockRequestService;
+    private final TransactionTemplate batchTransaction;
+    private final TransactionTemplate eventTransaction;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Counter processedCounter;
+    private final Counter failedCounter;
+
+    public OutboxDispatcherJob(OutboxEventRepository outboxEventRepository,
+                               CardBlockRequestService cardBlockRequestService,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${outbox.dispatcher.batch-size:100}") int batchSize,
+                               @Value("${outbox.dispatcher.max-attempts:5}") int maxAttempts) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.cardBlockRequestService = cardBlockRequestService;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.eventTransaction = new TransactionTemplate(transactionManager);
+        this.eventTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.processedCounter = Counter.builder("outbox.events.processed")
+                .description("Обработанные события outbox")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("outbox.events.failed")
+                .description("События outbox, снятые с обработки с ошибкой")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${outbox.dispatcher.initial-delay-ms:5000}",
+            fixedDelayString = "${outbox.dispatcher.interval-ms:1000}")
+    public void run() {
+        while (true) {
+            BatchResult batch;
+            try {
+                batch = batchTransaction.execute(status -> dispatchBatch());
+            } catch (RuntimeException e) {
+                log.warn("Пачка событий outbox откатана и будет повторена: {}", e.getMessage());
+                return;
+            }
+            if (batch == null) {
+                return;
+            }
+            // Счётчики — только после коммита: откатанная пачка не учитывается
+            processedCounter.increment(batch.size() - batch.failed() - batch.retried());
+            failedCounter.increment(batch.failed());
+            // События на повтор остаются в голове очереди — до следующего запуска их не трогаем
+            if (batch.size() < batchSize || batch.retried() > 0) {
+                return;
+            }
+        }
+    }
+
+    private BatchResult dispatchBatch() {
+        List<OutboxEvent> events = outboxEventRepository.lockNextBatch(batchSize);
+        Instant now = Instant.now();
+        int failed = 0;
+        int retried = 0;
+
+        for (OutboxEvent event : events) {
+            try {
+                eventTransaction.executeWithoutResult(status -> cardBlockRequestService.handle(event));
+            } catch (CardOperationException e) {
+                log.warn("Событие outbox {} ({}) не обработано: {}", event.getId(), event.getEventType(), e.getMessage());
+                event.setLastError(abbreviate(e.getMessage()));
+                failed++;
+            } catch (RuntimeException e) {
+                event.setAttempts(event.getAttempts() + 1);
+                event.setLastError(abbreviate(e.toString()));
+                if (event.getAttempts() < maxAttempts) {
+                    log.warn("Событие outbox {} ({}) будет повторено, попытка {}: {}",
+                            event.getId(), event.getEventType(), event.getAttempts(), e.toString());
+                    retried++;
+                    continue;
+                }
+                log.error("Событие outbox {} ({}) снято с обработки после {} попыток",
+                        event.getId(), event.getEventType(), event.getAttempts(), e);
+                failed++;
+            }
+            // Изменённые сущности сбрасываются при коммите одним JDBC-батчем
+            event.setProcessedAt(now);
+        }
+        return new BatchResult(events.size(), failed, retried);
+    }
+
+    private static String abbreviate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private record BatchResult(int size, int failed, int retried) {
+    }
+}
@@ -0,0 +1,42 @@
+package ru.ildar.bankcards.job;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.ildar.bankcards.repository.RevokedRefreshTokenRepository;
+
+import java.time.Instant;
+
+/**
+ * Удаляет отозванные refresh-токены, срок действия которых уже истёк.
+ * Удаление идёт пачками, чтобы не держать длинную транзакцию и блокировки.
+ */
+@Slf4j
+@Component
+public class RevokedRefreshTokenCleanupJob {
+
+    private final RevokedRefreshTokenRepository repository;
+    private final int batchSize;
+
+    public RevokedRefreshTokenCleanupJob(RevokedRefreshTokenRepository repository,
+                                         @Value("${jwt.refresh-revocation.cleanup.batch-size:1000}") int batchSize) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.refresh-revocation.cleanup.interval-ms:600000}")
+    public void run() {
+        Instant now = Instant.now();
+        int removed = 0;
+        int batch;
+        do {
+            batch = repository.deleteExpired(now, batchSize);
+            removed += batch;
+        } while (batch == batchSize);
+
+        if (removed > 0) {
+            log.info("Удалено {} истёкших отозванных refresh-токенов", removed);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ru.ildar.bankcards.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.ildar.bankcards.entity.CardBlockRequest;
+import ru.ildar.bankcards.entity.CardBlockRequestStatus;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface CardBlockRequestRepository extends JpaRepository<CardBlockRequest, UUID> {
+
+    boolean existsByCardIdAndStatusIn(UUID cardId, Collection<CardBlockRequestStatus> statuses);
+
+    /**
+     * Keyset-страница очереди заявок в статусе от старых к новым по индексу (status, created_at, id).
+     * Ведущее r.createdAt >= :createdAt — граница сканирования индекса, OR-условие лишь отсекает
+     * строки с тем же created_at.
+     */
+    @Query("""
+            select r from CardBlockRequest r
+            where r.status = :status
+              and r.createdAt >= :createdAt
+              and (r.createdAt > :createdAt or (r.createdAt = :createdAt and r.id > :id))
+            order by r.createdAt, r.id
+            """)
+    List<CardBlockRequest> findPageAfter(@Param("status") CardBlockRequestStatus status,
+                                         @Param("createdAt") Instant createdAt,
+                                         @Param("id") UUID id,
+                                         Limit limit);
+
+    /**
+     * Решение администратора по заявке. Условие на PENDING делает решение однократным:
+     * из двух параллельных решений применяется только первое.
+     *
+     * @return 1, если заявка была в PENDING и решение записано
+     */
+    @Modifying
+    @Query("""
+            update CardBlockRequest r set r.status = :status, r.decidedBy = :decidedBy, r.decidedAt = :decidedAt
+            where r.id = :id and r.status = ru.ildar.bankcards.entity.CardBlockRequestStatus.PENDING
+            """)
+    int decide(@Param("id") UUID id,
+               @Param("status") CardBlockRequestStatus status,
+               @Param("decidedBy") UUID decidedBy,
+               @Param("decidedAt") Instant decidedAt);
+}
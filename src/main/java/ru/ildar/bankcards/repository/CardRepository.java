@@ -1,24 +1,174 @@
 package ru.ildar.bankcards.repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.ildar.bankcards.entity.Card;
-import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.entity.CardStatus;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface CardRepository extends JpaRepository<Card, UUID> {
+public interface CardRepository extends JpaRepository<Card, UUID>, CardSearchRepository {
 
-    Page<Card> findByOwner(User owner, Pageable pageable);
+    String CARD_VIEW_COLUMNS =
+            "c.id, c.last4, c.encryptedNumber, o.username, c.expirationDate, c.status, c.balance";
 
-    // ДОБАВЛЕНО:
-    Page<Card> findAllByOwnerUsername(String username, Pageable pageable);
+    @Query(value = "select new ru.ildar.bankcards.repository.CardView(" + CARD_VIEW_COLUMNS + ") "
+            + "from Card c join c.owner o where o.username = :username",
+            countQuery = "select count(c) from Card c join c.owner o where o.username = :username")
+    Page<CardView> findViewsByOwnerUsername(@Param("username") String username, Pageable pageable);
 
-    Optional<Card> findByEncryptedNumber(String encryptedNumber);
+    // Keyset-страница без COUNT по индексу ix_cards_user_id_id; join с users только ради username владельца
+    @Query("select new ru.ildar.bankcards.repository.CardView(" + CARD_VIEW_COLUMNS + ") "
+            + "from Card c join c.owner o where o.id = :ownerId and c.id > :afterId order by c.id")
+    List<CardView> findViewsByOwnerIdAfter(@Param("ownerId") UUID ownerId, @Param("afterId") UUID afterId, Limit limit);
 
-    boolean existsByEncryptedNumber(String encryptedNumber);
+    long countByOwnerId(UUID ownerId);
+
+    // SELECT ... FOR UPDATE: строка карты блокируется до конца транзакции
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") UUID id);
+
+    // Блокирует карты пакетного перевода; ORDER BY id задаёт порядок захвата блокировок
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> findAllByIdInForUpdate(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Перевод одним запросом: обе строки блокируются FOR UPDATE в порядке id,
+     * списание проходит только при {@code status = 'ACTIVE' AND balance >= :amount} у обеих карт пользователя,
+     * зачисление — только если списание состоялось, и тогда же в журнал пишутся две проводки
+     * с общим :transferId. Версия строк увеличивается, чтобы не расходиться с оптимистическим режимом.
+     *
+     * @return имя {@link TransferGuard}: OK или первое нарушенное условие
+     */
+    @Transactional
+    @Query(value = """
+            WITH locked AS MATERIALIZED (
+                SELECT id, user_id, status, balance
+                FROM cards
+                WHERE id IN (:fromId, :toId)
+                ORDER BY id
+                FOR UPDATE
+            ),
+            debit AS (
+                UPDATE cards c
+                SET balance = c.balance - :amount, version = c.version + 1
+                FROM locked f, locked t
+                WHERE c.id = :fromId AND f.id = :fromId AND t.id = :toId
+                  AND f.user_id = :userId AND t.user_id = :userId
+                  AND f.status = 'ACTIVE' AND t.status = 'ACTIVE'
+                  AND f.balance >= :amount
+                RETURNING c.id
+            ),
+            credit AS (
+                UPDATE cards c
+                SET balance = c.balance + :amount, version = c.version + 1
+                WHERE c.id = :toId AND EXISTS (SELECT 1 FROM debit)
+                RETURNING c.id
+            ),
+            ledger AS (
+                INSERT INTO ledger_entries (transfer_id, card_id, counterparty_card_id, amount, entry_type)
+                SELECT :transferId, p.card_id, p.counterparty_card_id, p.amount, 'TRANSFER'
+                FROM credit,
+                     (VALUES (:fromId, :toId, -:amount), (:toId, :fromId, :amount))
+                         AS p(card_id, counterparty_card_id, amount)
+            )
+            SELECT CASE
+                WHEN EXISTS (SELECT 1 FROM credit) THEN 'OK'
+                WHEN f.id IS NULL THEN 'SOURCE_NOT_FOUND'
+                WHEN t.id IS NULL THEN 'TARGET_NOT_FOUND'
+                WHEN f.user_id <> :userId OR t.user_id <> :userId THEN 'NOT_OWNER'
+                WHEN f.status <> 'ACTIVE' THEN 'SOURCE_NOT_ACTIVE'
+                WHEN t.status <> 'ACTIVE' THEN 'TARGET_NOT_ACTIVE'
+                ELSE 'INSUFFICIENT_FUNDS'
+            END
+            FROM (SELECT 1) AS one
+            LEFT JOIN locked f ON f.id = :fromId
+            LEFT JOIN locked t ON t.id = :toId
+            """, nativeQuery = true)
+    String transferAtomically(@Param("fromId") UUID fromId,
+                              @Param("toId") UUID toId,
+                              @Param("userId") UUID userId,
+                              @Param("amount") BigDecimal amount,
+                              @Param("transferId") UUID transferId);
+
+    // Id карт постранично по возрастанию (keyset)
+    @Query("select c.id from Card c where c.id > :afterId order by c.id")
+    List<UUID> findIdsAfter(@Param("afterId") UUID afterId, Limit limit);
+
+    // FOR SHARE ждёт незавершённые переводы по этим картам и не даёт начаться новым до конца транзакции
+    @Query(value = "SELECT id FROM cards WHERE id IN (:ids) ORDER BY id FOR SHARE", nativeQuery = true)
+    List<UUID> lockAllForShare(@Param("ids") Collection<UUID> ids);
+
+    /**
+     * Переводит в EXPIRED не больше limit просроченных активных карт одним UPDATE.
+     * Кандидаты выбираются по частичному индексу ix_cards_active_expiration_date_id;
+     * SKIP LOCKED пропускает карты, заблокированные переводом или другим узлом,
+     * поэтому несколько узлов делят работу без ожидания друг друга.
+     * Версия увеличивается, чтобы оптимистичный перевод, прочитавший карту активной, не записался поверх.
+     *
+     * @return число переведённых карт; меньше limit — просроченных карт не осталось
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            WITH due AS (
+                SELECT id FROM cards
+                WHERE status = 'ACTIVE' AND expiration_date < :today
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED
+            )
+            UPDATE cards c SET status = 'EXPIRED', version = c.version + 1
+            FROM due
+            WHERE c.id = due.id
+            """, nativeQuery = true)
+    int expireDueBatch(@Param("today") LocalDate today, @Param("limit") int limit);
+
+    Optional<Card> findByFingerprint(String fingerprint);
+
+    boolean existsByFingerprint(String fingerprint);
+
+    // Какие из отпечатков уже заняты: одна проверка на пачку выпускаемых карт
+    @Query("select c.fingerprint from Card c where c.fingerprint in :fingerprints")
+    List<String> findExistingFingerprints(@Param("fingerprints") Collection<String> fingerprints);
+
+    boolean existsByIdAndOwnerId(UUID id, UUID ownerId);
+
+    boolean existsByIdAndOwnerUsername(UUID id, String username);
+
+    // Карты без отпечатка (выпущены до появления last4/fingerprint), постранично по id
+    List<Card> findByFingerprintIsNullAndIdGreaterThanOrderByIdAsc(UUID afterId, Limit limit);
+
+    // Статус карты, только если она принадлежит пользователю
+    @Query("select c.status from Card c where c.id = :id and c.owner.id = :ownerId")
+    Optional<CardStatus> findStatusByIdAndOwnerId(@Param("id") UUID id, @Param("ownerId") UUID ownerId);
+
+    /**
+     * Блокирует карту, если она ещё не заблокирована. Версия увеличивается по той же причине,
+     * что и в {@link #expireDueBatch}.
+     *
+     * @return 1, если статус изменился
+     */
+    @Modifying
+    @Query("""
+            update Card c set c.status = ru.ildar.bankcards.entity.CardStatus.BLOCKED, c.version = c.version + 1
+            where c.id = :id and c.status <> ru.ildar.bankcards.entity.CardStatus.BLOCKED
+            """)
+    int blockIfNotBlocked(@Param("id") UUID id);
 }
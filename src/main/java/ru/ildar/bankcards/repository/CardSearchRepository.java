@@ -0,0 +1,15 @@
+package ru.ildar.bankcards.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.ildar.bankcards.entity.Card;
+
+import java.util.List;
+
+public interface CardSearchRepository {
+
+    /**
+     * Карты по спецификации сразу в виде CardView (один запрос с join owner), без COUNT.
+     */
+    List<CardView> searchViews(Specification<Card> spec, Sort sort, int limit);
+}
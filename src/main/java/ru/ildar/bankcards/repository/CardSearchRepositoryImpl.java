@@ -0,0 +1,53 @@
+package ru.ildar.bankcards.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.User;
+
+import java.util.List;
+
+/**
+ * Реализация CardSearchRepository: JpaSpecificationExecutor возвращает только сущности,
+ * а карте в листинге нужен username владельца, поэтому проекция собирается через Criteria API.
+ */
+class CardSearchRepositoryImpl implements CardSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<CardView> searchViews(Specification<Card> spec, Sort sort, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CardView> query = cb.createQuery(CardView.class);
+        Root<Card> card = query.from(Card.class);
+        Join<Card, User> owner = card.join("owner");
+
+        query.select(cb.construct(CardView.class,
+                card.get("id"),
+                card.get("last4"),
+                card.get("encryptedNumber"),
+                owner.get("username"),
+                card.get("expirationDate"),
+                card.get("status"),
+                card.get("balance")));
+        // Specification.allOf() без условий (поиск без фильтров и курсора) возвращает null
+        Predicate where = spec != null ? spec.toPredicate(card, query, cb) : null;
+        if (where != null) {
+            query.where(where);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, card, cb));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
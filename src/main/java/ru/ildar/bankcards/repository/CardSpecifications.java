@@ -0,0 +1,71 @@
+package ru.ildar.bankcards.repository;
+
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Условия поиска карт. Каждое условие ложится на индекс из card.changelog.yaml:
+ * статус — на частичные индексы по BLOCKED/EXPIRED, владелец — на (user_id, id),
+ * срок действия и баланс — на (expiration_date, id) и (balance, id).
+ * Владелец сравнивается по owner.id, чтобы условие не добавляло join с users.
+ */
+public final class CardSpecifications {
+
+    private CardSpecifications() {
+    }
+
+    public static Specification<Card> hasStatus(CardStatus status) {
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<Card> ownedBy(UUID ownerId) {
+        return (root, query, cb) -> cb.equal(root.get("owner").get("id"), ownerId);
+    }
+
+    public static Specification<Card> expiresOnOrAfter(LocalDate date) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("expirationDate"), date);
+    }
+
+    public static Specification<Card> expiresOnOrBefore(LocalDate date) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("expirationDate"), date);
+    }
+
+    public static Specification<Card> balanceAtLeast(BigDecimal amount) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("balance"), amount);
+    }
+
+    public static Specification<Card> balanceAtMost(BigDecimal amount) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("balance"), amount);
+    }
+
+    /**
+     * Строки строго после ключа (value, id) последней строки предыдущей страницы
+     * в порядке (attribute, id) по направлению direction.
+     * Ведущее условие attribute >= value (<= для убывания) задаёт границу сканирования индекса
+     * (attribute, id): по одному OR-условию PostgreSQL прочитал бы индекс с начала и отфильтровал строки.
+     */
+    public static <T extends Comparable<? super T>> Specification<Card> after(
+            String attribute, Sort.Direction direction, T value, UUID id) {
+        return (root, query, cb) -> {
+            Path<UUID> idPath = root.get("id");
+            Predicate afterId = direction.isAscending() ? cb.greaterThan(idPath, id) : cb.lessThan(idPath, id);
+            if ("id".equals(attribute)) {
+                return afterId;
+            }
+            Path<T> sortKey = root.get(attribute);
+            Predicate beyond = direction.isAscending() ? cb.greaterThan(sortKey, value) : cb.lessThan(sortKey, value);
+            Predicate bound = direction.isAscending()
+                    ? cb.greaterThanOrEqualTo(sortKey, value)
+                    : cb.lessThanOrEqualTo(sortKey, value);
+            return cb.and(bound, cb.or(beyond, cb.and(cb.equal(sortKey, value), afterId)));
+        };
+    }
+}
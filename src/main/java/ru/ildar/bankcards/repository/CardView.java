@@ -0,0 +1,23 @@
+package ru.ildar.bankcards.repository;
+
+import ru.ildar.bankcards.entity.CardStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Колонки карты для листингов, выбираемые одним запросом вместе с username владельца.
+ * Сущности Card и User при этом не создаются, поэтому нет ни ленивой загрузки owner,
+ * ни EAGER-загрузки его ролей на каждую карту.
+ *
+ * @param encryptedNumber нужен только картам без last4, ещё не обработанным CardNumberBackfillJob
+ */
+public record CardView(UUID id,
+                       String last4,
+                       String encryptedNumber,
+                       String ownerUsername,
+                       LocalDate expirationDate,
+                       CardStatus status,
+                       BigDecimal balance) {
+}
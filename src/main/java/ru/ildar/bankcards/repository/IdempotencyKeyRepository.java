@@ -0,0 +1,58 @@
+package ru.ildar.bankcards.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.ildar.bankcards.entity.IdempotencyKey;
+
+import java.time.Instant;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    /**
+     * Занимает ключ. Пока транзакция, вставившая ключ, не завершена, параллельная вставка
+     * того же ключа (в том числе с другого узла) ждёт её, а после коммита получает 0.
+     *
+     * @return 1, если ключ занят этой транзакцией, 0 — если результат уже сохранён
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (id, request_hash, created_at)
+            VALUES (:id, :requestHash, now())
+            ON CONFLICT (id) DO NOTHING
+            """, nativeQuery = true)
+    int claim(@Param("id") String id, @Param("requestHash") String requestHash);
+
+    @Transactional
+    @Modifying
+    @Query("update IdempotencyKey k set k.responseStatus = :status, k.responseBody = :body where k.id = :id")
+    int complete(@Param("id") String id, @Param("status") int status, @Param("body") String body);
+
+    /**
+     * Сохраняет готовый результат (ошибку), если ключ ещё никто не занял.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (id, request_hash, response_status, response_body, created_at)
+            VALUES (:id, :requestHash, :status, :body, now())
+            ON CONFLICT (id) DO NOTHING
+            """, nativeQuery = true)
+    int saveIfAbsent(@Param("id") String id,
+                     @Param("requestHash") String requestHash,
+                     @Param("status") int status,
+                     @Param("body") String body);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM idempotency_keys
+            WHERE id IN (SELECT id FROM idempotency_keys WHERE created_at < :before LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteExpired(@Param("before") Instant before, @Param("limit") int limit);
+}
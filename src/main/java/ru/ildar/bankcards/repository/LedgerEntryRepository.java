@@ -0,0 +1,51 @@
+package ru.ildar.bankcards.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.ildar.bankcards.entity.LedgerEntry;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    List<LedgerEntry> findByTransferIdOrderBySeqAsc(UUID transferId);
+
+    /**
+     * Баланс из журнала: последний снимок плюс проводки после него (индекс (card_id, seq)).
+     */
+    @Query(value = """
+            SELECT COALESCE(s.balance, 0) + COALESCE((
+                SELECT SUM(e.amount)
+                FROM ledger_entries e
+                WHERE e.card_id = :cardId AND e.seq > COALESCE(s.last_seq, 0)
+            ), 0)
+            FROM (SELECT 1) AS one
+            LEFT JOIN card_balance_snapshots s ON s.card_id = :cardId
+            """, nativeQuery = true)
+    BigDecimal derivedBalance(@Param("cardId") UUID cardId);
+
+    /**
+     * Переносит хвост журнала в снимок для карт, у которых есть новые проводки.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO card_balance_snapshots (card_id, balance, last_seq, created_at)
+            SELECT e.card_id, COALESCE(MAX(s.balance), 0) + SUM(e.amount), MAX(e.seq), now()
+            FROM ledger_entries e
+            LEFT JOIN card_balance_snapshots s ON s.card_id = e.card_id
+            WHERE e.card_id IN (:cardIds) AND e.seq > COALESCE(s.last_seq, 0)
+            GROUP BY e.card_id
+            ON CONFLICT (card_id) DO UPDATE
+            SET balance = EXCLUDED.balance, last_seq = EXCLUDED.last_seq, created_at = EXCLUDED.created_at
+            """, nativeQuery = true)
+    int snapshot(@Param("cardIds") Collection<UUID> cardIds);
+}
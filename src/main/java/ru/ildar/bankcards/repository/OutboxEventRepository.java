@@ -0,0 +1,26 @@
+package ru.ildar.bankcards.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.ildar.bankcards.entity.OutboxEvent;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * Порция необработанных событий в порядке записи. Строки блокируются до конца транзакции,
+     * а занятые другим узлом пропускаются — несколько диспетчеров делят очередь без ожидания.
+     */
+    @Query(value = """
+            SELECT * FROM outbox_events
+            WHERE processed_at IS NULL
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(@Param("limit") int limit);
+}
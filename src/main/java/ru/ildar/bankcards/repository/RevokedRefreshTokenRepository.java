@@ -0,0 +1,39 @@
+package ru.ildar.bankcards.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.ildar.bankcards.entity.RevokedRefreshToken;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Repository
+public interface RevokedRefreshTokenRepository extends JpaRepository<RevokedRefreshToken, UUID> {
+
+    /**
+     * Отзывает refresh-токен. Из параллельных обновлений одним токеном (в том числе на разных узлах)
+     * вставка проходит только у одного.
+     *
+     * @return 1, если токен отозван этим вызовом, 0 — если он уже был использован
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO revoked_refresh_tokens (jti, expires_at)
+            VALUES (:jti, :expiresAt)
+            ON CONFLICT (jti) DO NOTHING
+            """, nativeQuery = true)
+    int revoke(@Param("jti") UUID jti, @Param("expiresAt") Instant expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM revoked_refresh_tokens
+            WHERE jti IN (SELECT jti FROM revoked_refresh_tokens WHERE expires_at < :before LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteExpired(@Param("before") Instant before, @Param("limit") int limit);
+}
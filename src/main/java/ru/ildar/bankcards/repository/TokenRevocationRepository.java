@@ -0,0 +1,39 @@
+package ru.ildar.bankcards.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.ildar.bankcards.entity.TokenRevocation;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, UUID> {
+
+    /**
+     * Записывает отзыв; повторный отзыв только сдвигает момент вперёд.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            INSERT INTO token_revocations (user_id, revoked_at)
+            VALUES (:userId, :revokedAt)
+            ON CONFLICT (user_id) DO UPDATE SET revoked_at = GREATEST(token_revocations.revoked_at, EXCLUDED.revoked_at)
+            """, nativeQuery = true)
+    int revoke(@Param("userId") UUID userId, @Param("revokedAt") Instant revokedAt);
+
+    List<TokenRevocation> findByRevokedAtAfter(Instant after);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            DELETE FROM token_revocations
+            WHERE user_id IN (SELECT user_id FROM token_revocations WHERE revoked_at < :before LIMIT :limit)
+            """, nativeQuery = true)
+    int deleteExpired(@Param("before") Instant before, @Param("limit") int limit);
+}
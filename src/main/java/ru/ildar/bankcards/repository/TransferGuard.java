@@ -0,0 +1,35 @@
+package ru.ildar.bankcards.repository;
+
+import ru.ildar.bankcards.exception.ErrorReason;
+
+/**
+ * Результат атомарного перевода {@link CardRepository#transferAtomically}:
+ * OK или первое нарушенное условие.
+ */
+public enum TransferGuard {
+
+    OK(null, null),
+    SAME_CARD(ErrorReason.SAME_CARD, "Нельзя перевести средства на ту же карту"),
+    SOURCE_NOT_FOUND(ErrorReason.CARD_NOT_FOUND, "Исходящая карта не найдена"),
+    TARGET_NOT_FOUND(ErrorReason.CARD_NOT_FOUND, "Целевая карта не найдена"),
+    NOT_OWNER(ErrorReason.NOT_CARD_OWNER, "Перевод возможен только между своими картами"),
+    SOURCE_NOT_ACTIVE(ErrorReason.CARD_NOT_ACTIVE, "Исходящая карта не активна"),
+    TARGET_NOT_ACTIVE(ErrorReason.CARD_NOT_ACTIVE, "Целевая карта не активна"),
+    INSUFFICIENT_FUNDS(ErrorReason.INSUFFICIENT_FUNDS, "Недостаточно средств на исходящей карте");
+
+    private final ErrorReason reason;
+    private final String message;
+
+    TransferGuard(ErrorReason reason, String message) {
+        this.reason = reason;
+        this.message = message;
+    }
+
+    public ErrorReason getReason() {
+        return reason;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
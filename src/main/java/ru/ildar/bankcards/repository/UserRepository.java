@@ -1,10 +1,17 @@
 package ru.ildar.bankcards.repository;
 
 import jakarta.validation.constraints.NotNull;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.ildar.bankcards.entity.User;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,6 +20,26 @@ public interface UserRepository extends JpaRepository<User, UUID> {
 
     Optional<User> findByUsername(String username);
 
+    // Только id, без загрузки сущности и её EAGER-ролей
+    @Query("select u.id from User u where u.username = :username")
+    Optional<UUID> findIdByUsername(@Param("username") String username);
+
+    @Query("select new ru.ildar.bankcards.repository.UserView(u.id, u.username, u.email) "
+            + "from User u where u.id > :afterId order by u.id")
+    List<UserView> findViewsAfter(@Param("afterId") UUID afterId, Limit limit);
+
+    // Роли сразу всей страницы одним запросом вместо отдельного запроса на каждого пользователя
+    @Query("select new ru.ildar.bankcards.repository.UserRoleView(u.id, r) from User u join u.roles r where u.id in :ids")
+    List<UserRoleView> findRolesByUserIdIn(@Param("ids") Collection<UUID> ids);
+
+    // Хэш заменяется, только если не менялся с момента чтения: параллельная смена пароля не затирается
+    @Transactional
+    @Modifying
+    @Query("update User u set u.password = :newPassword where u.id = :id and u.password = :oldPassword")
+    int updatePasswordIfUnchanged(@Param("id") UUID id,
+                                  @Param("oldPassword") String oldPassword,
+                                  @Param("newPassword") String newPassword);
+
     boolean existsByUsername(String username);
 
     boolean existsByEmail(String email);
@@ -0,0 +1,8 @@
+package ru.ildar.bankcards.repository;
+
+import ru.ildar.bankcards.entity.Role;
+
+import java.util.UUID;
+
+public record UserRoleView(UUID userId, Role role) {
+}
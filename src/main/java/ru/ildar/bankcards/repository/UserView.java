@@ -0,0 +1,9 @@
+package ru.ildar.bankcards.repository;
+
+import java.util.UUID;
+
+/**
+ * Колонки пользователя для листинга администратора — без хэша пароля и без EAGER-загрузки ролей.
+ */
+public record UserView(UUID id, String username, String email) {
+}
@@ -1,27 +1,62 @@
 package ru.ildar.bankcards.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.RequiredTypeException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import ru.ildar.bankcards.entity.Role;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider tokenProvider;
     private final UserDetailsServiceImpl userDetailsService;
+    private final PrincipalCache principalCache;
+    private final TokenRevocationList revocationList;
+    private final boolean statelessRoles;
+    private final Timer validTokenTimer;
+    private final Timer invalidTokenTimer;
+    private final ObservationRegistry observationRegistry;
 
-    public JwtAuthFilter(JwtTokenProvider tokenProvider, UserDetailsServiceImpl userDetailsService) {
+    public JwtAuthFilter(JwtTokenProvider tokenProvider,
+                         UserDetailsServiceImpl userDetailsService,
+                         PrincipalCache principalCache,
+                         TokenRevocationList revocationList,
+                         ObjectProvider<MeterRegistry> meterRegistryProvider,
+                         ObjectProvider<ObservationRegistry> observationRegistryProvider,
+                         @Value("${jwt.stateless-roles:true}") boolean statelessRoles) {
         this.tokenProvider = tokenProvider;
         this.userDetailsService = userDetailsService;
+        this.principalCache = principalCache;
+        this.revocationList = revocationList;
+        this.statelessRoles = statelessRoles;
+        // Как и в GlobalExceptionHandler: в срезе @WebMvcTest реестров нет
+        MeterRegistry meterRegistry = meterRegistryProvider.getIfAvailable(() -> Metrics.globalRegistry);
+        this.validTokenTimer = validationTimer(meterRegistry, "valid");
+        this.invalidTokenTimer = validationTimer(meterRegistry, "invalid");
+        this.observationRegistry = observationRegistryProvider.getIfAvailable(() -> ObservationRegistry.NOOP);
     }
 
     @Override
@@ -30,23 +65,90 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                                     FilterChain filterChain)
             throws ServletException, IOException {
 
+        // Отдельный спан только на аутентификацию: в трассе видно, сколько заняли проверка токена
+        // и загрузка пользователя, а не весь запрос целиком
+        Observation.createNotStarted("security.jwt", observationRegistry)
+                .contextualName("jwt-authentication")
+                .observe(() -> authenticate(request));
+
+        filterChain.doFilter(request, response);
+    }
+
+    private void authenticate(HttpServletRequest request) {
         String jwt = getJwtFromRequest(request);
 
-        if (jwt != null && tokenProvider.validateToken(jwt)) {
-            String username = tokenProvider.getUsernameFromJwt(jwt);
+        // Подпись проверяется один раз, повторные запросы с тем же токеном берутся из кэша
+        Claims claims = null;
+        if (jwt != null) {
+            long start = System.nanoTime();
+            claims = tokenProvider.parseAndValidate(jwt).orElse(null);
+            (claims != null ? validTokenTimer : invalidTokenTimer)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (claims != null) {
+            UserDetails userDetails = resolvePrincipal(claims);
+            if (userDetails != null) {
+                UsernamePasswordAuthenticationToken authentication =
+                        new UsernamePasswordAuthenticationToken(
+                                userDetails,
+                                null,
+                                userDetails.getAuthorities());
 
-            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities());
+                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        }
+    }
 
-            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+    /**
+     * В stateless-режиме principal собирается из подписанных claims без запроса в БД.
+     * Токены без ролей (выпущенные до включения режима) обрабатываются по-старому, через кэш.
+     * Возвращает null, если токен отозван или его claims некорректны (неизвестная роль, битый uid).
+     */
+    private UserDetails resolvePrincipal(Claims claims) {
+        String username = claims.getSubject();
+        UUID userId;
+        Set<Role> roles;
+        try {
+            userId = parseUserId(claims.get(JwtTokenProvider.CLAIM_USER_ID, String.class));
+            Collection<?> roleClaims = claims.get(JwtTokenProvider.CLAIM_ROLES, Collection.class);
+            roles = roleClaims != null ? parseRoles(roleClaims) : null;
+        } catch (IllegalArgumentException | RequiredTypeException e) {
+            // Подпись верна, но содержимое не разбирается (например, роль удалили из enum) —
+            // такой токен считается недействительным, запрос идёт дальше без аутентификации
+            return null;
         }
 
-        filterChain.doFilter(request, response);
+        if (revocationList.isRevoked(userId, claims.getIssuedAt())) {
+            return null;
+        }
+
+        if (statelessRoles && userId != null && roles != null) {
+            return UserPrincipal.create(userId, username, roles);
+        }
+
+        return principalCache.get(username, userDetailsService::loadUserByUsername);
+    }
+
+    private static Timer validationTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("jwt.validation")
+                .description("Проверка JWT в JwtAuthFilter, включая попадания в кэш проверенных токенов")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static UUID parseUserId(String value) {
+        return value != null ? UUID.fromString(value) : null;
+    }
+
+    private static Set<Role> parseRoles(Collection<?> roles) {
+        Set<Role> result = EnumSet.noneOf(Role.class);
+        for (Object role : roles) {
+            result.add(Role.valueOf(String.valueOf(role)));
+        }
+        return result;
     }
 
     private String getJwtFromRequest(HttpServletRequest request) {
@@ -0,0 +1,142 @@
+package ru.ildar.bankcards.security;
+
+import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.ildar.bankcards.config.JwtConfig;
+
+import javax.crypto.SecretKey;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Набор ключей подписи JWT, проиндексированный по kid.
+ * <p>
+ * Без jwt.key-ring-file набор состоит из одного ключа jwt.secret (kid = jwt.key-id).
+ * Если файл задан, набор ключей и активный kid берутся только из него, а jwt.secret не используется:
+ * <pre>
+ * active=2025-07
+ * 2025-06=...секрет не короче 32 байт...
+ * 2025-07=...
+ * </pre>
+ * Файл перечитывается по расписанию, поэтому ротация проходит без рестарта узлов:
+ * сначала новый ключ добавляется на все узлы (только проверка), затем переключается active,
+ * старый ключ удаляется из файла после истечения выданных им refresh-токенов. При переходе на файл
+ * в него переносится и прежний ключ из jwt.secret под своим kid — тогда его можно вывести так же.
+ */
+@Slf4j
+@Component
+public class JwtKeyRing {
+
+    private static final String ACTIVE_PROPERTY = "active";
+
+    private final JwtConfig jwtConfig;
+
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+
+    private volatile Snapshot snapshot;
+
+    private volatile long keyRingFileModified = -1;
+
+    public JwtKeyRing(JwtConfig jwtConfig) {
+        this.jwtConfig = jwtConfig;
+        this.snapshot = load();
+    }
+
+    public String activeKeyId() {
+        return snapshot.activeKid();
+    }
+
+    public SecretKey activeKey() {
+        Snapshot current = snapshot;
+        return current.keys().get(current.activeKid());
+    }
+
+    /**
+     * Ключ для проверки подписи по kid из заголовка токена.
+     * Токены без kid, выпущенные до появления ротации, проверяются базовым ключом.
+     *
+     * @return ключ или null, если kid неизвестен
+     */
+    public SecretKey resolve(String kid) {
+        return snapshot.keys().get(kid != null ? kid : jwtConfig.getKeyId());
+    }
+
+    /**
+     * Подписка на смену набора ключей (например, чтобы сбросить кэш проверенных токенов).
+     */
+    public void addReloadListener(Runnable listener) {
+        reloadListeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.key-ring-refresh-ms:30000}")
+    public void refresh() {
+        Path file = keyRingFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            long modified = Files.getLastModifiedTime(file).toMillis();
+            if (modified == keyRingFileModified) {
+                return;
+            }
+            snapshot = load();
+            reloadListeners.forEach(Runnable::run);
+            log.info("Набор ключей JWT перечитан: активный kid={}, всего ключей={}",
+                    snapshot.activeKid(), snapshot.keys().size());
+        } catch (IOException | RuntimeException e) {
+            // Оставляем прежний набор ключей, чтобы не уронить аутентификацию из-за битого файла
+            log.warn("Не удалось перечитать набор ключей JWT из {}: {}", file, e.getMessage());
+        }
+    }
+
+    private Snapshot load() {
+        Map<String, SecretKey> keys = new HashMap<>();
+        String activeKid = jwtConfig.getKeyId();
+
+        Path file = keyRingFile();
+        if (file == null) {
+            keys.put(jwtConfig.getKeyId(), toKey(jwtConfig.getSecret()));
+        } else {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                keyRingFileModified = Files.getLastModifiedTime(file).toMillis();
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new IllegalStateException("Не удалось прочитать набор ключей JWT: " + file, e);
+            }
+            for (String kid : properties.stringPropertyNames()) {
+                if (!ACTIVE_PROPERTY.equals(kid)) {
+                    keys.put(kid, toKey(properties.getProperty(kid)));
+                }
+            }
+            activeKid = properties.getProperty(ACTIVE_PROPERTY, activeKid);
+        }
+
+        if (!keys.containsKey(activeKid)) {
+            throw new IllegalStateException("Активный kid отсутствует в наборе ключей JWT: " + activeKid);
+        }
+        return new Snapshot(Map.copyOf(keys), activeKid);
+    }
+
+    private Path keyRingFile() {
+        String location = jwtConfig.getKeyRingFile();
+        return location == null || location.isBlank() ? null : Path.of(location);
+    }
+
+    private static SecretKey toKey(String secret) {
+        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private record Snapshot(Map<String, SecretKey> keys, String activeKid) {
+    }
+}
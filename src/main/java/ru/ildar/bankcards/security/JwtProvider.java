@@ -1,38 +0,0 @@
-package ru.ildar.bankcards.security;
-
-import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Component;
-
-import javax.annotation.PostConstruct;
-import javax.crypto.SecretKey;
-import java.util.Base64;
-import java.util.Date;
-
-@Component
-public class JwtProvider {
-
-    @Value("${jwt.secret}")
-    private String jwtSecret;
-
-    private SecretKey secretKey;
-
-    private final long jwtExpirationMs = 86400000; // 1 день
-
-    @PostConstruct
-    public void init() {
-        byte[] decodedKey = Base64.getDecoder().decode(jwtSecret);
-        this.secretKey = Keys.hmacShaKeyFor(decodedKey);
-    }
-
-    public String generateToken(String username) {
-        return Jwts.builder()
-                .setSubject(username)
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(System.currentTimeMillis() + jwtExpirationMs))
-                .signWith(secretKey, SignatureAlgorithm.HS512)
-                .compact();
-    }
-}
@@ -1,60 +1,232 @@
 package ru.ildar.bankcards.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
+import ru.ildar.bankcards.config.JwtConfig;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
 
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtTokenProvider {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLES = "roles";
+    public static final String CLAIM_TOKEN_TYPE = "token_type";
 
-    @Value("${jwt.access-token-expiration-ms}")
-    private long jwtExpirationMs;
+    private static final String TOKEN_TYPE_ACCESS = "access";
+    private static final String TOKEN_TYPE_REFRESH = "refresh";
 
-    private Key key;
+    private final JwtConfig jwtConfig;
+    private final JwtKeyRing keyRing;
+    private final long verifiedCacheMaxSize;
+
+    // Парсер неизменяем и потокобезопасен — строим один раз, ключ выбирается по kid из заголовка
+    private JwtParser parser;
+
+    // Уже проверенные токены: ключ — SHA-256 токена, запись живёт до exp токена
+    private Cache<String, Claims> verifiedTokens;
+
+    public JwtTokenProvider(JwtConfig jwtConfig,
+                            JwtKeyRing keyRing,
+                            @Value("${jwt.verified-token-cache.max-size:10000}") long verifiedCacheMaxSize) {
+        this.jwtConfig = jwtConfig;
+        this.keyRing = keyRing;
+        this.verifiedCacheMaxSize = verifiedCacheMaxSize;
+    }
 
     @PostConstruct
     public void init() {
-        key = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        Key key = keyRing.resolve(header.getKeyId());
+                        if (key == null) {
+                            throw new UnsupportedJwtException("Неизвестный kid: " + header.getKeyId());
+                        }
+                        return key;
+                    }
+                })
+                .build();
+        verifiedTokens = verifiedCacheMaxSize > 0
+                ? Caffeine.newBuilder()
+                    .maximumSize(verifiedCacheMaxSize)
+                    .expireAfter(new TokenExpiry())
+                    .build()
+                : null;
+        if (verifiedTokens != null) {
+            // Ключ могли удалить из набора — токены, проверенные им, должны перепроверяться
+            keyRing.addReloadListener(verifiedTokens::invalidateAll);
+        }
     }
 
-    public String generateToken(Authentication authentication) {
-        String username = authentication.getName();
-        Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + jwtExpirationMs);
+    /**
+     * Access-токен с ролями и UUID пользователя в подписанных claims —
+     * JwtAuthFilter строит аутентификацию без обращения к БД.
+     */
+    public String generateToken(User user) {
+        return sign(Jwts.builder()
+                        .setSubject(user.getUsername())
+                        .claim(CLAIM_USER_ID, user.getId().toString())
+                        .claim(CLAIM_ROLES, user.getRoles().stream().map(Role::name).toList())
+                        .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_ACCESS),
+                jwtConfig.getAccessTokenExpirationMs());
+    }
 
-        return Jwts.builder()
-                .setSubject(username)
-                .setIssuedAt(now)
-                .setExpiration(expiryDate)
-                .signWith(key, SignatureAlgorithm.HS256)
-                .compact();
+    /**
+     * Refresh-токен: только subject, UUID и jti, живёт jwt.refresh-token-expiration-ms.
+     * Роли не переносятся — при обновлении пользователь заново читается из БД.
+     * По jti токен отзывается при обмене, поэтому использовать его можно один раз.
+     */
+    public String generateRefreshToken(User user) {
+        return sign(Jwts.builder()
+                        .setSubject(user.getUsername())
+                        .setId(UUID.randomUUID().toString())
+                        .claim(CLAIM_USER_ID, user.getId().toString())
+                        .claim(CLAIM_TOKEN_TYPE, TOKEN_TYPE_REFRESH),
+                jwtConfig.getRefreshTokenExpirationMs());
+    }
+
+    /**
+     * Проверяет подпись и срок действия access-токена за один разбор и возвращает его claims.
+     * Повторные запросы с тем же токеном обслуживаются из кэша без проверки HMAC.
+     * Возвращаемые claims общие для всех вызовов — их нельзя изменять.
+     *
+     * @param token JWT без префикса "Bearer "
+     * @return claims валидного токена или пустой Optional
+     */
+    public Optional<Claims> parseAndValidate(String token) {
+        if (token == null || token.isEmpty()) {
+            return Optional.empty();
+        }
+        if (verifiedTokens == null) {
+            return Optional.ofNullable(parseAccessOrNull(token));
+        }
+
+        String hash = hash(token);
+        Claims cached = verifiedTokens.getIfPresent(hash);
+        if (cached != null) {
+            // Caffeine вытесняет истёкшие записи лениво — дополнительно сверяем exp
+            if (isExpired(cached)) {
+                verifiedTokens.invalidate(hash);
+                return Optional.empty();
+            }
+            return Optional.of(cached);
+        }
+
+        Claims claims = parseAccessOrNull(token);
+        if (claims != null) {
+            verifiedTokens.put(hash, claims);
+        }
+        return Optional.ofNullable(claims);
+    }
+
+    /**
+     * Проверяет refresh-токен. Access-токен здесь не принимается, и наоборот.
+     */
+    public Optional<Claims> parseRefreshToken(String token) {
+        Claims claims = parseOrNull(token);
+        if (claims == null || !TOKEN_TYPE_REFRESH.equals(claims.get(CLAIM_TOKEN_TYPE, String.class))) {
+            return Optional.empty();
+        }
+        return Optional.of(claims);
+    }
+
+    public Claims getClaimsFromJwt(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public String getUsernameFromJwt(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return getClaimsFromJwt(token).getSubject();
     }
 
     public boolean validateToken(String token) {
+        return parseAndValidate(token).isPresent();
+    }
+
+    private String sign(JwtBuilder builder, long expirationMs) {
+        Date now = new Date();
+        SecretKey key = keyRing.activeKey();
+        return builder
+                .setHeaderParam(JwsHeader.KEY_ID, keyRing.activeKeyId())
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + expirationMs))
+                .signWith(key, SignatureAlgorithm.forSigningKey(key))
+                .compact();
+    }
+
+    private Claims parseAccessOrNull(String token) {
+        Claims claims = parseOrNull(token);
+        // Токены без token_type выпущены до появления refresh-токенов и считаются access
+        if (claims != null && TOKEN_TYPE_REFRESH.equals(claims.get(CLAIM_TOKEN_TYPE, String.class))) {
+            return null;
+        }
+        return claims;
+    }
+
+    private Claims parseOrNull(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
+            return parser.parseClaimsJws(token).getBody();
         } catch (JwtException | IllegalArgumentException ex) {
-            // Логировать ошибку при необходимости
-            return false;
+            return null;
+        }
+    }
+
+    private static boolean isExpired(Claims claims) {
+        Date expiration = claims.getExpiration();
+        return expiration != null && expiration.getTime() <= System.currentTimeMillis();
+    }
+
+    /**
+     * Запись кэша живёт ровно до exp токена; чтение и перезапись срок не продлевают.
+     */
+    private static final class TokenExpiry implements Expiry<String, Claims> {
+
+        @Override
+        public long expireAfterCreate(String hash, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return 0;
+            }
+            long millis = expiration.getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String hash, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String hash, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    // Новый MessageDigest на вызов: getInstance дешевле подписи токена, а ThreadLocal на виртуальных потоках
+    // (поток на запрос) всё равно создавал бы его заново
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
     }
 }
@@ -0,0 +1,114 @@
+package ru.ildar.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.ildar.bankcards.exception.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Token bucket на каждое имя пользователя и на каждый IP для входа и регистрации.
+ * <p>
+ * Проверка идёт до хэширования пароля: подбор пароля к одному аккаунту упирается в бакет имени,
+ * перебор аккаунтов с одного адреса — в бакет IP, и ни то ни другое не занимает пул BCrypt.
+ * Бакет имени заводится и для несуществующих пользователей, чтобы по 429 нельзя было понять,
+ * существует ли имя. Бакеты хранятся в Caffeine и вытесняются после периода без запросов.
+ * <p>
+ * IP — адрес клиента из request.getRemoteAddr(). За обратным прокси его восстанавливает Tomcat
+ * по X-Forwarded-For (server.forward-headers-strategy: native), доверяя заголовку только от
+ * адресов server.tomcat.remoteip.internal-proxies; иначе все клиенты делили бы бакет прокси.
+ */
+@Component
+public class LoginRateLimiter {
+
+    private final Cache<String, TokenBucket> usernameBuckets;
+    private final Cache<String, TokenBucket> ipBuckets;
+    private final int usernameCapacity;
+    private final Duration usernameRefill;
+    private final int ipCapacity;
+    private final Duration ipRefill;
+
+    public LoginRateLimiter(@Value("${auth.rate-limit.max-size:100000}") long maxSize,
+                            @Value("${auth.rate-limit.username.capacity:5}") int usernameCapacity,
+                            @Value("${auth.rate-limit.username.refill-period:1m}") Duration usernameRefillPeriod,
+                            @Value("${auth.rate-limit.ip.capacity:30}") int ipCapacity,
+                            @Value("${auth.rate-limit.ip.refill-period:1m}") Duration ipRefillPeriod) {
+        this.usernameCapacity = usernameCapacity;
+        this.usernameRefill = usernameRefillPeriod.dividedBy(usernameCapacity);
+        this.ipCapacity = ipCapacity;
+        this.ipRefill = ipRefillPeriod.dividedBy(ipCapacity);
+        // Через период пополнения бакет снова полон — хранить его дольше незачем
+        this.usernameBuckets = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(usernameRefillPeriod)
+                .build();
+        this.ipBuckets = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ipRefillPeriod)
+                .build();
+    }
+
+    /**
+     * Списывает по токену из бакетов IP и имени.
+     *
+     * @throws TooManyRequestsException если один из бакетов пуст
+     */
+    public void acquire(String username, String clientIp) {
+        acquire(ipBuckets, clientIp, ipCapacity, ipRefill, "Слишком много попыток входа с этого адреса");
+        if (username != null) {
+            acquire(usernameBuckets, username.toLowerCase(Locale.ROOT), usernameCapacity, usernameRefill,
+                    "Слишком много попыток входа для этого пользователя");
+        }
+    }
+
+    /**
+     * Списывает токен только из бакета IP (регистрация).
+     */
+    public void acquire(String clientIp) {
+        acquire(null, clientIp);
+    }
+
+    private static void acquire(Cache<String, TokenBucket> buckets, String key, int capacity, Duration refill,
+                                String message) {
+        TokenBucket bucket = buckets.get(key, k -> new TokenBucket(capacity, refill.toNanos()));
+        long waitNanos = bucket.tryConsume(System.nanoTime());
+        if (waitNanos > 0) {
+            // Retry-After в целых секундах, с округлением вверх
+            throw new TooManyRequestsException(message, (waitNanos + 999_999_999L) / 1_000_000_000L);
+        }
+    }
+
+    /**
+     * Бакет с непрерывным пополнением: один токен каждые refillNanos, не больше capacity.
+     */
+    static final class TokenBucket {
+
+        private final int capacity;
+        private final long refillNanos;
+        private double tokens;
+        private long updatedAt;
+
+        TokenBucket(int capacity, long refillNanos) {
+            this.capacity = capacity;
+            this.refillNanos = refillNanos;
+            this.tokens = capacity;
+            this.updatedAt = System.nanoTime();
+        }
+
+        /**
+         * @return 0, если токен списан, иначе сколько наносекунд ждать следующего токена
+         */
+        synchronized long tryConsume(long now) {
+            tokens = Math.min(capacity, tokens + (double) (now - updatedAt) / refillNanos);
+            updatedAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) ((1 - tokens) * refillNanos);
+        }
+    }
+}
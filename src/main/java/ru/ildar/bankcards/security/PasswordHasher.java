@@ -0,0 +1,103 @@
+package ru.ildar.bankcards.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import ru.ildar.bankcards.exception.TooManyRequestsException;
+
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Хэширование и проверка паролей на отдельном ограниченном пуле.
+ * <p>
+ * BCrypt — десятки миллисекунд CPU на вызов. На потоках Tomcat всплеск входов занимает все потоки
+ * и ядра, и запросы к картам и переводам встают в очередь. Здесь хэширование идёт не больше чем
+ * в threads потоков, в очереди ждут не больше queue-capacity задач, остальным сразу отвечаем 429;
+ * поток запроса освобождается до окончания проверки (ответ асинхронный).
+ * <p>
+ * Пароль несуществующего пользователя проверяется против заранее посчитанного фиктивного хэша
+ * в том же пуле: та же очередь, та же стоимость и тот же 429 при переполнении, поэтому ни по задержке,
+ * ни по отказу нельзя узнать, есть ли такой пользователь.
+ */
+@Component
+public class PasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    // Хэш случайного пароля текущим алгоритмом: с ним сверяются пароли несуществующих пользователей
+    private final String dummyHash;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          MeterRegistry meterRegistry,
+                          @Value("${auth.hashing.threads:0}") int threads,
+                          @Value("${auth.hashing.queue-capacity:200}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.dummyHash = passwordEncoder.encode(UUID.randomUUID().toString());
+
+        Gauge.builder("auth.hashing.queue", executor, e -> e.getQueue().size())
+                .description("Задачи хэширования паролей в очереди")
+                .register(meterRegistry);
+    }
+
+    public CompletableFuture<String> encode(String rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    public CompletableFuture<Boolean> matches(String rawPassword, String encodedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * @return true, если хэш записан другим алгоритмом или с меньшей стоимостью, чем настроено сейчас
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Проверка пароля несуществующего пользователя: настоящий matches против фиктивного хэша
+     * в том же пуле, результат всегда false.
+     *
+     * @throws TooManyRequestsException если очередь пула заполнена — как и у {@link #matches}
+     */
+    public CompletableFuture<Boolean> matchesDummy(String rawPassword) {
+        return submit(() -> {
+            passwordEncoder.matches(rawPassword, dummyHash);
+            return false;
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            throw new TooManyRequestsException("Слишком много одновременных попыток входа, повторите позже", 1);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,63 @@
+package ru.ildar.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Ограниченный по размеру кэш аутентифицированных пользователей с вытеснением по TTL.
+ * Позволяет JwtAuthFilter не ходить в таблицы users/user_roles на каждый запрос.
+ */
+@Component
+public class PrincipalCache {
+
+    private final Cache<String, UserDetails> cache;
+
+    public PrincipalCache(MeterRegistry meterRegistry,
+                          @Value("${security.principal-cache.max-size:10000}") long maxSize,
+                          @Value("${security.principal-cache.ttl:5m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size с тегом cache=principal
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "principal");
+    }
+
+    /**
+     * Возвращает пользователя из кэша, при промахе загружает его через loader.
+     * Исключение loader'а (например, UsernameNotFoundException) пробрасывается и не кэшируется.
+     */
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        return cache.get(username, loader);
+    }
+
+    /**
+     * Удаляет пользователя из кэша. Если вызов идёт внутри транзакции, запись удаляется
+     * повторно после коммита, чтобы параллельный запрос не закэшировал старое состояние.
+     */
+    public void invalidate(String username) {
+        if (username == null) {
+            return;
+        }
+        cache.invalidate(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.invalidate(username);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.ildar.bankcards.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.ildar.bankcards.entity.TokenRevocation;
+import ru.ildar.bankcards.repository.TokenRevocationRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Список отзыва токенов пользователей: удалённых, переименованных и со сменой ролей.
+ * Запись живёт не дольше access-токена: после этого все выданные ранее токены истекают сами.
+ * <p>
+ * Отзыв пишется в таблицу token_revocations, а проверка идёт по копии в памяти узла,
+ * без запроса в БД. Каждый узел перечитывает действующие отзывы раз в jwt.revocation-list.refresh-ms,
+ * поэтому на других узлах отзыв вступает в силу с этой задержкой, а на своём — сразу после коммита.
+ */
+@Slf4j
+@Component
+public class TokenRevocationList {
+
+    private static final int CLEANUP_BATCH_SIZE = 1000;
+
+    private final TokenRevocationRepository repository;
+    private final Duration ttl;
+    private final Cache<UUID, Long> revokedAt;
+
+    public TokenRevocationList(TokenRevocationRepository repository,
+                               @Value("${jwt.access-token-expiration-ms}") long accessTokenExpirationMs,
+                               @Value("${jwt.revocation-list.max-size:100000}") long maxSize) {
+        this.repository = repository;
+        this.ttl = Duration.ofMillis(accessTokenExpirationMs);
+        this.revokedAt = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Отзывает все токены пользователя, выпущенные до текущего момента.
+     * Внутри транзакции запись в локальный список откладывается до коммита.
+     */
+    public void revoke(UUID userId) {
+        if (userId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        repository.revoke(userId, Instant.ofEpochMilli(now));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(userId, now);
+                }
+            });
+        } else {
+            remember(userId, now);
+        }
+    }
+
+    public boolean isRevoked(UUID userId, Date issuedAt) {
+        if (userId == null) {
+            return false;
+        }
+        Long revokedMillis = revokedAt.getIfPresent(userId);
+        if (revokedMillis == null) {
+            return false;
+        }
+        return issuedAt == null || issuedAt.getTime() <= revokedMillis;
+    }
+
+    /**
+     * Подтягивает отзывы, сделанные на других узлах, и удаляет из таблицы истёкшие.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation-list.refresh-ms:5000}")
+    public void refresh() {
+        Instant horizon = Instant.now().minus(ttl);
+        try {
+            for (TokenRevocation revocation : repository.findByRevokedAtAfter(horizon)) {
+                remember(revocation.getUserId(), revocation.getRevokedAt().toEpochMilli());
+            }
+            // Удаление пачками, чтобы не держать длинную транзакцию
+            int removed;
+            do {
+                removed = repository.deleteExpired(horizon, CLEANUP_BATCH_SIZE);
+            } while (removed == CLEANUP_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            // Остаёмся с прежним списком: недоступность БД не должна ронять аутентификацию
+            log.warn("Не удалось перечитать список отзыва токенов: {}", e.getMessage());
+        }
+    }
+
+    private void remember(UUID userId, long revokedMillis) {
+        revokedAt.asMap().merge(userId, revokedMillis, Math::max);
+    }
+}
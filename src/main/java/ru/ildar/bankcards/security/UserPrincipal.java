@@ -8,6 +8,7 @@ import ru.ildar.bankcards.entity.User;
 
 import java.util.Collection;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 public class UserPrincipal implements UserDetails {
@@ -58,7 +59,22 @@ public class UserPrincipal implements UserDetails {
         // Или просто return true;
     }
 
+    public UUID getId() {
+        return user.getId();
+    }
+
     public static UserPrincipal create(User user) {
         return new UserPrincipal(user);
     }
+
+    /**
+     * Principal, восстановленный из claims токена: без пароля и без обращения к БД.
+     */
+    public static UserPrincipal create(UUID id, String username, Set<Role> roles) {
+        return new UserPrincipal(User.builder()
+                .id(id)
+                .username(username)
+                .roles(roles)
+                .build());
+    }
 }
@@ -1,12 +1,18 @@
 package ru.ildar.bankcards.service;
 
 import ru.ildar.bankcards.dto.request.LoginDto;
+import ru.ildar.bankcards.dto.request.RefreshTokenDto;
 import ru.ildar.bankcards.dto.request.RegisterDto;
 import ru.ildar.bankcards.dto.response.JwtResponseDto;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface AuthService {
 
-    JwtResponseDto register(RegisterDto dto);
+    // Хэширование пароля идёт на пуле PasswordHasher, результат — после его завершения
+    CompletableFuture<JwtResponseDto> register(RegisterDto dto);
+
+    CompletableFuture<JwtResponseDto> login(LoginDto loginDto);
 
-    JwtResponseDto login(LoginDto loginDto);
+    JwtResponseDto refresh(RefreshTokenDto refreshTokenDto);
 }
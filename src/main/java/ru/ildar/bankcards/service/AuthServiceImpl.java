@@ -1,56 +1,127 @@
 package ru.ildar.bankcards.service;
 
+import io.micrometer.observation.annotation.Observed;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import ru.ildar.bankcards.config.MetricsConfig;
 import ru.ildar.bankcards.dto.request.LoginDto;
+import ru.ildar.bankcards.dto.request.RefreshTokenDto;
 import ru.ildar.bankcards.dto.request.RegisterDto;
 import ru.ildar.bankcards.dto.response.JwtResponseDto;
 import ru.ildar.bankcards.entity.Role;
 import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.exception.TooManyRequestsException;
+import ru.ildar.bankcards.repository.RevokedRefreshTokenRepository;
 import ru.ildar.bankcards.repository.UserRepository;
-import ru.ildar.bankcards.security.JwtProvider;
+import ru.ildar.bankcards.security.JwtTokenProvider;
+import ru.ildar.bankcards.security.PasswordHasher;
 
+import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Service
+@Observed(name = MetricsConfig.SERVICE_OBSERVATION)
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
 
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
-    private final JwtProvider jwtProvider;
+    private final PasswordHasher passwordHasher;
+    private final JwtTokenProvider tokenProvider;
+    private final RevokedRefreshTokenRepository refreshTokenRepository;
 
     @Override
-    public JwtResponseDto register(RegisterDto dto) {
+    public CompletableFuture<JwtResponseDto> register(RegisterDto dto) {
         if (userRepository.existsByUsername(dto.getUsername())) {
             throw new IllegalArgumentException("Пользователь с таким именем уже существует");
         }
 
-        User user = new User();
-        user.setUsername(dto.getUsername());
-        user.setPassword(passwordEncoder.encode(dto.getPassword()));
-        user.setEmail(dto.getEmail());  // Устанавливаем email
-        user.setRoles(Set.of(Role.ROLE_USER));
+        // Сохранение и выпуск токенов — на том же потоке пула после хэша: это доли миллисекунды против BCrypt
+        return passwordHasher.encode(dto.getPassword()).thenApply(encodedPassword -> {
+            User user = new User();
+            user.setUsername(dto.getUsername());
+            user.setPassword(encodedPassword);
+            user.setEmail(dto.getEmail());  // Устанавливаем email
+            user.setRoles(Set.of(Role.ROLE_USER));
 
-        user = userRepository.save(user);
+            return issueTokens(userRepository.save(user));
+        });
+    }
+
+    @Override
+    public CompletableFuture<JwtResponseDto> login(LoginDto loginDto) {
+        Optional<User> user = userRepository.findByUsername(loginDto.getUsername());
 
-        String token = jwtProvider.generateToken(user.getUsername());
+        // Для несуществующего имени пароль сверяется с фиктивным хэшем в том же пуле (та же очередь и тот же 429),
+        // а сообщение одно на оба случая — по ответу нельзя перебирать имена пользователей
+        CompletableFuture<Boolean> matches = user.isPresent()
+                ? passwordHasher.matches(loginDto.getPassword(), user.get().getPassword())
+                : passwordHasher.matchesDummy(loginDto.getPassword());
 
-        return new JwtResponseDto(token, "Bearer", token);
+        return matches.thenCompose(valid -> {
+            if (!valid) {
+                throw new IllegalArgumentException("Неверное имя пользователя или пароль");
+            }
+            return rehashIfNeeded(user.get(), loginDto.getPassword());
+        }).thenApply(this::issueTokens);
     }
 
     @Override
-    public JwtResponseDto login(LoginDto loginDto) {
-        User user = userRepository.findByUsername(loginDto.getUsername())
+    public JwtResponseDto refresh(RefreshTokenDto dto) {
+        Claims claims = tokenProvider.parseRefreshToken(dto.getRefreshToken())
+                .orElseThrow(() -> new IllegalArgumentException("Недействительный refresh-токен"));
+
+        // Refresh-токен одноразовый: при обмене его jti отзывается, и украденная копия
+        // после обновления владельцем (или владелец после вора) получает отказ
+        UUID jti = parseJti(claims.getId());
+        if (jti == null || refreshTokenRepository.revoke(jti, claims.getExpiration().toInstant()) == 0) {
+            throw new IllegalArgumentException("Недействительный refresh-токен");
+        }
+
+        // Роли и имя перечитываем из БД: за время жизни refresh-токена они могли измениться
+        UUID userId = UUID.fromString(claims.get(JwtTokenProvider.CLAIM_USER_ID, String.class));
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("Пользователь не найден"));
 
-        if (!passwordEncoder.matches(loginDto.getPassword(), user.getPassword())) {
-            throw new IllegalArgumentException("Неверный пароль");
+        return issueTokens(user);
+    }
+
+    private static UUID parseJti(String jti) {
+        if (jti == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(jti);
+        } catch (IllegalArgumentException e) {
+            return null;
         }
+    }
+
+    /**
+     * Перехэширует пароль, если хэш записан устаревшим алгоритмом или с меньшей стоимостью.
+     * Открытый пароль есть только в момент входа, поэтому обновление возможно только здесь.
+     */
+    private CompletableFuture<User> rehashIfNeeded(User user, String rawPassword) {
+        if (!passwordHasher.upgradeEncoding(user.getPassword())) {
+            return CompletableFuture.completedFuture(user);
+        }
+        try {
+            return passwordHasher.encode(rawPassword).thenApply(encodedPassword -> {
+                userRepository.updatePasswordIfUnchanged(user.getId(), user.getPassword(), encodedPassword);
+                return user;
+            });
+        } catch (TooManyRequestsException e) {
+            // Пул хэширования занят: вход не отклоняем, пароль обновится при следующем входе
+            return CompletableFuture.completedFuture(user);
+        }
+    }
 
-        String token = jwtProvider.generateToken(user.getUsername());
+    private JwtResponseDto issueTokens(User user) {
+        String token = tokenProvider.generateToken(user);
+        String refreshToken = tokenProvider.generateRefreshToken(user);
 
-        return new JwtResponseDto(token, "Bearer", token);
+        return new JwtResponseDto(token, "Bearer", token, refreshToken);
     }
 }
@@ -0,0 +1,195 @@
+package ru.ildar.bankcards.service;
+
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.ildar.bankcards.config.MetricsConfig;
+import ru.ildar.bankcards.dto.response.CardBlockRequestDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.entity.CardBlockRequest;
+import ru.ildar.bankcards.entity.CardBlockRequestStatus;
+import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.entity.OutboxEvent;
+import ru.ildar.bankcards.entity.OutboxEventType;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+import ru.ildar.bankcards.repository.CardBlockRequestRepository;
+import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.repository.OutboxEventRepository;
+import ru.ildar.bankcards.repository.UserRepository;
+import ru.ildar.bankcards.util.KeysetCursor;
+import ru.ildar.bankcards.util.SecurityUtil;
+import ru.ildar.bankcards.util.UuidOrder;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Заявки на блокировку карт.
+ * <p>
+ * Запрос пользователя и решение администратора только записывают заявку и событие outbox
+ * в одной транзакции и сразу возвращают ответ. Уведомление администраторов и сама блокировка
+ * карты выполняются OutboxDispatcherJob в фоне, пачками событий.
+ */
+@Slf4j
+@Service
+@Observed(name = MetricsConfig.SERVICE_OBSERVATION)
+@RequiredArgsConstructor
+public class CardBlockRequestService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final String DUPLICATE_REQUEST = "Заявка на блокировку карты уже подана";
+
+    private static final Set<CardBlockRequestStatus> OPEN_STATUSES =
+            Set.of(CardBlockRequestStatus.PENDING, CardBlockRequestStatus.APPROVED);
+
+    private final CardBlockRequestRepository cardBlockRequestRepository;
+    private final OutboxEventRepository outboxEventRepository;
+    private final CardRepository cardRepository;
+    private final UserRepository userRepository;
+
+    @Transactional
+    public CardBlockRequestDto requestBlock(UUID cardId) {
+        UUID userId = SecurityUtil.requireCurrentUserId(userRepository::findIdByUsername);
+        // Чужая и несуществующая карта неразличимы, чтобы по ответу нельзя было перебирать id
+        CardStatus cardStatus = cardRepository.findStatusByIdAndOwnerId(cardId, userId)
+                .orElseThrow(() -> new CardOperationException(ErrorReason.CARD_NOT_FOUND, "Карта не найдена"));
+        if (cardStatus == CardStatus.BLOCKED) {
+            throw new CardOperationException(ErrorReason.CARD_ALREADY_BLOCKED, "Карта уже заблокирована");
+        }
+        if (cardBlockRequestRepository.existsByCardIdAndStatusIn(cardId, OPEN_STATUSES)) {
+            throw new CardOperationException(ErrorReason.DUPLICATE_BLOCK_REQUEST, DUPLICATE_REQUEST);
+        }
+
+        CardBlockRequest request;
+        try {
+            // Параллельный дубликат отсекает частичный уникальный индекс ux_card_block_requests_open_card;
+            // flush здесь, чтобы нарушение пришло сюда, а не при коммите за пределами метода
+            request = cardBlockRequestRepository.saveAndFlush(CardBlockRequest.builder()
+                    .cardId(cardId)
+                    .requestedBy(userId)
+                    .status(CardBlockRequestStatus.PENDING)
+                    .createdAt(Instant.now())
+                    .build());
+        } catch (DataIntegrityViolationException e) {
+            throw new CardOperationException(ErrorReason.DUPLICATE_BLOCK_REQUEST, DUPLICATE_REQUEST);
+        }
+        publish(OutboxEventType.CARD_BLOCK_REQUESTED, request.getId());
+        return toDto(request);
+    }
+
+    /**
+     * Очередь заявок в статусе от старых к новым; следующая страница — по nextCursor.
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDto<CardBlockRequestDto> getRequests(CardBlockRequestStatus status, String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Instant afterCreatedAt = Instant.EPOCH;
+        UUID afterId = UuidOrder.MIN;
+        if (cursor != null && !cursor.isBlank()) {
+            String[] key = KeysetCursor.decode(cursor, 2);
+            try {
+                afterCreatedAt = Instant.parse(key[0]);
+                afterId = UUID.fromString(key[1]);
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                throw new CardOperationException(ErrorReason.INVALID_CURSOR, "Некорректный курсор");
+            }
+        }
+
+        List<CardBlockRequest> requests = cardBlockRequestRepository.findPageAfter(
+                status, afterCreatedAt, afterId, Limit.of(limit + 1));
+
+        String nextCursor = null;
+        if (requests.size() > limit) {
+            requests = requests.subList(0, limit);
+            CardBlockRequest last = requests.get(limit - 1);
+            nextCursor = KeysetCursor.encode(last.getCreatedAt(), last.getId());
+        }
+        return CursorPageDto.<CardBlockRequestDto>builder()
+                .items(requests.stream().map(this::toDto).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Одобряет заявку. Карта блокируется позже, при обработке события CARD_BLOCK_APPROVED.
+     */
+    @Transactional
+    public CardBlockRequestDto approve(UUID requestId) {
+        CardBlockRequest request = decide(requestId, CardBlockRequestStatus.APPROVED);
+        publish(OutboxEventType.CARD_BLOCK_APPROVED, requestId);
+        return toDto(request);
+    }
+
+    @Transactional
+    public CardBlockRequestDto reject(UUID requestId) {
+        return toDto(decide(requestId, CardBlockRequestStatus.REJECTED));
+    }
+
+    /**
+     * Обработка события outbox в транзакции пачки диспетчера.
+     *
+     * @throws CardOperationException если событие не может быть обработано и повтор не поможет
+     */
+    public void handle(OutboxEvent event) {
+        switch (event.getEventType()) {
+            case CARD_BLOCK_REQUESTED -> notifyAdmins(event.getAggregateId());
+            case CARD_BLOCK_APPROVED -> completeBlock(event.getAggregateId());
+        }
+    }
+
+    private void notifyAdmins(UUID requestId) {
+        CardBlockRequest request = cardBlockRequestRepository.findById(requestId)
+                .orElseThrow(() -> new CardOperationException(ErrorReason.BLOCK_REQUEST_NOT_FOUND, "Заявка не найдена"));
+        log.info("Новая заявка на блокировку карты {}: заявка {}", request.getCardId(), request.getId());
+    }
+
+    private void completeBlock(UUID requestId) {
+        CardBlockRequest request = cardBlockRequestRepository.findById(requestId)
+                .orElseThrow(() -> new CardOperationException(ErrorReason.BLOCK_REQUEST_NOT_FOUND, "Заявка не найдена"));
+        if (request.getStatus() != CardBlockRequestStatus.APPROVED) {
+            // Повторная доставка события: заявка уже обработана
+            return;
+        }
+        // Карту могли заблокировать напрямую — заявка всё равно считается выполненной
+        cardRepository.blockIfNotBlocked(request.getCardId());
+        request.setStatus(CardBlockRequestStatus.COMPLETED);
+        request.setCompletedAt(Instant.now());
+    }
+
+    private CardBlockRequest decide(UUID requestId, CardBlockRequestStatus status) {
+        UUID adminId = SecurityUtil.requireCurrentUserId(userRepository::findIdByUsername);
+        if (cardBlockRequestRepository.decide(requestId, status, adminId, Instant.now()) == 0) {
+            throw new CardOperationException(ErrorReason.BLOCK_REQUEST_NOT_FOUND, "Заявка не найдена или уже рассмотрена");
+        }
+        return cardBlockRequestRepository.findById(requestId)
+                .orElseThrow(() -> new CardOperationException(ErrorReason.BLOCK_REQUEST_NOT_FOUND, "Заявка не найдена"));
+    }
+
+    private void publish(OutboxEventType type, UUID aggregateId) {
+        outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(type)
+                .aggregateId(aggregateId)
+                .build());
+    }
+
+    private CardBlockRequestDto toDto(CardBlockRequest request) {
+        return CardBlockRequestDto.builder()
+                .id(request.getId())
+                .cardId(request.getCardId())
+                .requestedBy(request.getRequestedBy())
+                .status(request.getStatus())
+                .createdAt(request.getCreatedAt())
+                .decidedAt(request.getDecidedAt())
+                .completedAt(request.getCompletedAt())
+                .build();
+    }
+}
@@ -0,0 +1,37 @@
+package ru.ildar.bankcards.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Кэш числа карт пользователя для keyset-листинга. Значение приблизительное:
+ * может отставать от таблицы на время жизни записи, зато COUNT не выполняется на каждую страницу.
+ */
+@Component
+public class CardCountCache {
+
+    private final Cache<UUID, Long> cache;
+
+    public CardCountCache(MeterRegistry meterRegistry,
+                          @Value("${card.count-cache.max-size:10000}") long maxSize,
+                          @Value("${card.count-cache.ttl:1m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "card-count");
+    }
+
+    public long get(UUID ownerId, Function<UUID, Long> loader) {
+        return cache.get(ownerId, loader);
+    }
+}
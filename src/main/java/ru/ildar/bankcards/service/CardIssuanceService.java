@@ -0,0 +1,130 @@
+package ru.ildar.bankcards.service;
+
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.ildar.bankcards.config.MetricsConfig;
+import ru.ildar.bankcards.dto.request.CardIssueBatchDto;
+import ru.ildar.bankcards.dto.response.CardIssueBatchResponseDto;
+import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.repository.UserRepository;
+import ru.ildar.bankcards.util.CardNumberEncryptor;
+import ru.ildar.bankcards.util.CardNumberMasker;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Массовый выпуск карт одному пользователю.
+ * <p>
+ * Карты вставляются JDBC-батчами по batch-size строк, минуя persistence context: id — UUID,
+ * сгенерированные на клиенте, так что за id в БД не ходим, а десятки тысяч сущностей не копятся в памяти.
+ * Номера выдаёт CardNumberAllocator из зарезервированных блоков; проверка fingerprint одной выборкой
+ * на пачку нужна только ради карт, выпущенных до него со случайными номерами.
+ * Выпуск идёт в одной транзакции: либо выпущены все карты, либо ни одной.
+ */
+@Service
+@Observed(name = MetricsConfig.SERVICE_OBSERVATION)
+public class CardIssuanceService {
+
+    private static final String INSERT_CARD = """
+            INSERT INTO cards (id, encrypted_number, last4, fingerprint, balance, status, expiration_date, user_id, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)
+            """;
+
+    private final CardRepository cardRepository;
+    private final UserRepository userRepository;
+    private final CardNumberAllocator cardNumberAllocator;
+    private final CardNumberEncryptor cardNumberEncryptor;
+    private final LedgerService ledgerService;
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public CardIssuanceService(CardRepository cardRepository,
+                               UserRepository userRepository,
+                               CardNumberAllocator cardNumberAllocator,
+                               CardNumberEncryptor cardNumberEncryptor,
+                               LedgerService ledgerService,
+                               JdbcTemplate jdbcTemplate,
+                               @Value("${card.issue.batch-size:1000}") int batchSize) {
+        this.cardRepository = cardRepository;
+        this.userRepository = userRepository;
+        this.cardNumberAllocator = cardNumberAllocator;
+        this.cardNumberEncryptor = cardNumberEncryptor;
+        this.ledgerService = ledgerService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchSize = batchSize;
+    }
+
+    @Transactional
+    public CardIssueBatchResponseDto issueCards(CardIssueBatchDto dto) {
+        if (!userRepository.existsById(dto.getUserId())) {
+            throw new CardOperationException(ErrorReason.USER_NOT_FOUND, "Пользователь не найден");
+        }
+        String bin = dto.getBin() != null && !dto.getBin().isBlank() ? dto.getBin() : cardNumberAllocator.defaultBin();
+
+        int issued = 0;
+        while (issued < dto.getCount()) {
+            int size = Math.min(batchSize, dto.getCount() - issued);
+            List<IssuedNumber> numbers = allocateFree(bin, size);
+
+            List<Object[]> rows = new ArrayList<>(size);
+            List<UUID> cardIds = new ArrayList<>(size);
+            for (IssuedNumber number : numbers) {
+                UUID cardId = UUID.randomUUID();
+                cardIds.add(cardId);
+                rows.add(new Object[]{
+                        cardId,
+                        cardNumberEncryptor.encrypt(number.pan()),
+                        CardNumberMasker.lastFour(number.pan()),
+                        number.fingerprint(),
+                        dto.getInitialBalance(),
+                        CardStatus.ACTIVE.name(),
+                        dto.getExpirationDate(),
+                        dto.getUserId()});
+            }
+            jdbcTemplate.batchUpdate(INSERT_CARD, rows);
+            // Начальный баланс каждой карты — проводка OPENING, как и при выпуске по одной
+            ledgerService.recordOpenings(cardIds, dto.getInitialBalance());
+            issued += size;
+        }
+
+        return CardIssueBatchResponseDto.builder()
+                .issued(issued)
+                .bin(bin)
+                .build();
+    }
+
+    /**
+     * Номера, которых ещё нет в таблице. Занятые номера (только у карт со старыми случайными номерами)
+     * заменяются новыми из аллокатора.
+     */
+    private List<IssuedNumber> allocateFree(String bin, int count) {
+        List<IssuedNumber> free = new ArrayList<>(count);
+        while (free.size() < count) {
+            List<IssuedNumber> candidates = new ArrayList<>();
+            for (String pan : cardNumberAllocator.allocate(bin, count - free.size())) {
+                candidates.add(new IssuedNumber(pan, cardNumberEncryptor.fingerprint(pan)));
+            }
+            Set<String> taken = new HashSet<>(cardRepository.findExistingFingerprints(
+                    candidates.stream().map(IssuedNumber::fingerprint).toList()));
+            for (IssuedNumber candidate : candidates) {
+                if (!taken.contains(candidate.fingerprint())) {
+                    free.add(candidate);
+                }
+            }
+        }
+        return free;
+    }
+
+    private record IssuedNumber(String pan, String fingerprint) {
+    }
+}
@@ -0,0 +1,195 @@
+package ru.ildar.bankcards.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+import ru.ildar.bankcards.util.Luhn;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Выдаёт номера карт (PAN) из 16 цифр: BIN, номер счёта и контрольная цифра Луна.
+ * <p>
+ * Пространство номеров счёта каждого BIN разбито на блоки по block-size номеров. Узел резервирует
+ * блоки в таблице card_number_blocks (один UPSERT на нужное число блоков) и выдаёт номера из них
+ * без обращения к БД, поэтому номера разных узлов не пересекаются по построению и повтор генерации
+ * при коллизии не нужен. Соседние блоки разнесены по пространству, а внутри блока номера выдаются
+ * в порядке, перемешанном SecureRandom, — по выданному номеру нельзя угадать следующий.
+ * <p>
+ * Номера из незавершённых блоков теряются при перезапуске узла — это пропуски, а не повторы.
+ */
+@Component
+public class CardNumberAllocator {
+
+    public static final int PAN_LENGTH = 16;
+
+    // Шаг перестановки блоков: взаимно прост с числом блоков (степени 2 и 5), поэтому перестановка биективна
+    private static final long BLOCK_STRIDE = 7_919;
+
+    private static final String RESERVE_BLOCKS = """
+            INSERT INTO card_number_blocks (bin, next_block) VALUES (?, ?)
+            ON CONFLICT (bin) DO UPDATE SET next_block = card_number_blocks.next_block + EXCLUDED.next_block
+            RETURNING next_block - ?
+            """;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate reserveTransaction;
+    private final List<String> bins;
+    private final int blockSize;
+    private final Map<String, Deque<Block>> blocksByBin = new HashMap<>();
+    // Не synchronized: резерв блоков ходит в БД, а блокирующий вызов под монитором
+    // закрепляет виртуальный поток за потоком-носителем
+    private final Map<String, Lock> locksByBin = new HashMap<>();
+
+    public CardNumberAllocator(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${card.number.bins:400000}") List<String> bins,
+                               @Value("${card.number.block-size:1000}") int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        // Резерв фиксируется сразу: строка счётчика BIN не остаётся заблокированной до конца выпуска карт
+        this.reserveTransaction = new TransactionTemplate(transactionManager);
+        this.reserveTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.bins = List.copyOf(bins);
+        this.blockSize = blockSize;
+
+        if (this.bins.isEmpty()) {
+            throw new IllegalStateException("Не задан ни один BIN (card.number.bins)");
+        }
+        for (String bin : this.bins) {
+            if (!bin.matches("\\d{6,8}")) {
+                throw new IllegalStateException("BIN должен состоять из 6–8 цифр: " + bin);
+            }
+            BigInteger space = BigInteger.TEN.pow(accountDigits(bin));
+            if (!space.mod(BigInteger.valueOf(blockSize)).equals(BigInteger.ZERO)) {
+                throw new IllegalStateException("card.number.block-size должен делить 10^" + accountDigits(bin));
+            }
+            blocksByBin.put(bin, new ArrayDeque<>());
+            locksByBin.put(bin, new ReentrantLock());
+        }
+    }
+
+    public String defaultBin() {
+        return bins.get(0);
+    }
+
+    /**
+     * @throws CardOperationException если BIN не настроен
+     */
+    public String allocate(String bin) {
+        return allocate(bin, 1).get(0);
+    }
+
+    /**
+     * Выдаёт count номеров одного BIN; недостающие блоки резервируются одним запросом.
+     *
+     * @throws CardOperationException если BIN не настроен или его номера исчерпаны
+     */
+    public List<String> allocate(String bin, int count) {
+        Deque<Block> blocks = blocksByBin.get(bin);
+        if (blocks == null) {
+            throw new CardOperationException(ErrorReason.UNSUPPORTED_BIN, "BIN не поддерживается: " + bin);
+        }
+
+        List<String> numbers = new ArrayList<>(count);
+        Lock lock = locksByBin.get(bin);
+        lock.lock();
+        try {
+            int available = blocks.stream().mapToInt(Block::remaining).sum();
+            if (available < count) {
+                reserve(bin, blocks, (count - available + blockSize - 1) / blockSize);
+            }
+            while (numbers.size() < count) {
+                Block block = blocks.peekFirst();
+                if (block.remaining() == 0) {
+                    blocks.removeFirst();
+                    continue;
+                }
+                numbers.add(pan(bin, block.next()));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return numbers;
+    }
+
+    private void reserve(String bin, Deque<Block> blocks, int blockCount) {
+        Long first = reserveTransaction.execute(status ->
+                jdbcTemplate.queryForObject(RESERVE_BLOCKS, Long.class, bin, blockCount, blockCount));
+        long blocksInSpace = BigInteger.TEN.pow(accountDigits(bin)).divide(BigInteger.valueOf(blockSize)).longValueExact();
+        if (first == null || first + blockCount > blocksInSpace) {
+            throw new CardOperationException(ErrorReason.BIN_EXHAUSTED, "Номера карт BIN " + bin + " исчерпаны");
+        }
+        for (long index = first; index < first + blockCount; index++) {
+            long start = Math.floorMod(index * BLOCK_STRIDE, blocksInSpace) * blockSize;
+            blocks.addLast(new Block(start, shuffledOffsets(blockSize)));
+        }
+    }
+
+    private static String pan(String bin, long account) {
+        StringBuilder pan = new StringBuilder(PAN_LENGTH).append(bin);
+        String digits = Long.toString(account);
+        for (int i = digits.length(); i < accountDigits(bin); i++) {
+            pan.append('0');
+        }
+        pan.append(digits);
+        return pan.append(Luhn.checkDigit(pan)).toString();
+    }
+
+    private static int accountDigits(String bin) {
+        return PAN_LENGTH - 1 - bin.length();
+    }
+
+    private static int[] shuffledOffsets(int size) {
+        int[] offsets = new int[size];
+        for (int i = 0; i < size; i++) {
+            offsets[i] = i;
+        }
+        // Тасование Фишера — Йетса
+        for (int i = size - 1; i > 0; i--) {
+            int j = RANDOM.nextInt(i + 1);
+            int tmp = offsets[i];
+            offsets[i] = offsets[j];
+            offsets[j] = tmp;
+        }
+        return offsets;
+    }
+
+    /**
+     * Зарезервированный блок: номера start + offsets[next..] ещё не выданы.
+     */
+    private static final class Block {
+
+        private final long start;
+        private final int[] offsets;
+        private int next;
+
+        private Block(long start, int[] offsets) {
+            this.start = start;
+            this.offsets = offsets;
+        }
+
+        private int remaining() {
+            return offsets.length - next;
+        }
+
+        private long next() {
+            return start + offsets[next++];
+        }
+    }
+}
@@ -3,7 +3,9 @@ package ru.ildar.bankcards.service;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import ru.ildar.bankcards.dto.request.CardCreateDto;
+import ru.ildar.bankcards.dto.request.CardSearchFilter;
 import ru.ildar.bankcards.dto.response.CardResponseDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
 import ru.ildar.bankcards.entity.Card;
 import ru.ildar.bankcards.exception.CardOperationException;
 
@@ -27,5 +29,7 @@ public interface CardService {
 
     Page<CardResponseDto> getUserCards(int page, int size);
 
-    void requestCardBlock(UUID id);
+    CursorPageDto<CardResponseDto> getUserCardsSlice(String cursor, int size, boolean withTotal);
+
+    CursorPageDto<CardResponseDto> searchCards(CardSearchFilter filter);
 }
\ No newline at end of file
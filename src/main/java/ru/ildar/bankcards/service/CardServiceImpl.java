@@ -1,51 +1,72 @@
 package ru.ildar.bankcards.service;
 
+import io.micrometer.observation.annotation.Observed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.ildar.bankcards.config.MetricsConfig;
 import ru.ildar.bankcards.dto.request.CardCreateDto;
+import ru.ildar.bankcards.dto.request.CardSearchFilter;
+import ru.ildar.bankcards.dto.request.CardSearchSort;
 import ru.ildar.bankcards.dto.response.CardResponseDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
 import ru.ildar.bankcards.entity.Card;
 import ru.ildar.bankcards.entity.CardStatus;
 import ru.ildar.bankcards.entity.User;
 import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
 import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.repository.CardSpecifications;
+import ru.ildar.bankcards.repository.CardView;
 import ru.ildar.bankcards.repository.UserRepository;
 import ru.ildar.bankcards.util.CardNumberEncryptor;
 import ru.ildar.bankcards.util.CardNumberMasker;
+import ru.ildar.bankcards.util.KeysetCursor;
 import ru.ildar.bankcards.util.SecurityUtil;
-
+import ru.ildar.bankcards.util.UuidOrder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
+@Observed(name = MetricsConfig.SERVICE_OBSERVATION)
 @RequiredArgsConstructor
 public class CardServiceImpl implements CardService {
 
+    private static final int MAX_SLICE_SIZE = 100;
+
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final CardNumberEncryptor cardNumberEncryptor;
     private final CardNumberMasker cardNumberMasker;
-
-    private String generateCardNumber() {
-        return String.format("%04d %04d %04d %04d",
-                (int) (Math.random() * 10000),
-                (int) (Math.random() * 10000),
-                (int) (Math.random() * 10000),
-                (int) (Math.random() * 10000));
-    }
+    private final LedgerService ledgerService;
+    private final CardCountCache cardCountCache;
+    private final CardNumberAllocator cardNumberAllocator;
 
     @Override
+    @Transactional
     public CardResponseDto createCard(CardCreateDto dto) {
         User user = userRepository.findById(dto.getUserId())
-                .orElseThrow(() -> new CardOperationException("Пользователь не найден"));
+                .orElseThrow(() -> new CardOperationException(ErrorReason.USER_NOT_FOUND, "Пользователь не найден"));
 
-        String plainNumber = generateCardNumber();
+        String plainNumber = allocateFreeNumber();
         String encryptedNumber = cardNumberEncryptor.encrypt(plainNumber);
 
         Card card = Card.builder()
                 .encryptedNumber(encryptedNumber)
+                .last4(CardNumberMasker.lastFour(plainNumber))
+                .fingerprint(cardNumberEncryptor.fingerprint(plainNumber))
                 .owner(user)
                 .expirationDate(dto.getExpirationDate())
                 .status(CardStatus.ACTIVE)
@@ -53,6 +74,8 @@ public class CardServiceImpl implements CardService {
                 .build();
 
         card = cardRepository.save(card);
+        // Начальный баланс — первая проводка журнала, иначе баланс по журналу не сойдётся с балансом карты
+        ledgerService.recordOpening(card.getId(), card.getBalance());
 
         String maskedNumber = cardNumberMasker.mask(plainNumber);
 
@@ -66,96 +89,67 @@ public class CardServiceImpl implements CardService {
                 .build();
     }
 
+    /**
+     * Номер из блоков CardNumberAllocator не повторяется; проверка нужна только
+     * из-за карт, выпущенных раньше со случайными номерами.
+     */
+    private String allocateFreeNumber() {
+        String bin = cardNumberAllocator.defaultBin();
+        String plainNumber = cardNumberAllocator.allocate(bin);
+        while (cardRepository.existsByFingerprint(cardNumberEncryptor.fingerprint(plainNumber))) {
+            plainNumber = cardNumberAllocator.allocate(bin);
+        }
+        return plainNumber;
+    }
+
     @Override
     public CardResponseDto getCardById(UUID cardId) {
         Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new CardOperationException("Карта не найдена"));
-
-        String plainNumber = cardNumberEncryptor.decrypt(card.getEncryptedNumber());
-        String maskedNumber = cardNumberMasker.mask(plainNumber);
+                .orElseThrow(() -> new CardOperationException(ErrorReason.CARD_NOT_FOUND, "Карта не найдена"));
 
-        return CardResponseDto.builder()
-                .id(card.getId())
-                .number(maskedNumber)
-                .ownerUsername(card.getOwner().getUsername())
-                .expirationDate(card.getExpirationDate())
-                .status(card.getStatus())
-                .balance(card.getBalance())
-                .build();
+        return toResponseDto(card);
     }
 
     @Override
     public Page<CardResponseDto> getCardsForUser(String username, Pageable pageable) {
-        return cardRepository.findAllByOwnerUsername(username, pageable)
-                .map(card -> {
-                    String plainNumber = cardNumberEncryptor.decrypt(card.getEncryptedNumber());
-                    String maskedNumber = cardNumberMasker.mask(plainNumber);
-
-                    return CardResponseDto.builder()
-                            .id(card.getId())
-                            .number(maskedNumber)
-                            .ownerUsername(card.getOwner().getUsername())
-                            .expirationDate(card.getExpirationDate())
-                            .status(card.getStatus())
-                            .balance(card.getBalance())
-                            .build();
-                });
+        return cardRepository.findViewsByOwnerUsername(username, pageable)
+                .map(this::toResponseDto);
     }
 
     @Override
     public CardResponseDto blockCard(UUID cardId) {
         Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new CardOperationException("Карта не найдена"));
+                .orElseThrow(() -> new CardOperationException(ErrorReason.CARD_NOT_FOUND, "Карта не найдена"));
 
         if (card.getStatus() == CardStatus.BLOCKED) {
-            throw new CardOperationException("Карта уже заблокирована");
+            throw new CardOperationException(ErrorReason.CARD_ALREADY_BLOCKED, "Карта уже заблокирована");
         }
 
         card.setStatus(CardStatus.BLOCKED);
         cardRepository.save(card);
 
-        String plainNumber = cardNumberEncryptor.decrypt(card.getEncryptedNumber());
-        String maskedNumber = cardNumberMasker.mask(plainNumber);
-
-        return CardResponseDto.builder()
-                .id(card.getId())
-                .number(maskedNumber)
-                .ownerUsername(card.getOwner().getUsername())
-                .expirationDate(card.getExpirationDate())
-                .status(card.getStatus())
-                .balance(card.getBalance())
-                .build();
+        return toResponseDto(card);
     }
 
     @Override
     public CardResponseDto activateCard(UUID cardId) {
         Card card = cardRepository.findById(cardId)
-                .orElseThrow(() -> new CardOperationException("Карта не найдена"));
+                .orElseThrow(() -> new CardOperationException(ErrorReason.CARD_NOT_FOUND, "Карта не найдена"));
 
         if (card.getStatus() == CardStatus.ACTIVE) {
-            throw new CardOperationException("Карта уже активна");
+            throw new CardOperationException(ErrorReason.CARD_ALREADY_ACTIVE, "Карта уже активна");
         }
 
         card.setStatus(CardStatus.ACTIVE);
         cardRepository.save(card);
 
-        String plainNumber = cardNumberEncryptor.decrypt(card.getEncryptedNumber());
-        String maskedNumber = cardNumberMasker.mask(plainNumber);
-
-        return CardResponseDto.builder()
-                .id(card.getId())
-                .number(maskedNumber)
-                .ownerUsername(card.getOwner().getUsername())
-                .expirationDate(card.getExpirationDate())
-                .status(card.getStatus())
-                .balance(card.getBalance())
-                .build();
+        return toResponseDto(card);
     }
 
     @Override
     public void deleteCard(UUID cardId) {
         if (!cardRepository.existsById(cardId)) {
-            throw new CardOperationException("Карта не найдена");
+            throw new CardOperationException(ErrorReason.CARD_NOT_FOUND, "Карта не найдена");
         }
         cardRepository.deleteById(cardId);
     }
@@ -163,7 +157,7 @@ public class CardServiceImpl implements CardService {
     @Override
     public Card getCardEntityById(UUID cardId) {
         return cardRepository.findById(cardId)
-                .orElseThrow(() -> new CardOperationException("Карта не найдена"));
+                .orElseThrow(() -> new CardOperationException(ErrorReason.CARD_NOT_FOUND, "Карта не найдена"));
     }
 
     @Override
@@ -171,32 +165,164 @@ public class CardServiceImpl implements CardService {
         // Получаем username из контекста безопасности
         // Здесь лучше прокинуть username из SecurityContext в контроллер, но для примера:
         String username = SecurityUtil.getCurrentUsername()
-                .orElseThrow(() -> new CardOperationException("Пользователь не аутентифицирован"));
+                .orElseThrow(() -> new CardOperationException(ErrorReason.NOT_AUTHENTICATED, "Пользователь не аутентифицирован"));
 
         Pageable pageable = PageRequest.of(page, size);
 
         return getCardsForUser(username, pageable);
     }
 
+    /**
+     * Keyset-листинг карт текущего пользователя по id: без OFFSET и без COUNT,
+     * которые делает Page. Запрашивается на одну карту больше, чтобы узнать о следующей странице.
+     * Общее число карт — только по запросу и из кэша.
+     */
     @Override
-    public void requestCardBlock(UUID id) {
-        // Проверяем, что карта принадлежит текущему пользователю
-        Card card = getCardEntityById(id);
+    public CursorPageDto<CardResponseDto> getUserCardsSlice(String cursor, int size, boolean withTotal) {
+        UUID ownerId = SecurityUtil.requireCurrentUserId(userRepository::findIdByUsername);
+        int limit = Math.max(1, Math.min(size, MAX_SLICE_SIZE));
+        UUID afterId = cursor == null || cursor.isBlank() ? UuidOrder.MIN : parseCardCursor(cursor);
 
-        String username = SecurityUtil.getCurrentUsername()
-                .orElseThrow(() -> new CardOperationException("Пользователь не аутентифицирован"));
+        List<CardView> cards = cardRepository.findViewsByOwnerIdAfter(ownerId, afterId, Limit.of(limit + 1));
 
-        if (!card.getOwner().getUsername().equals(username)) {
-            throw new CardOperationException("Нет доступа к данной карте");
+        String nextCursor = null;
+        if (cards.size() > limit) {
+            cards = cards.subList(0, limit);
+            nextCursor = KeysetCursor.encode(cards.get(limit - 1).id());
         }
+        return CursorPageDto.<CardResponseDto>builder()
+                .items(cards.stream().map(this::toResponseDto).toList())
+                .nextCursor(nextCursor)
+                .approximateTotal(withTotal ? cardCountCache.get(ownerId, cardRepository::countByOwnerId) : null)
+                .build();
+    }
 
-        // Логика заявки на блокировку карты (например, можно создать задачу, отправить уведомление)
-        // Пока просто меняем статус на BLOCKED с каким-то условием
-        if (card.getStatus() == CardStatus.BLOCKED) {
-            throw new CardOperationException("Карта уже заблокирована");
+    /**
+     * Поиск карт администратором по фильтрам со стабильной сортировкой (поле, id)
+     * и keyset-пагинацией: каждая страница — один запрос по индексу без OFFSET и COUNT.
+     */
+    @Override
+    public CursorPageDto<CardResponseDto> searchCards(CardSearchFilter filter) {
+        List<Specification<Card>> conditions = new ArrayList<>();
+        if (filter.getStatus() != null) {
+            conditions.add(CardSpecifications.hasStatus(filter.getStatus()));
         }
 
-        card.setStatus(CardStatus.BLOCKED);
-        cardRepository.save(card);
+        UUID ownerId = filter.getOwnerId();
+        if (filter.getOwnerUsername() != null && !filter.getOwnerUsername().isBlank()) {
+            // Имя сводится к id заранее, чтобы условие по владельцу шло по индексу (user_id, id)
+            Optional<UUID> byUsername = userRepository.findIdByUsername(filter.getOwnerUsername());
+            if (byUsername.isEmpty() || (ownerId != null && !ownerId.equals(byUsername.get()))) {
+                return CursorPageDto.<CardResponseDto>builder().items(List.of()).build();
+            }
+            ownerId = byUsername.get();
+        }
+        if (ownerId != null) {
+            conditions.add(CardSpecifications.ownedBy(ownerId));
+        }
+
+        if (filter.getExpiresFrom() != null) {
+            conditions.add(CardSpecifications.expiresOnOrAfter(filter.getExpiresFrom()));
+        }
+        if (filter.getExpiresTo() != null) {
+            conditions.add(CardSpecifications.expiresOnOrBefore(filter.getExpiresTo()));
+        }
+        if (filter.getMinBalance() != null) {
+            conditions.add(CardSpecifications.balanceAtLeast(filter.getMinBalance()));
+        }
+        if (filter.getMaxBalance() != null) {
+            conditions.add(CardSpecifications.balanceAtMost(filter.getMaxBalance()));
+        }
+
+        CardSearchSort sort = filter.getSort() != null ? filter.getSort() : CardSearchSort.ID;
+        Sort.Direction direction = filter.getDirection() != null ? filter.getDirection() : Sort.Direction.ASC;
+        if (filter.getCursor() != null && !filter.getCursor().isBlank()) {
+            conditions.add(afterSearchCursor(filter.getCursor(), sort, direction));
+        }
+
+        Sort order = sort == CardSearchSort.ID
+                ? Sort.by(direction, "id")
+                : Sort.by(direction, sort.getAttribute(), "id");
+        int limit = Math.max(1, Math.min(filter.getSize(), MAX_SLICE_SIZE));
+        List<CardView> cards = cardRepository.searchViews(Specification.allOf(conditions), order, limit + 1);
+
+        String nextCursor = null;
+        if (cards.size() > limit) {
+            cards = cards.subList(0, limit);
+            CardView last = cards.get(limit - 1);
+            nextCursor = KeysetCursor.encode(sort, sortValue(last, sort), last.id());
+        }
+        return CursorPageDto.<CardResponseDto>builder()
+                .items(cards.stream().map(this::toResponseDto).toList())
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private static Object sortValue(CardView card, CardSearchSort sort) {
+        return switch (sort) {
+            case ID -> card.id();
+            case EXPIRATION_DATE -> card.expirationDate();
+            case BALANCE -> card.balance().toPlainString();
+        };
+    }
+
+    private static Specification<Card> afterSearchCursor(String cursor, CardSearchSort sort, Sort.Direction direction) {
+        String[] key = KeysetCursor.decode(cursor, 3);
+        if (!sort.name().equals(key[0])) {
+            throw new CardOperationException(ErrorReason.INVALID_CURSOR, "Курсор относится к другой сортировке");
+        }
+        try {
+            UUID id = UUID.fromString(key[2]);
+            return switch (sort) {
+                case ID -> CardSpecifications.after(sort.getAttribute(), direction, id, id);
+                case EXPIRATION_DATE ->
+                        CardSpecifications.after(sort.getAttribute(), direction, LocalDate.parse(key[1]), id);
+                case BALANCE -> CardSpecifications.after(sort.getAttribute(), direction, new BigDecimal(key[1]), id);
+            };
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new CardOperationException(ErrorReason.INVALID_CURSOR, "Некорректный курсор");
+        }
+    }
+
+    private static UUID parseCardCursor(String cursor) {
+        try {
+            return UUID.fromString(KeysetCursor.decode(cursor, 1)[0]);
+        } catch (IllegalArgumentException e) {
+            throw new CardOperationException(ErrorReason.INVALID_CURSOR, "Некорректный курсор");
+        }
+    }
+
+    private CardResponseDto toResponseDto(Card card) {
+        return CardResponseDto.builder()
+                .id(card.getId())
+                .number(maskNumber(card.getLast4(), card.getEncryptedNumber()))
+                .ownerUsername(card.getOwner().getUsername())
+                .expirationDate(card.getExpirationDate())
+                .status(card.getStatus())
+                .balance(card.getBalance())
+                .build();
+    }
+
+    private CardResponseDto toResponseDto(CardView card) {
+        return CardResponseDto.builder()
+                .id(card.id())
+                .number(maskNumber(card.last4(), card.encryptedNumber()))
+                .ownerUsername(card.ownerUsername())
+                .expirationDate(card.expirationDate())
+                .status(card.status())
+                .balance(card.balance())
+                .build();
+    }
+
+    /**
+     * Маска строится по last4 без AES. Расшифровка нужна только картам,
+     * которые ещё не обработал CardNumberBackfillJob.
+     */
+    private String maskNumber(String last4, String encryptedNumber) {
+        if (last4 != null) {
+            return cardNumberMasker.maskLast4(last4);
+        }
+        String plainNumber = cardNumberEncryptor.decrypt(encryptedNumber);
+        return cardNumberMasker.mask(plainNumber);
     }
-}                              
\ No newline at end of file
+}
@@ -0,0 +1,177 @@
+package ru.ildar.bankcards.service;
+
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.ildar.bankcards.config.MetricsConfig;
+import ru.ildar.bankcards.dto.request.ExportFormat;
+import ru.ildar.bankcards.dto.response.CardTransactionDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.entity.LedgerEntryType;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.util.KeysetCursor;
+import ru.ildar.bankcards.util.SecurityUtil;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Выписка по карте из журнала проводок.
+ * <p>
+ * Страницы выдаются по keyset-курсору (created_at, seq) от новых к старым: каждая страница —
+ * один спуск по индексу ix_ledger_entries_card_created, сколько бы страниц ни было до неё.
+ * Выгрузка читается в хронологическом порядке через StreamingExporter,
+ * поэтому в памяти одновременно не больше одной порции строк.
+ */
+@Service
+@Observed(name = MetricsConfig.SERVICE_OBSERVATION)
+public class CardStatementService {
+
+    private static final String COLUMNS =
+            "SELECT seq, transfer_id, counterparty_card_id, amount, entry_type, created_at FROM ledger_entries ";
+
+    private static final String FIRST_PAGE = COLUMNS + """
+            WHERE card_id = ?
+            ORDER BY created_at DESC, seq DESC
+            LIMIT ?
+            """;
+
+    private static final String NEXT_PAGE = COLUMNS + """
+            WHERE card_id = ? AND (created_at, seq) < (?, ?)
+            ORDER BY created_at DESC, seq DESC
+            LIMIT ?
+            """;
+
+    private static final String EXPORT = COLUMNS + """
+            WHERE card_id = ? AND created_at >= ? AND created_at < ?
+            ORDER BY created_at, seq
+            """;
+
+    private static final String CSV_HEADER = "id,created_at,transfer_id,counterparty_card_id,type,amount\n";
+
+    private static final OffsetDateTime EXPORT_MIN = OffsetDateTime.parse("1970-01-01T00:00:00Z");
+    private static final OffsetDateTime EXPORT_MAX = OffsetDateTime.parse("9999-01-01T00:00:00Z");
+
+    private static final RowMapper<CardTransactionDto> ROW_MAPPER = (rs, rowNum) -> CardTransactionDto.builder()
+            .id(rs.getLong("seq"))
+            .transferId(rs.getObject("transfer_id", UUID.class))
+            .counterpartyCardId(rs.getObject("counterparty_card_id", UUID.class))
+            .amount(rs.getBigDecimal("amount"))
+            .type(LedgerEntryType.valueOf(rs.getString("entry_type")))
+            .createdAt(rs.getObject("created_at", OffsetDateTime.class))
+            .build();
+
+    private final CardRepository cardRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final StreamingExporter streamingExporter;
+    private final int maxPageSize;
+
+    public CardStatementService(CardRepository cardRepository,
+                                JdbcTemplate jdbcTemplate,
+                                StreamingExporter streamingExporter,
+                                @Value("${card.statement.max-page-size:100}") int maxPageSize) {
+        this.cardRepository = cardRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingExporter = streamingExporter;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public CursorPageDto<CardTransactionDto> getStatement(UUID cardId, String cursor, int size) {
+        checkAccess(cardId);
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+
+        // Запрашиваем на одну строку больше, чтобы узнать, есть ли следующая страница, без COUNT
+        List<CardTransactionDto> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = jdbcTemplate.query(FIRST_PAGE, ROW_MAPPER, cardId, limit + 1);
+        } else {
+            String[] key = KeysetCursor.decode(cursor, 2);
+            rows = jdbcTemplate.query(NEXT_PAGE, ROW_MAPPER, cardId, parseTime(key[0]), parseSeq(key[1]), limit + 1);
+        }
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = new ArrayList<>(rows.subList(0, limit));
+            CardTransactionDto last = rows.get(limit - 1);
+            nextCursor = KeysetCursor.encode(last.getCreatedAt(), last.getId());
+        }
+        return CursorPageDto.<CardTransactionDto>builder()
+                .items(rows)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Проверяет доступ к карте в потоке запроса и возвращает тело выгрузки,
+     * которое пишется уже в асинхронном потоке по мере чтения строк.
+     *
+     * @param from начало периода включительно, null — с первой проводки
+     * @param to   конец периода не включительно, null — до последней проводки
+     */
+    public StreamingResponseBody exportStatement(UUID cardId, ExportFormat format,
+                                                 OffsetDateTime from, OffsetDateTime to) {
+        checkAccess(cardId);
+        OffsetDateTime periodStart = from != null ? from : EXPORT_MIN;
+        OffsetDateTime periodEnd = to != null ? to : EXPORT_MAX;
+
+        return streamingExporter.export(format, CardTransactionDto.class, CSV_HEADER, CardStatementService::writeCsv,
+                EXPORT, ROW_MAPPER, cardId, periodStart, periodEnd);
+    }
+
+    private void checkAccess(UUID cardId) {
+        boolean owner = SecurityUtil.getCurrentUserId()
+                .map(userId -> cardRepository.existsByIdAndOwnerId(cardId, userId))
+                .orElseGet(() -> {
+                    String username = SecurityUtil.getCurrentUsername()
+                            .orElseThrow(() -> new CardOperationException(ErrorReason.NOT_AUTHENTICATED, "Пользователь не аутентифицирован"));
+                    return cardRepository.existsByIdAndOwnerUsername(cardId, username);
+                });
+        if (!owner) {
+            // Чужая и несуществующая карта неразличимы, чтобы по ответу нельзя было перебирать id
+            throw new CardOperationException(ErrorReason.CARD_NOT_FOUND, "Карта не найдена");
+        }
+    }
+
+    private static void writeCsv(Writer writer, CardTransactionDto row) throws IOException {
+        writer.write(Long.toString(row.getId()));
+        writer.write(',');
+        writer.write(row.getCreatedAt().toString());
+        writer.write(',');
+        writer.write(row.getTransferId().toString());
+        writer.write(',');
+        if (row.getCounterpartyCardId() != null) {
+            writer.write(row.getCounterpartyCardId().toString());
+        }
+        writer.write(',');
+        writer.write(row.getType().name());
+        writer.write(',');
+        writer.write(row.getAmount().toPlainString());
+        writer.write('\n');
+    }
+
+    private static OffsetDateTime parseTime(String value) {
+        try {
+            return OffsetDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new CardOperationException(ErrorReason.INVALID_CURSOR, "Некорректный курсор");
+        }
+    }
+
+    private static long parseSeq(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new CardOperationException(ErrorReason.INVALID_CURSOR, "Некорректный курсор");
+        }
+    }
+}
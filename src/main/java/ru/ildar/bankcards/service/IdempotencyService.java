@@ -0,0 +1,237 @@
+package ru.ildar.bankcards.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.observation.annotation.Observed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.config.MetricsConfig;
+import ru.ildar.bankcards.entity.IdempotencyKey;
+import ru.ildar.bankcards.exception.ApiError;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+import ru.ildar.bankcards.exception.IdempotencyConflictException;
+import ru.ildar.bankcards.exception.TransientOperationException;
+import ru.ildar.bankcards.repository.IdempotencyKeyRepository;
+import ru.ildar.bankcards.util.SecurityUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Однократное выполнение запросов с заголовком Idempotency-Key.
+ * <ul>
+ *     <li>Готовые результаты лежат в LRU-кэше и в таблице idempotency_keys (очистка по TTL —
+ *     IdempotencyKeyCleanupJob). Повтор отдаёт сохранённые статус и тело без выполнения операции.</li>
+ *     <li>Дубликат на этом же узле ждёт future первого запроса и не занимает соединение с БД.</li>
+ *     <li>Ключ занимается INSERT ... ON CONFLICT DO NOTHING в одной транзакции с самой операцией:
+ *     дубликат с другого узла ждёт эту транзакцию на вставке и после коммита читает результат.
+ *     Если операция откатилась, ключ свободен и повтор выполнит её заново.</li>
+ *     <li>Бизнес-ошибки (CardOperationException) тоже сохраняются и воспроизводятся. Исключение —
+ *     TransientOperationException (конфликт версий, прерывание): транзакция с ключом повторяется
+ *     целиком, а если попытки кончились, ключ остаётся свободным и клиент может повторить запрос.</li>
+ * </ul>
+ */
+@Service
+@Observed(name = MetricsConfig.SERVICE_OBSERVATION)
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyKeyRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration waitTimeout;
+    private final int maxAttempts;
+    private final long backoffMs;
+
+    private final Cache<String, StoredResponse> completed;
+    private final ConcurrentMap<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyKeyRepository repository,
+                              TransactionTemplate transactionTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.cache.max-size:10000}") long cacheMaxSize,
+                              @Value("${idempotency.ttl:24h}") Duration ttl,
+                              @Value("${idempotency.wait-timeout:10s}") Duration waitTimeout,
+                              @Value("${idempotency.retry.max-attempts:5}") int maxAttempts,
+                              @Value("${idempotency.retry.backoff-ms:10}") long backoffMs) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.waitTimeout = waitTimeout;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Выполняет action не более одного раза для ключа текущего пользователя.
+     *
+     * @param key     значение заголовка Idempotency-Key
+     * @param request тело запроса: повтор ключа с другим телом отклоняется
+     * @param action  операция; выполняется внутри транзакции, в которой занят ключ,
+     *                и при TransientOperationException повторяется в новой транзакции
+     */
+    public ResponseEntity<?> execute(String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new CardOperationException(ErrorReason.INVALID_IDEMPOTENCY_KEY, "Некорректный " + HEADER + ": ожидается от 1 до " + MAX_KEY_LENGTH + " символов");
+        }
+        String id = SecurityUtil.getCurrentUsername().orElse("") + ":" + key;
+        String requestHash = hash(request);
+
+        StoredResponse stored = completed.getIfPresent(id);
+        if (stored != null) {
+            return replay(stored, requestHash);
+        }
+
+        CompletableFuture<StoredResponse> own = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = inFlight.putIfAbsent(id, own);
+        if (running != null) {
+            return replay(await(running), requestHash);
+        }
+
+        try {
+            Outcome outcome = executeWithRetry(id, requestHash, action);
+            own.complete(outcome.stored());
+            completed.put(id, outcome.stored());
+            return outcome.response() != null ? outcome.response() : replay(outcome.stored(), requestHash);
+        } catch (TransientOperationException e) {
+            // Повтор может пройти — отказ не сохраняется, ключ откатился вместе с транзакцией
+            own.completeExceptionally(e);
+            throw e;
+        } catch (CardOperationException e) {
+            // Транзакция откатилась вместе с ключом — сохраняем ошибку отдельно, чтобы повтор получил тот же ответ
+            StoredResponse error = new StoredResponse(requestHash, HttpStatus.BAD_REQUEST.value(),
+                    serialize(new ApiError(HttpStatus.BAD_REQUEST.value(), e.getMessage())));
+            if (repository.saveIfAbsent(id, requestHash, error.status(), error.body()) == 1) {
+                completed.put(id, error);
+            }
+            own.complete(error);
+            throw e;
+        } catch (RuntimeException e) {
+            // Непредвиденная ошибка не сохраняется: ключ свободен, клиент может повторить запрос
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, own);
+        }
+    }
+
+    // Каждая попытка — новая транзакция: после конфликта версий откатываются и операция, и занятый ключ
+    private Outcome executeWithRetry(String id, String requestHash, Supplier<ResponseEntity<?>> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> executeClaimed(id, requestHash, action));
+            } catch (TransientOperationException e) {
+                if (attempt >= maxAttempts || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long maxDelay = backoffMs << Math.min(attempt - 1, 10);
+        long delay = maxDelay / 2 + ThreadLocalRandom.current().nextLong(maxDelay / 2 + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientOperationException(ErrorReason.INTERRUPTED, "Операция прервана", e);
+        }
+    }
+
+    private Outcome executeClaimed(String id, String requestHash, Supplier<ResponseEntity<?>> action) {
+        if (repository.claim(id, requestHash) == 0) {
+            IdempotencyKey existing = repository.findById(id)
+                    .filter(k -> k.getResponseStatus() != null)
+                    .orElseThrow(() -> new IdempotencyConflictException(
+                            "Запрос с этим " + HEADER + " ещё выполняется, повторите позже"));
+            return new Outcome(new StoredResponse(
+                    existing.getRequestHash(), existing.getResponseStatus(), existing.getResponseBody()), null);
+        }
+
+        ResponseEntity<?> response = action.get();
+        StoredResponse stored = new StoredResponse(
+                requestHash, response.getStatusCode().value(), serialize(response.getBody()));
+        repository.complete(id, stored.status(), stored.body());
+        return new Outcome(stored, response);
+    }
+
+    private StoredResponse await(CompletableFuture<StoredResponse> running) {
+        try {
+            return running.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            throw new IdempotencyConflictException(
+                    "Запрос с этим " + HEADER + " ещё выполняется, повторите позже", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Ожидание результата прервано", e);
+        }
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException(HEADER + " уже использован для другого запроса");
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(stored.status())
+                .header(REPLAYED_HEADER, "true");
+        if (stored.body() == null) {
+            return builder.build();
+        }
+        return builder.contentType(MediaType.APPLICATION_JSON).body(stored.body());
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(objectMapper.writeValueAsString(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Не удалось вычислить хэш запроса", e);
+        }
+    }
+
+    private String serialize(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сохранить ответ", e);
+        }
+    }
+
+    private record StoredResponse(String requestHash, int status, String body) {
+    }
+
+    // response == null — результат прочитан из БД, а не получен выполнением операции
+    private record Outcome(StoredResponse stored, ResponseEntity<?> response) {
+    }
+}
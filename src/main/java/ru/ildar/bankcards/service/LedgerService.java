@@ -0,0 +1,80 @@
+package ru.ildar.bankcards.service;
+
+import io.micrometer.observation.annotation.Observed;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import ru.ildar.bankcards.config.MetricsConfig;
+import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.entity.LedgerEntryType;
+import ru.ildar.bankcards.repository.LedgerEntryRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Журнал движений по картам с двойной записью: каждый перевод — две проводки
+ * (списание и зачисление) с общим transfer_id и нулевой суммой.
+ * <p>
+ * Проводки пишутся в транзакции перевода, пока строки карт заблокированы,
+ * поэтому seq из последовательности монотонен в пределах карты. Вставка идёт через JDBC-батч:
+ * seq выдаёт DEFAULT nextval, и Hibernate не делает отдельный запрос за каждым id.
+ */
+@Service
+@Observed(name = MetricsConfig.SERVICE_OBSERVATION)
+@RequiredArgsConstructor
+public class LedgerService {
+
+    private static final String INSERT_ENTRY = """
+            INSERT INTO ledger_entries (transfer_id, card_id, counterparty_card_id, amount, entry_type)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerEntryRepository ledgerEntryRepository;
+
+    public UUID recordTransfer(UUID fromCardId, UUID toCardId, BigDecimal amount) {
+        UUID transferId = UUID.randomUUID();
+        jdbcTemplate.batchUpdate(INSERT_ENTRY, postings(transferId, fromCardId, toCardId, amount));
+        return transferId;
+    }
+
+    public void recordTransfers(List<TransferRequestDto> transfers) {
+        List<Object[]> rows = new ArrayList<>(transfers.size() * 2);
+        for (TransferRequestDto transfer : transfers) {
+            rows.addAll(postings(UUID.randomUUID(), transfer.getFromCardId(), transfer.getToCardId(), transfer.getAmount()));
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ENTRY, rows);
+        }
+    }
+
+    public void recordOpening(UUID cardId, BigDecimal amount) {
+        jdbcTemplate.update(INSERT_ENTRY, cardId, cardId, null, amount, LedgerEntryType.OPENING.name());
+    }
+
+    public void recordOpenings(List<UUID> cardIds, BigDecimal amount) {
+        List<Object[]> rows = new ArrayList<>(cardIds.size());
+        for (UUID cardId : cardIds) {
+            rows.add(new Object[]{cardId, cardId, null, amount, LedgerEntryType.OPENING.name()});
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ENTRY, rows);
+        }
+    }
+
+    /**
+     * Баланс карты, восстановленный по снимку и хвосту журнала.
+     */
+    public BigDecimal derivedBalance(UUID cardId) {
+        return ledgerEntryRepository.derivedBalance(cardId);
+    }
+
+    private static List<Object[]> postings(UUID transferId, UUID fromCardId, UUID toCardId, BigDecimal amount) {
+        return List.of(
+                new Object[]{transferId, fromCardId, toCardId, amount.negate(), LedgerEntryType.TRANSFER.name()},
+                new Object[]{transferId, toCardId, fromCardId, amount, LedgerEntryType.TRANSFER.name()});
+    }
+}
@@ -0,0 +1,95 @@
+package ru.ildar.bankcards.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.ildar.bankcards.dto.request.ExportFormat;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Потоковая выгрузка результата SQL-запроса в NDJSON или CSV.
+ * <p>
+ * Запрос читается в read-only транзакции с заданным fetch size: драйвер PostgreSQL
+ * в этом случае использует серверный курсор и держит в памяти одну порцию строк,
+ * а каждая строка сразу пишется в ответ. Размер выгрузки не влияет на потребление heap.
+ */
+@Component
+public class StreamingExporter {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    public StreamingExporter(DataSource dataSource,
+                             PlatformTransactionManager transactionManager,
+                             ObjectMapper objectMapper,
+                             @Value("${export.fetch-size:1000}") int fetchSize) {
+        // Драйвер PostgreSQL читает порциями только при заданном fetch size и выключенном autocommit
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Тело ответа, которое выполнит запрос и запишет строки уже при отдаче ответа.
+     * Права доступа нужно проверить до вызова — в асинхронном потоке ошибку клиенту не вернуть.
+     *
+     * @param csvHeader строка заголовка CSV с переводом строки
+     * @param csvRow    запись одной строки CSV с переводом строки
+     */
+    public <T> StreamingResponseBody export(ExportFormat format, Class<T> type,
+                                            String csvHeader, CsvRowWriter<T> csvRow,
+                                            String sql, RowMapper<T> rowMapper, Object... args) {
+        // Генератор не закрывает и не сбрасывает поток после каждой строки — буферизацией управляет Writer
+        ObjectWriter ndjsonWriter = objectMapper.writerFor(type)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (format == ExportFormat.CSV) {
+                writer.write(csvHeader);
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(sql, rs -> {
+                    T row = rowMapper.mapRow(rs, 0);
+                    try {
+                        if (format == ExportFormat.CSV) {
+                            csvRow.write(writer, row);
+                        } else {
+                            ndjsonWriter.writeValue(writer, row);
+                            writer.write('\n');
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, args));
+            } catch (UncheckedIOException e) {
+                // Клиент оборвал соединение — транзакция и курсор уже закрыты
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+    }
+
+    @FunctionalInterface
+    public interface CsvRowWriter<T> {
+        void write(Writer writer, T row) throws IOException;
+    }
+}
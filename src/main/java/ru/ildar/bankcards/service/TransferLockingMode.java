@@ -0,0 +1,25 @@
+package ru.ildar.bankcards.service;
+
+/**
+ * Способ защиты балансов от потерянных обновлений при конкурентных переводах
+ * (свойство transfer.locking-mode).
+ */
+public enum TransferLockingMode {
+
+    /**
+     * Один SQL-запрос {@code CardRepository#transferAtomically}: блокировка, проверки,
+     * списание и зачисление за одно обращение к БД, без загрузки сущностей.
+     */
+    ATOMIC,
+
+    /**
+     * SELECT ... FOR UPDATE на обе карты в порядке id. Конкурирующие переводы ждут друг друга.
+     */
+    PESSIMISTIC,
+
+    /**
+     * Чтение без блокировок, конфликт обнаруживается по @Version при записи;
+     * транзакция повторяется с экспоненциальной задержкой.
+     */
+    OPTIMISTIC
+}
@@ -1,7 +1,9 @@
 package ru.ildar.bankcards.service;
 
 import jakarta.validation.Valid;
+import ru.ildar.bankcards.dto.request.BatchTransferRequestDto;
 import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.dto.response.BatchTransferResponseDto;
 import ru.ildar.bankcards.exception.CardOperationException;
 
 import java.util.UUID;
@@ -11,4 +13,8 @@ public interface TransferService {
     void transferBetweenCards(UUID userId, TransferRequestDto transferRequestDto) throws CardOperationException;
 
     void transfer(@Valid TransferRequestDto dto);
+
+    BatchTransferResponseDto transferBatch(UUID userId, BatchTransferRequestDto dto);
+
+    BatchTransferResponseDto transferBatch(@Valid BatchTransferRequestDto dto);
 }
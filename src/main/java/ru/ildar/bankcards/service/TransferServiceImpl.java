@@ -1,68 +1,295 @@
 package ru.ildar.bankcards.service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.observation.annotation.Observed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.config.MetricsConfig;
+import ru.ildar.bankcards.dto.request.BatchTransferMode;
+import ru.ildar.bankcards.dto.request.BatchTransferRequestDto;
 import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.dto.response.BatchTransferResponseDto;
+import ru.ildar.bankcards.dto.response.TransferLegResultDto;
+import ru.ildar.bankcards.dto.response.TransferLegStatus;
 import ru.ildar.bankcards.entity.Card;
 import ru.ildar.bankcards.entity.CardStatus;
-import ru.ildar.bankcards.entity.User;
 import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+import ru.ildar.bankcards.exception.TransientOperationException;
 import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.repository.TransferGuard;
 import ru.ildar.bankcards.repository.UserRepository;
+import ru.ildar.bankcards.util.SecurityUtil;
+import ru.ildar.bankcards.util.UuidOrder;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
+/**
+ * Переводы между картами пользователя.
+ * <p>
+ * По умолчанию (ATOMIC) перевод выполняется одним запросом {@link CardRepository#transferAtomically}.
+ * В режимах PESSIMISTIC и OPTIMISTIC обе карты читаются в порядке {@link UuidOrder}: в режиме PESSIMISTIC это порядок захвата
+ * блокировок FOR UPDATE, в режиме OPTIMISTIC — порядок UPDATE при flush.
+ * Поэтому встречные переводы A→B и B→A не образуют взаимной блокировки.
+ * Во всех режимах проводки перевода пишутся в журнал (ledger_entries) в той же транзакции.
+ * Транзакция открывается здесь же через TransactionTemplate, чтобы оптимистичный режим
+ * мог повторить её целиком.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
+@Observed(name = MetricsConfig.SERVICE_OBSERVATION)
 public class TransferServiceImpl implements TransferService {
 
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
+    private final LedgerService ledgerService;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferLockingMode lockingMode;
+    private final int maxAttempts;
+    private final long backoffMs;
+
+    public TransferServiceImpl(CardRepository cardRepository,
+                               UserRepository userRepository,
+                               LedgerService ledgerService,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${transfer.locking-mode:ATOMIC}") TransferLockingMode lockingMode,
+                               @Value("${transfer.optimistic.max-attempts:5}") int maxAttempts,
+                               @Value("${transfer.optimistic.backoff-ms:10}") long backoffMs) {
+        this.cardRepository = cardRepository;
+        this.userRepository = userRepository;
+        this.ledgerService = ledgerService;
+        this.transactionTemplate = transactionTemplate;
+        this.lockingMode = lockingMode;
+        this.maxAttempts = maxAttempts;
+        this.backoffMs = backoffMs;
+    }
 
     @Override
-    @Transactional
     public void transferBetweenCards(UUID userId, TransferRequestDto dto) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new CardOperationException("Пользователь не найден"));
+        if (dto.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new CardOperationException(ErrorReason.INVALID_AMOUNT, "Сумма перевода должна быть положительной");
+        }
+        if (dto.getFromCardId().equals(dto.getToCardId())) {
+            throw new CardOperationException(ErrorReason.SAME_CARD, "Нельзя перевести средства на ту же карту");
+        }
+
+        switch (lockingMode) {
+            case ATOMIC -> transferAtomically(userId, dto);
+            case OPTIMISTIC -> transferWithRetry(userId, dto);
+            case PESSIMISTIC -> transactionTemplate.executeWithoutResult(status -> {
+                doTransfer(userId, dto, true);
+                ledgerService.recordTransfer(dto.getFromCardId(), dto.getToCardId(), dto.getAmount());
+            });
+        }
+    }
+
+    @Override
+    public void transfer(TransferRequestDto dto) {
+        transferBetweenCards(SecurityUtil.requireCurrentUserId(userRepository::findIdByUsername), dto);
+    }
+
+    /**
+     * Пакет переводов в одной транзакции. Все карты пакета блокируются одним
+     * SELECT ... FOR UPDATE в порядке id, переводы применяются по очереди к балансам в памяти,
+     * и при коммите каждая изменённая карта получает один UPDATE (JDBC-батчами,
+     * hibernate.jdbc.batch_size), сколько бы переводов её ни затронуло.
+     * Проводки применённых переводов пишутся в журнал одним JDBC-батчем.
+     */
+    @Override
+    public BatchTransferResponseDto transferBatch(UUID userId, BatchTransferRequestDto dto) {
+        return transactionTemplate.execute(status -> doTransferBatch(userId, dto));
+    }
 
-        Card fromCard = cardRepository.findById(dto.getFromCardId())
-                .orElseThrow(() -> new CardOperationException("Исходящая карта не найдена"));
+    @Override
+    public BatchTransferResponseDto transferBatch(BatchTransferRequestDto dto) {
+        return transferBatch(SecurityUtil.requireCurrentUserId(userRepository::findIdByUsername), dto);
+    }
+
+    private void transferAtomically(UUID userId, TransferRequestDto dto) {
+        TransferGuard guard = TransferGuard.valueOf(cardRepository.transferAtomically(
+                dto.getFromCardId(), dto.getToCardId(), userId, dto.getAmount(), UUID.randomUUID()));
+        if (guard != TransferGuard.OK) {
+            throw new CardOperationException(guard.getReason(), guard.getMessage());
+        }
+    }
+
+    private void transferWithRetry(UUID userId, TransferRequestDto dto) {
+        // Внутри транзакции вызывающего повторить её нельзя — одна попытка, повторяет владелец транзакции
+        // (IdempotencyService для запроса с Idempotency-Key)
+        int attempts = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : maxAttempts;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    doTransfer(userId, dto, false);
+                    // Конфликт версий проявляется здесь, а не при коммите внешней транзакции.
+                    // После UPDATE строки карт заблокированы — только теперь можно писать проводки
+                    cardRepository.flush();
+                    ledgerService.recordTransfer(dto.getFromCardId(), dto.getToCardId(), dto.getAmount());
+                });
+                return;
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= attempts) {
+                    log.warn("Перевод {} -> {} не выполнен после {} попыток: конфликт версий",
+                            dto.getFromCardId(), dto.getToCardId(), attempt);
+                    throw new TransientOperationException(ErrorReason.CONCURRENT_MODIFICATION,
+                            "Карта изменена параллельной операцией, повторите перевод позже", e);
+                }
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void doTransfer(UUID userId, TransferRequestDto dto, boolean lockRows) {
+        UUID fromId = dto.getFromCardId();
+        UUID toId = dto.getToCardId();
 
-        Card toCard = cardRepository.findById(dto.getToCardId())
-                .orElseThrow(() -> new CardOperationException("Целевая карта не найдена"));
+        // Карты всегда читаются (и блокируются) от меньшего id к большему
+        boolean fromFirst = UuidOrder.compare(fromId, toId) < 0;
+        Card first = loadCard(fromFirst ? fromId : toId, lockRows, fromFirst);
+        Card second = loadCard(fromFirst ? toId : fromId, lockRows, !fromFirst);
+        Card fromCard = fromFirst ? first : second;
+        Card toCard = fromFirst ? second : first;
 
         if (!fromCard.getOwner().getId().equals(userId) || !toCard.getOwner().getId().equals(userId)) {
-            throw new CardOperationException("Перевод возможен только между своими картами");
+            throw new CardOperationException(ErrorReason.NOT_CARD_OWNER, "Перевод возможен только между своими картами");
         }
 
         if (fromCard.getStatus() != CardStatus.ACTIVE) {
-            throw new CardOperationException("Исходящая карта не активна");
+            throw new CardOperationException(ErrorReason.CARD_NOT_ACTIVE, "Исходящая карта не активна");
         }
 
         if (toCard.getStatus() != CardStatus.ACTIVE) {
-            throw new CardOperationException("Целевая карта не активна");
+            throw new CardOperationException(ErrorReason.CARD_NOT_ACTIVE, "Целевая карта не активна");
         }
 
         BigDecimal amount = dto.getAmount();
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new CardOperationException("Сумма перевода должна быть положительной");
-        }
-
         if (fromCard.getBalance().compareTo(amount) < 0) {
-            throw new CardOperationException("Недостаточно средств на исходящей карте");
+            throw new CardOperationException(ErrorReason.INSUFFICIENT_FUNDS, "Недостаточно средств на исходящей карте");
         }
 
         fromCard.setBalance(fromCard.getBalance().subtract(amount));
         toCard.setBalance(toCard.getBalance().add(amount));
+    }
+
+    private BatchTransferResponseDto doTransferBatch(UUID userId, BatchTransferRequestDto dto) {
+        List<TransferRequestDto> legs = dto.getTransfers();
 
-        cardRepository.save(fromCard);
-        cardRepository.save(toCard);
+        Set<UUID> cardIds = new HashSet<>();
+        for (TransferRequestDto leg : legs) {
+            cardIds.add(leg.getFromCardId());
+            cardIds.add(leg.getToCardId());
+        }
+        Map<UUID, Card> cards = new HashMap<>();
+        for (Card card : cardRepository.findAllByIdInForUpdate(cardIds)) {
+            cards.put(card.getId(), card);
+        }
+
+        // Сущности не меняются, пока не ясно, будет ли пакет применён
+        Map<UUID, BigDecimal> balances = new HashMap<>();
+        cards.values().forEach(card -> balances.put(card.getId(), card.getBalance()));
+
+        List<TransferLegResultDto> results = new ArrayList<>(legs.size());
+        List<TransferRequestDto> appliedLegs = new ArrayList<>(legs.size());
+        int rejected = 0;
+        for (int i = 0; i < legs.size(); i++) {
+            TransferGuard guard = applyLeg(userId, legs.get(i), cards, balances);
+            if (guard == TransferGuard.OK) {
+                appliedLegs.add(legs.get(i));
+                results.add(legResult(i, TransferLegStatus.APPLIED, null));
+            } else {
+                rejected++;
+                results.add(legResult(i, TransferLegStatus.REJECTED, guard.getMessage()));
+            }
+        }
+
+        boolean commit = rejected == 0 || dto.getMode() == BatchTransferMode.BEST_EFFORT;
+        if (commit) {
+            balances.forEach((cardId, balance) -> cards.get(cardId).setBalance(balance));
+            ledgerService.recordTransfers(appliedLegs);
+        } else {
+            results.replaceAll(result -> result.getStatus() == TransferLegStatus.APPLIED
+                    ? legResult(result.getIndex(), TransferLegStatus.ROLLED_BACK, null)
+                    : result);
+        }
+
+        return BatchTransferResponseDto.builder()
+                .mode(dto.getMode())
+                .committed(commit)
+                .applied(commit ? legs.size() - rejected : 0)
+                .rejected(rejected)
+                .results(results)
+                .build();
     }
 
-    @Override
-    public void transfer(TransferRequestDto dto) {
-        // Можно реализовать при необходимости
+    private TransferGuard applyLeg(UUID userId, TransferRequestDto leg,
+                                   Map<UUID, Card> cards, Map<UUID, BigDecimal> balances) {
+        if (leg.getFromCardId().equals(leg.getToCardId())) {
+            return TransferGuard.SAME_CARD;
+        }
+        Card fromCard = cards.get(leg.getFromCardId());
+        Card toCard = cards.get(leg.getToCardId());
+        if (fromCard == null) {
+            return TransferGuard.SOURCE_NOT_FOUND;
+        }
+        if (toCard == null) {
+            return TransferGuard.TARGET_NOT_FOUND;
+        }
+        if (!fromCard.getOwner().getId().equals(userId) || !toCard.getOwner().getId().equals(userId)) {
+            return TransferGuard.NOT_OWNER;
+        }
+        if (fromCard.getStatus() != CardStatus.ACTIVE) {
+            return TransferGuard.SOURCE_NOT_ACTIVE;
+        }
+        if (toCard.getStatus() != CardStatus.ACTIVE) {
+            return TransferGuard.TARGET_NOT_ACTIVE;
+        }
+        BigDecimal amount = leg.getAmount();
+        if (balances.get(fromCard.getId()).compareTo(amount) < 0) {
+            return TransferGuard.INSUFFICIENT_FUNDS;
+        }
+
+        balances.merge(fromCard.getId(), amount, BigDecimal::subtract);
+        balances.merge(toCard.getId(), amount, BigDecimal::add);
+        return TransferGuard.OK;
+    }
+
+    private static TransferLegResultDto legResult(int index, TransferLegStatus status, String error) {
+        return TransferLegResultDto.builder()
+                .index(index)
+                .status(status)
+                .error(error)
+                .build();
+    }
+
+    private Card loadCard(UUID cardId, boolean lockRow, boolean source) {
+        return (lockRow ? cardRepository.findByIdForUpdate(cardId) : cardRepository.findById(cardId))
+                .orElseThrow(() -> new CardOperationException(ErrorReason.CARD_NOT_FOUND,
+                        source ? "Исходящая карта не найдена" : "Целевая карта не найдена"));
+    }
+
+    /**
+     * Экспоненциальная задержка со случайным разбросом, чтобы конкурирующие переводы
+     * не повторялись синхронно.
+     */
+    private void backoff(int attempt) {
+        long maxDelay = backoffMs << Math.min(attempt - 1, 10);
+        long delay = maxDelay / 2 + ThreadLocalRandom.current().nextLong(maxDelay / 2 + 1);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransientOperationException(ErrorReason.INTERRUPTED, "Перевод прерван", e);
+        }
     }
 }
@@ -2,9 +2,12 @@ package ru.ildar.bankcards.service;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.ildar.bankcards.dto.request.ExportFormat;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.dto.response.UserResponseDto;
 import ru.ildar.bankcards.entity.User;
 
-import java.util.List;
 import java.util.UUID;
 
 public interface UserService {
@@ -21,8 +24,10 @@ public interface UserService {
 
     void deleteUser(UUID userId);
 
-    // Добавим этот метод для контроллера
-    List<User> getAllUsers();
+    // Листинг для администратора: keyset-страницы по id, DTO без хэша пароля
+    CursorPageDto<UserResponseDto> listUsers(String cursor, int size);
+
+    StreamingResponseBody exportUsers(ExportFormat format);
 
     // Метод, соответствующий getUserById в контроллере
     User getUserById(UUID userId);
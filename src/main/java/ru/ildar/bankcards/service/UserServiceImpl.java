@@ -1,24 +1,79 @@
 package ru.ildar.bankcards.service;
 
+import io.micrometer.observation.annotation.Observed;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.ildar.bankcards.config.MetricsConfig;
+import ru.ildar.bankcards.dto.request.ExportFormat;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.dto.response.UserResponseDto;
+import ru.ildar.bankcards.entity.Role;
 import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
 import ru.ildar.bankcards.repository.UserRepository;
+import ru.ildar.bankcards.repository.UserRoleView;
+import ru.ildar.bankcards.repository.UserView;
+import ru.ildar.bankcards.security.PrincipalCache;
+import ru.ildar.bankcards.security.TokenRevocationList;
+import ru.ildar.bankcards.util.KeysetCursor;
+import ru.ildar.bankcards.util.UuidOrder;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
+@Observed(name = MetricsConfig.SERVICE_OBSERVATION)
 @Transactional
 public class UserServiceImpl implements UserService {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
+    // Роли агрегируются коррелированным подзапросом по индексу ix_user_roles_user_id:
+    // users читается по первичному ключу в порядке id без сортировки и GROUP BY всей таблицы
+    private static final String EXPORT = """
+            SELECT u.id, u.username, u.email,
+                   (SELECT string_agg(r.roles, ',') FROM user_roles r WHERE r.user_id = u.id) AS roles
+            FROM users u
+            ORDER BY u.id
+            """;
+
+    private static final String CSV_HEADER = "id,username,email,roles\n";
+
+    private static final RowMapper<UserResponseDto> EXPORT_ROW_MAPPER = (rs, rowNum) -> UserResponseDto.builder()
+            .id(rs.getObject("id", UUID.class))
+            .username(rs.getString("username"))
+            .email(rs.getString("email"))
+            .roles(parseRoles(rs.getString("roles")))
+            .build();
+
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
+    private final TokenRevocationList revocationList;
+    private final StreamingExporter streamingExporter;
 
-    public UserServiceImpl(UserRepository userRepository) {
+    public UserServiceImpl(UserRepository userRepository,
+                           PrincipalCache principalCache,
+                           TokenRevocationList revocationList,
+                           StreamingExporter streamingExporter) {
         this.userRepository = userRepository;
+        this.principalCache = principalCache;
+        this.revocationList = revocationList;
+        this.streamingExporter = streamingExporter;
     }
 
     @Override
@@ -49,27 +104,121 @@ public class UserServiceImpl implements UserService {
         if (user.getId() == null) {
             throw new IllegalArgumentException("User ID must not be null for update");
         }
-        if (!userRepository.existsById(user.getId())) {
-            throw new EntityNotFoundException("User with ID " + user.getId() + " not found");
+        User existing = userRepository.findById(user.getId())
+                .orElseThrow(() -> new EntityNotFoundException("User with ID " + user.getId() + " not found"));
+
+        // Имя могло поменяться — сбрасываем кэш и по старому, и по новому имени
+        principalCache.invalidate(existing.getUsername());
+        principalCache.invalidate(user.getUsername());
+        // Имя и роли в stateless-режиме берутся из claims токена — при их смене выданные токены отзываем
+        if (!Objects.equals(existing.getUsername(), user.getUsername())
+                || !roles(existing).equals(roles(user))) {
+            revocationList.revoke(user.getId());
         }
+
         return userRepository.save(user);
     }
 
     @Override
     public void deleteUser(UUID userId) {
-        if (!userRepository.existsById(userId)) {
-            throw new EntityNotFoundException("User with ID " + userId + " not found");
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new EntityNotFoundException("User with ID " + userId + " not found"));
+
+        userRepository.delete(user);
+        principalCache.invalidate(user.getUsername());
+        // Токены с ролями в claims проверяются без БД — отзываем их явно
+        revocationList.revoke(user.getId());
+    }
+
+    /**
+     * Страница пользователей: один запрос по users (id, username, email) по первичному ключу
+     * и один запрос ролей всей страницы. Сущности User с EAGER-ролями не загружаются.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageDto<UserResponseDto> listUsers(String cursor, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        UUID afterId = cursor == null || cursor.isBlank() ? UuidOrder.MIN : parseCursor(cursor);
+
+        List<UserView> users = userRepository.findViewsAfter(afterId, Limit.of(limit + 1));
+        String nextCursor = null;
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            nextCursor = KeysetCursor.encode(users.get(limit - 1).id());
+        }
+
+        Map<UUID, Set<Role>> roles = new HashMap<>();
+        if (!users.isEmpty()) {
+            List<UUID> ids = users.stream().map(UserView::id).toList();
+            for (UserRoleView userRole : userRepository.findRolesByUserIdIn(ids)) {
+                roles.computeIfAbsent(userRole.userId(), id -> EnumSet.noneOf(Role.class)).add(userRole.role());
+            }
         }
-        userRepository.deleteById(userId);
+
+        List<UserResponseDto> items = users.stream()
+                .map(user -> UserResponseDto.builder()
+                        .id(user.id())
+                        .username(user.username())
+                        .email(user.email())
+                        .roles(roles.getOrDefault(user.id(), Set.of()))
+                        .build())
+                .toList();
+        return CursorPageDto.<UserResponseDto>builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .build();
     }
 
     @Override
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    public StreamingResponseBody exportUsers(ExportFormat format) {
+        return streamingExporter.export(format, UserResponseDto.class, CSV_HEADER, UserServiceImpl::writeCsv,
+                EXPORT, EXPORT_ROW_MAPPER);
     }
 
     @Override
     public User getUserById(UUID userId) {
         return findById(userId);
     }
+
+    private static UUID parseCursor(String cursor) {
+        try {
+            return UUID.fromString(KeysetCursor.decode(cursor, 1)[0]);
+        } catch (IllegalArgumentException e) {
+            throw new CardOperationException(ErrorReason.INVALID_CURSOR, "Некорректный курсор");
+        }
+    }
+
+    private static Set<Role> roles(User user) {
+        return user.getRoles() == null ? Set.of() : Set.copyOf(user.getRoles());
+    }
+
+    private static Set<Role> parseRoles(String roles) {
+        Set<Role> result = EnumSet.noneOf(Role.class);
+        if (roles != null) {
+            for (String role : roles.split(",")) {
+                result.add(Role.valueOf(role));
+            }
+        }
+        return result;
+    }
+
+    private static void writeCsv(Writer writer, UserResponseDto user) throws IOException {
+        writer.write(user.getId().toString());
+        writer.write(',');
+        writer.write(csvField(user.getUsername()));
+        writer.write(',');
+        writer.write(csvField(user.getEmail()));
+        writer.write(',');
+        // Роли через ';', чтобы не экранировать поле
+        writer.write(user.getRoles().stream().map(Role::name).collect(Collectors.joining(";")));
+        writer.write('\n');
+    }
+
+    // Имя и email вводит пользователь — поле с разделителями и кавычками берём в кавычки по RFC 4180
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
 }
@@ -1,49 +1,231 @@
 package ru.ildar.bankcards.util;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class CardNumberEncryptor {
 
     private static final String ENCRYPTION_ALGORITHM = "AES/GCM/NoPadding";
+    private static final String FINGERPRINT_ALGORITHM = "HmacSHA256";
     private static final int GCM_TAG_LENGTH = 128;
-    private static final byte[] IV = new byte[12]; // можно заменить на генерацию
+    private static final int IV_LENGTH = 12;
+
+    // Старые записи зашифрованы с нулевым IV и хранятся без префикса
+    private static final byte[] LEGACY_IV = new byte[IV_LENGTH];
+
+    // Новый формат: префикс версии + Base64(IV || шифротекст с тегом), IV случайный для каждой записи
+    private static final String V2_PREFIX = "v2:";
 
     // Ключ должен храниться в безопасном месте
     private static final String SECRET_KEY = "1234567890123456"; // 16 байт
 
-    private SecretKey getKey() {
-        return new SecretKeySpec(SECRET_KEY.getBytes(), "AES");
+    // Ключ и параметры неизменяемы — создаём один раз, а не на каждый вызов
+    private static final SecretKey KEY = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.US_ASCII), "AES");
+    private static final GCMParameterSpec LEGACY_GCM_SPEC = new GCMParameterSpec(GCM_TAG_LENGTH, LEGACY_IV);
+
+    private static final Base64.Decoder DECODER = Base64.getDecoder();
+    private static final Base64.Encoder ENCODER = Base64.getEncoder();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Контексты (Cipher, Mac и буферы) не потокобезопасны и берутся из ограниченного пула, а не из ThreadLocal:
+    // виртуальный поток живёт один запрос, и ThreadLocal создавал бы шифр заново на каждый запрос.
+    // Шифрование не блокирует поток, поэтому одновременно занято не больше контекстов, чем ядер
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    private final SecretKey fingerprintKey;
+    private final BlockingQueue<CipherContext> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    // Таймеры, а не @Timed: вызовы по одному на карту в списках, прокси с аспектом дороже самой расшифровки
+    private final Timer encryptTimer;
+    private final Timer decryptTimer;
+
+    /**
+     * Без метрик — для тестов и бенчмарков: глобальный реестр без подключённых реестров ничего не пишет.
+     */
+    public CardNumberEncryptor(String fingerprintSecret) {
+        this(fingerprintSecret, Metrics.globalRegistry);
+    }
+
+    @Autowired
+    public CardNumberEncryptor(@Value("${card.fingerprint-secret}") String fingerprintSecret,
+                               MeterRegistry meterRegistry) {
+        this.fingerprintKey = new SecretKeySpec(
+                fingerprintSecret.getBytes(StandardCharsets.UTF_8), FINGERPRINT_ALGORITHM);
+        this.encryptTimer = cryptoTimer(meterRegistry, "encrypt");
+        this.decryptTimer = cryptoTimer(meterRegistry, "decrypt");
     }
 
     public String encrypt(String plainText) {
+        long start = System.nanoTime();
+        CipherContext context = acquire();
         try {
-            Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, IV);
-            cipher.init(Cipher.ENCRYPT_MODE, getKey(), spec);
-            byte[] encrypted = cipher.doFinal(plainText.getBytes());
-            return Base64.getEncoder().encodeToString(encrypted);
+            return context.encrypt(plainText);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка шифрования", e);
+        } finally {
+            release(context);
+            encryptTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
     public String decrypt(String cipherText) {
+        long start = System.nanoTime();
+        CipherContext context = acquire();
         try {
-            Cipher cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, IV);
-            cipher.init(Cipher.DECRYPT_MODE, getKey(), spec);
-            byte[] decoded = Base64.getDecoder().decode(cipherText);
-            byte[] decrypted = cipher.doFinal(decoded);
-            return new String(decrypted);
+            return context.decrypt(cipherText);
         } catch (Exception e) {
             throw new RuntimeException("Ошибка дешифрования", e);
+        } finally {
+            release(context);
+            decryptTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Детерминированный отпечаток номера карты (HMAC-SHA256, hex) для поиска по номеру.
+     * Шифротекст со случайным IV для поиска не годится: один и тот же номер шифруется по-разному.
+     * Пробелы и прочие разделители не влияют на результат.
+     */
+    public String fingerprint(String plainNumber) {
+        CipherContext context = acquire();
+        try {
+            return context.fingerprint(CardNumberMasker.digitsOnly(plainNumber));
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка вычисления отпечатка номера карты", e);
+        } finally {
+            release(context);
+        }
+    }
+
+    /**
+     * @return true, если значение зашифровано в старом формате с фиксированным IV
+     */
+    public boolean isLegacy(String cipherText) {
+        return !cipherText.startsWith(V2_PREFIX);
+    }
+
+    // Пул пуст, когда все контексты заняты: создаём ещё один, лишний при возврате отбрасывается
+    private CipherContext acquire() {
+        CipherContext context = pool.poll();
+        return context != null ? context : new CipherContext(fingerprintKey);
+    }
+
+    private void release(CipherContext context) {
+        pool.offer(context);
+    }
+
+    private static Timer cryptoTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("card.number.crypto")
+                .description("Шифрование и расшифровка номеров карт")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Переиспользуемые шифр, HMAC и буферы; в каждый момент принадлежат одному вызову.
+     * Base64 декодируется в заранее выделенный массив, расшифровка пишет в свой буфер —
+     * на каждый вызов создаётся только итоговая строка.
+     */
+    private static final class CipherContext {
+
+        private final Cipher cipher;
+        private final Mac mac;
+        private final byte[] iv = new byte[IV_LENGTH];
+        private byte[] encoded = new byte[0];
+        private byte[] decoded = new byte[64];
+        private byte[] plain = new byte[64];
+
+        private CipherContext(SecretKey fingerprintKey) {
+            try {
+                this.cipher = Cipher.getInstance(ENCRYPTION_ALGORITHM);
+                this.mac = Mac.getInstance(FINGERPRINT_ALGORITHM);
+                this.mac.init(fingerprintKey);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Криптографические алгоритмы недоступны", e);
+            }
+        }
+
+        private String encrypt(String plainText) throws GeneralSecurityException {
+            // Случайный IV на каждую запись: повторная инициализация шифра с новым IV разрешена
+            RANDOM.nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, KEY, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+
+            // При шифровании GCM getOutputSize точен: длина данных плюс тег
+            byte[] input = plainText.getBytes(StandardCharsets.UTF_8);
+            byte[] output = new byte[IV_LENGTH + cipher.getOutputSize(input.length)];
+            System.arraycopy(iv, 0, output, 0, IV_LENGTH);
+            cipher.doFinal(input, 0, input.length, output, IV_LENGTH);
+
+            return V2_PREFIX + ENCODER.encodeToString(output);
+        }
+
+        private String decrypt(String cipherText) throws GeneralSecurityException {
+            boolean v2 = cipherText.startsWith(V2_PREFIX);
+            int offset = v2 ? V2_PREFIX.length() : 0;
+            int decodedLength = decode(cipherText, offset);
+
+            int dataOffset;
+            if (v2) {
+                cipher.init(Cipher.DECRYPT_MODE, KEY, new GCMParameterSpec(GCM_TAG_LENGTH, decoded, 0, IV_LENGTH));
+                dataOffset = IV_LENGTH;
+            } else {
+                cipher.init(Cipher.DECRYPT_MODE, KEY, LEGACY_GCM_SPEC);
+                dataOffset = 0;
+            }
+
+            int dataLength = decodedLength - dataOffset;
+            int outputSize = cipher.getOutputSize(dataLength);
+            if (plain.length < outputSize) {
+                plain = new byte[outputSize];
+            }
+            int plainLength = cipher.doFinal(decoded, dataOffset, dataLength, plain, 0);
+            return new String(plain, 0, plainLength, StandardCharsets.UTF_8);
+        }
+
+        private String fingerprint(String digits) {
+            byte[] hmac = mac.doFinal(digits.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(hmac);
+        }
+
+        /**
+         * Декодирует Base64 начиная с offset в буфер decoded и возвращает число байт.
+         */
+        private int decode(String text, int offset) {
+            int length = text.length() - offset;
+            // Decoder.decode(byte[], byte[]) читает массив целиком, поэтому держим буфер точной длины.
+            // Все шифротексты номеров карт одной длины, так что буфер выделяется один раз.
+            if (encoded.length != length) {
+                encoded = new byte[length];
+            }
+            for (int i = 0; i < length; i++) {
+                encoded[i] = (byte) text.charAt(offset + i);
+            }
+
+            int maxDecoded = length / 4 * 3 + 3;
+            if (decoded.length < maxDecoded) {
+                decoded = new byte[maxDecoded];
+            }
+            return DECODER.decode(encoded, decoded);
         }
     }
 }
@@ -43,4 +43,43 @@ public class CardNumberMasker {
 
         return masked.toString();
     }
+
+    /**
+     * Маскирует номер карты по сохранённым последним 4 цифрам, без расшифровки полного номера.
+     * Например: "5678" -> "**** **** **** 5678"
+     *
+     * @param last4 последние 4 цифры номера
+     * @return маскированный номер
+     */
+    public String maskLast4(String last4) {
+        if (last4 == null || last4.length() != 4) {
+            throw new IllegalArgumentException("Ожидаются ровно 4 последние цифры номера карты");
+        }
+        return "**** **** **** " + last4;
+    }
+
+    /**
+     * Последние 4 цифры номера карты (разделители игнорируются).
+     */
+    public static String lastFour(String cardNumber) {
+        String digits = digitsOnly(cardNumber);
+        if (digits.length() < 4) {
+            throw new IllegalArgumentException("Номер карты должен содержать минимум 4 цифры");
+        }
+        return digits.substring(digits.length() - 4);
+    }
+
+    /**
+     * Номер карты без пробелов и других разделителей.
+     */
+    public static String digitsOnly(String cardNumber) {
+        StringBuilder digits = new StringBuilder(cardNumber.length());
+        for (int i = 0; i < cardNumber.length(); i++) {
+            char c = cardNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        return digits.toString();
+    }
 }
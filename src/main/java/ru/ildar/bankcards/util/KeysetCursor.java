@@ -0,0 +1,48 @@
+package ru.ildar.bankcards.util;
+
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор keyset-пагинации: значения ключа последней строки страницы,
+ * склеенные через '|' и закодированные в Base64url. Клиент передаёт его обратно без изменений.
+ */
+public final class KeysetCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private KeysetCursor() {
+    }
+
+    public static String encode(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            if (!sb.isEmpty()) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(part);
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return значения ключа в том порядке, в котором они были переданы в encode
+     * @throws CardOperationException если курсор повреждён или от другого списка
+     */
+    public static String[] decode(String cursor, int expectedParts) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|", -1);
+            if (parts.length != expectedParts) {
+                throw new IllegalArgumentException("parts: " + parts.length);
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new CardOperationException(ErrorReason.INVALID_CURSOR, "Некорректный курсор");
+        }
+    }
+}
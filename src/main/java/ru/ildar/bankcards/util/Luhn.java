@@ -0,0 +1,56 @@
+package ru.ildar.bankcards.util;
+
+/**
+ * Контрольная цифра номера карты по алгоритму Луна (ISO/IEC 7812-1).
+ */
+public final class Luhn {
+
+    private Luhn() {
+    }
+
+    /**
+     * @param payload цифры номера без контрольной
+     * @return контрольная цифра, которую нужно дописать в конец
+     */
+    public static int checkDigit(CharSequence payload) {
+        int sum = 0;
+        // Справа налево удваивается каждая вторая цифра, начиная с последней цифры payload
+        boolean doubled = true;
+        for (int i = payload.length() - 1; i >= 0; i--) {
+            int digit = digit(payload.charAt(i));
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * @param number номер карты только из цифр, контрольная цифра последняя
+     */
+    public static boolean isValid(String number) {
+        if (number == null || number.length() < 2) {
+            return false;
+        }
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        int last = number.length() - 1;
+        return checkDigit(number.subSequence(0, last)) == digit(number.charAt(last));
+    }
+
+    private static int digit(char c) {
+        if (c < '0' || c > '9') {
+            throw new IllegalArgumentException("Номер карты должен состоять из цифр");
+        }
+        return c - '0';
+    }
+}
@@ -2,8 +2,13 @@ package ru.ildar.bankcards.util;
 
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+import ru.ildar.bankcards.security.UserPrincipal;
 
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
 
 public class SecurityUtil {
 
@@ -14,4 +19,32 @@ public class SecurityUtil {
         }
         return Optional.ofNullable(authentication.getName());
     }
+
+    /**
+     * UUID текущего пользователя из принципала (берётся из claim uid токена, без запроса в БД).
+     */
+    public static Optional<UUID> getCurrentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || !(authentication.getPrincipal() instanceof UserPrincipal principal)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(principal.getId());
+    }
+
+    /**
+     * UUID текущего пользователя. Из принципала, а запросом по имени — только для принципалов без id
+     * (режим jwt.stateless-roles=false со старыми токенами).
+     *
+     * @param idByUsername поиск id пользователя по имени, обычно UserRepository::findIdByUsername
+     * @throws CardOperationException если пользователь не аутентифицирован или не найден
+     */
+    public static UUID requireCurrentUserId(Function<String, Optional<UUID>> idByUsername) {
+        return getCurrentUserId().orElseGet(() -> {
+            String username = getCurrentUsername()
+                    .orElseThrow(() -> new CardOperationException(ErrorReason.NOT_AUTHENTICATED, "Пользователь не аутентифицирован"));
+            return idByUsername.apply(username)
+                    .orElseThrow(() -> new CardOperationException(ErrorReason.USER_NOT_FOUND, "Пользователь не найден"));
+        });
+    }
 }
@@ -0,0 +1,30 @@
+package ru.ildar.bankcards.util;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Порядок UUID, совпадающий с ORDER BY id в PostgreSQL.
+ * <p>
+ * PostgreSQL сравнивает uuid побайтово без знака, а {@link UUID#compareTo(UUID)} сравнивает
+ * половины как знаковые long, поэтому для ключей с установленным старшим битом порядки расходятся.
+ * Строки, которые блокируются в одной транзакции, берём строго в этом порядке —
+ * тогда встречные переводы A→B и B→A не могут взаимно заблокироваться.
+ */
+public final class UuidOrder {
+
+    // Минимальный uuid в этом порядке — начальная точка для keyset-обхода
+    public static final UUID MIN = new UUID(0L, 0L);
+
+    public static final Comparator<UUID> COMPARATOR = UuidOrder::compare;
+
+    private UuidOrder() {
+    }
+
+    public static int compare(UUID a, UUID b) {
+        int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0
+                ? result
+                : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
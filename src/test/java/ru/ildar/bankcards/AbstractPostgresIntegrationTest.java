@@ -0,0 +1,84 @@
+package ru.ildar.bankcards;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Общая база интеграционных тестов на настоящем PostgreSQL.
+ * Контейнер один на все тестовые классы, схема создаётся миграциями Liquibase.
+ * Без Docker тесты пропускаются.
+ */
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+public abstract class AbstractPostgresIntegrationTest {
+
+    protected static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:15");
+
+    @DynamicPropertySource
+    static void datasourceProperties(DynamicPropertyRegistry registry) {
+        POSTGRES.start();
+        registry.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registry.add("spring.datasource.username", POSTGRES::getUsername);
+        registry.add("spring.datasource.password", POSTGRES::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("card.backfill.enabled", () -> "false");
+        registry.add("ledger.snapshot.enabled", () -> "false");
+        registry.add("card.expiry.enabled", () -> "false");
+        registry.add("outbox.dispatcher.enabled", () -> "false");
+    }
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    protected CardRepository cardRepository;
+
+    /**
+     * Пользователь с уникальным именем: префикс помогает найти строки теста в общей БД.
+     */
+    protected User saveUser(String prefix, Role role) {
+        return userRepository.save(User.builder()
+                .username(prefix + UUID.randomUUID())
+                .password("password")
+                .email(UUID.randomUUID() + "@test.local")
+                .roles(Set.of(role))
+                .build());
+    }
+
+    protected User saveUser(String prefix) {
+        return saveUser(prefix, Role.ROLE_USER);
+    }
+
+    /**
+     * Активная карта со сроком действия на год вперёд и нулевым балансом; тест меняет нужные поля.
+     * Номер — уникальная заглушка, а не шифротекст: расшифровывать его тестам не нужно.
+     */
+    protected Card.CardBuilder card(User owner) {
+        return Card.builder()
+                .encryptedNumber("test-" + UUID.randomUUID())
+                .owner(owner)
+                .status(CardStatus.ACTIVE)
+                .expirationDate(LocalDate.now().plusYears(1))
+                .balance(BigDecimal.ZERO);
+    }
+
+    protected Card saveCard(User owner, String balance) {
+        return cardRepository.save(card(owner).balance(new BigDecimal(balance)).build());
+    }
+}
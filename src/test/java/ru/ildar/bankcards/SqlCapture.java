@@ -0,0 +1,69 @@
+package ru.ildar.bankcards;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Запоминает SQL, который Hibernate отправляет в БД, и показывает его обобщённый план.
+ * Подключается в тесте свойством spring.jpa.properties.hibernate.session_factory.statement_inspector.
+ */
+public class SqlCapture implements StatementInspector {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static void clear() {
+        STATEMENTS.clear();
+    }
+
+    public static String last(String fragment) {
+        for (int i = STATEMENTS.size() - 1; i >= 0; i--) {
+            if (STATEMENTS.get(i).contains(fragment)) {
+                return STATEMENTS.get(i);
+            }
+        }
+        throw new AssertionError("Запрос с фрагментом '" + fragment + "' не выполнялся");
+    }
+
+    /**
+     * План запроса без учёта значений параметров (как у подготовленного запроса после пяти выполнений).
+     * Последовательное и bitmap-сканирование отключены: в маленькой тестовой таблице планировщик выбрал бы их,
+     * а проверяется, какие условия становятся границами упорядоченного сканирования индекса.
+     */
+    public static String genericPlan(JdbcTemplate jdbcTemplate, String sql) {
+        int parameters = (int) sql.chars().filter(c -> c == '?').count();
+        StringBuilder prepared = new StringBuilder();
+        int n = 0;
+        for (char c : sql.toCharArray()) {
+            prepared.append(c == '?' ? "$" + (++n) : String.valueOf(c));
+        }
+        String arguments = parameters > 0 ? "(" + String.join(", ", Collections.nCopies(parameters, "NULL")) + ")" : "";
+        return jdbcTemplate.execute((Statement statement) -> {
+            statement.execute("SET plan_cache_mode = force_generic_plan");
+            statement.execute("SET enable_seqscan = off");
+            statement.execute("SET enable_bitmapscan = off");
+            statement.execute("PREPARE captured AS " + prepared);
+            try (ResultSet rs = statement.executeQuery("EXPLAIN EXECUTE captured" + arguments)) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+                return plan.toString();
+            } finally {
+                statement.execute("DEALLOCATE captured");
+                statement.execute("RESET ALL");
+            }
+        });
+    }
+}
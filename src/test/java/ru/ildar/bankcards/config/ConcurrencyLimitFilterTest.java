@@ -0,0 +1,74 @@
+package ru.ildar.bankcards.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(
+            1, Duration.ofMillis(50), new ObjectMapper().registerModule(new JavaTimeModule()), meterRegistry);
+
+    @Test
+    void doFilter_shouldRejectRequestsOverLimitWith503() throws Exception {
+        CountDownLatch inChain = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FilterChain slowChain = (request, response) -> {
+            inChain.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                filter.doFilter(request("/api/cards"), new MockHttpServletResponse(), slowChain);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(inChain.await(5, TimeUnit.SECONDS));
+
+        // Единственное разрешение занято — второй запрос ждёт acquire-timeout и получает 503
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(request("/api/cards"), rejected, (request, response) -> fail("запрос сверх лимита прошёл"));
+        assertEquals(503, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertTrue(rejected.getContentAsString().contains("\"status\":503"));
+
+        // Health-check лимитом не ограничен
+        MockHttpServletResponse health = new MockHttpServletResponse();
+        filter.doFilter(request("/actuator/health"), health, (request, response) -> { });
+        assertEquals(200, health.getStatus());
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(1.0, meterRegistry.get("request.limit.rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("request.limit.available").gauge().value());
+
+        // После освобождения разрешения запрос проходит
+        MockHttpServletResponse passed = new MockHttpServletResponse();
+        filter.doFilter(request("/api/cards"), passed, (request, response) -> { });
+        assertEquals(200, passed.getStatus());
+    }
+
+    private static MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRequestURI(uri);
+        return request;
+    }
+}
@@ -0,0 +1,75 @@
+package ru.ildar.bankcards.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+import ru.ildar.bankcards.exception.GlobalExceptionHandler;
+import ru.ildar.bankcards.service.CardStatementService;
+import ru.ildar.bankcards.util.CardNumberEncryptor;
+
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /actuator/prometheus доступен без токена и отдаёт таймеры сервисов, счётчики ошибок,
+ * метрики пула Hikari и статистику Hibernate.
+ */
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+// MockMvc обслуживает только основной контекст: actuator возвращаем на общий порт
+@TestPropertySource(properties = {
+        "management.server.port=",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class MetricsConfigTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CardStatementService cardStatementService;
+
+    @Autowired
+    private CardNumberEncryptor cardNumberEncryptor;
+
+    @Autowired
+    private GlobalExceptionHandler globalExceptionHandler;
+
+    @Test
+    void prometheus_shouldExposeServiceTimersAndErrorCounters() throws Exception {
+        // Без аутентификации сервис бросает CardOperationException — таймер пишется с тегом error
+        assertThrows(CardOperationException.class,
+                () -> cardStatementService.getStatement(UUID.randomUUID(), null, 10));
+        cardNumberEncryptor.decrypt(cardNumberEncryptor.encrypt("2200701234567890"));
+        globalExceptionHandler.handleCardOperationException(
+                new CardOperationException(ErrorReason.UNSUPPORTED_BIN, "BIN не поддерживается: 123456"));
+        globalExceptionHandler.handleCardOperationException(
+                new CardOperationException(ErrorReason.BIN_EXHAUSTED, "Номера карт BIN 400000 исчерпаны"));
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "service_calls_seconds_bucket{class=\"ru.ildar.bankcards.service.CardStatementService\","
+                                + "error=\"CardOperationException\",method=\"getStatement\"")))
+                .andExpect(content().string(containsString(
+                        "card_number_crypto_seconds_count{operation=\"decrypt\",}")))
+                .andExpect(content().string(containsString("jwt_validation_seconds_count{result=\"valid\",}")))
+                .andExpect(content().string(containsString(
+                        "card_operation_errors_total{reason=\"unsupported_bin\",}")))
+                .andExpect(content().string(containsString(
+                        "card_operation_errors_total{reason=\"bin_exhausted\",}")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")))
+                .andExpect(content().string(containsString("hibernate_sessions_open_total")));
+    }
+}
@@ -0,0 +1,122 @@
+package ru.ildar.bankcards.config;
+
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.security.JwtTokenProvider;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Один запрос — одна трасса: спан HTTP, внутри него аутентификация в JwtAuthFilter,
+ * метод сервиса и под ним JDBC-запросы. Спаны собирает InMemorySpanExporter.
+ */
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@TestPropertySource(properties = "management.tracing.sampling.probability=1.0")
+@Import(TracingTest.InMemoryExporterConfig.class)
+class TracingTest extends AbstractPostgresIntegrationTest {
+
+    @TestConfiguration
+    static class InMemoryExporterConfig {
+
+        @Bean
+        InMemorySpanExporter inMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @Autowired
+    private SdkTracerProvider tracerProvider;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("tracing-");
+        // BatchSpanProcessor отдаёт спаны асинхронно: дожидаемся спанов подготовки, чтобы не смешать их с проверяемыми
+        tracerProvider.forceFlush().join(10, TimeUnit.SECONDS);
+        spanExporter.reset();
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void request_shouldProduceFilterServiceAndJdbcSpansInOneTrace() throws Exception {
+        mockMvc.perform(get("/api/cards/slice")
+                        .header("Authorization", "Bearer " + tokenProvider.generateToken(user)))
+                .andExpect(status().isOk());
+
+        assertTrue(tracerProvider.forceFlush().join(10, TimeUnit.SECONDS).isSuccess());
+        List<SpanData> spans = spanExporter.getFinishedSpanItems();
+        Map<String, SpanData> byId = spans.stream().collect(Collectors.toMap(SpanData::getSpanId, Function.identity()));
+
+        SpanData server = findSpan(spans, "http get /api/cards/slice");
+        SpanData auth = findSpan(spans, "jwt-authentication");
+        SpanData service = findSpan(spans, "card-service-impl#get-user-cards-slice");
+        List<SpanData> queries = spans.stream().filter(span -> span.getName().equals("query")).toList();
+
+        assertFalse(queries.isEmpty(), "Нет спанов JDBC: " + names(spans));
+        // Между HTTP и JwtAuthFilter стоят спаны цепочки фильтров Spring Security
+        assertTrue(isDescendant(auth, server, byId));
+        assertTrue(isDescendant(service, server, byId));
+        for (SpanData query : queries) {
+            assertEquals(server.getTraceId(), query.getTraceId());
+            assertTrue(isDescendant(query, service, byId), "Запрос вне спана сервиса: " + query);
+        }
+    }
+
+    private static SpanData findSpan(List<SpanData> spans, String name) {
+        return spans.stream()
+                .filter(span -> span.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("Нет спана " + name + " среди " + names(spans)));
+    }
+
+    private static boolean isDescendant(SpanData span, SpanData ancestor, Map<String, SpanData> byId) {
+        for (SpanData current = byId.get(span.getParentSpanId()); current != null;
+             current = byId.get(current.getParentSpanId())) {
+            if (current.getSpanId().equals(ancestor.getSpanId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> names(List<SpanData> spans) {
+        return spans.stream().map(SpanData::getName).toList();
+    }
+}
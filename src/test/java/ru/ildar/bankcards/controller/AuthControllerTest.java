@@ -9,14 +9,20 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.ildar.bankcards.dto.request.LoginDto;
 import ru.ildar.bankcards.dto.response.JwtResponseDto;
+import ru.ildar.bankcards.exception.TooManyRequestsException;
 import ru.ildar.bankcards.security.JwtAuthFilter;
 import ru.ildar.bankcards.security.JwtTokenProvider;
+import ru.ildar.bankcards.security.LoginRateLimiter;
 import ru.ildar.bankcards.service.AuthService;
+
+import java.util.concurrent.CompletableFuture;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
 
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -30,6 +36,9 @@ class AuthControllerTest {
     @MockBean
     private AuthService authService;
 
+    @MockBean
+    private LoginRateLimiter loginRateLimiter;
+
     // Мокаем зависимости безопасности, чтобы контекст загружался без ошибок
     @MockBean
     private JwtTokenProvider jwtTokenProvider;
@@ -48,14 +57,38 @@ class AuthControllerTest {
 
         JwtResponseDto jwtResponse = new JwtResponseDto("token123", "Bearer", "token123");
 
-        Mockito.when(authService.login(Mockito.any(LoginDto.class))).thenReturn(jwtResponse);
+        Mockito.when(authService.login(Mockito.any(LoginDto.class)))
+                .thenReturn(CompletableFuture.completedFuture(jwtResponse));
 
-        mockMvc.perform(post("/api/auth/login")
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(loginDto))
                         .with(csrf()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.token").value("token123"));
+        Mockito.verify(loginRateLimiter).acquire(Mockito.eq("user"), Mockito.anyString());
+    }
+
+    @Test
+    void login_shouldReturn429WhenRateLimited() throws Exception {
+        LoginDto loginDto = new LoginDto();
+        loginDto.setUsername("user");
+        loginDto.setPassword("password");
+
+        Mockito.doThrow(new TooManyRequestsException("Слишком много попыток входа для этого пользователя", 12))
+                .when(loginRateLimiter).acquire(Mockito.eq("user"), Mockito.anyString());
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginDto))
+                        .with(csrf()))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "12"));
+        Mockito.verifyNoInteractions(authService);
     }
 
 
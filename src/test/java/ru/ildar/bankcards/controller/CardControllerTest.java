@@ -2,6 +2,7 @@ package ru.ildar.bankcards.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -9,23 +10,43 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import ru.ildar.bankcards.dto.request.BatchTransferMode;
+import ru.ildar.bankcards.dto.request.BatchTransferRequestDto;
 import ru.ildar.bankcards.dto.request.CardCreateDto;
+import ru.ildar.bankcards.dto.request.CardSearchFilter;
+import ru.ildar.bankcards.dto.request.CardSearchSort;
 import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.dto.response.BatchTransferResponseDto;
+import ru.ildar.bankcards.dto.response.CardBlockRequestDto;
 import ru.ildar.bankcards.dto.response.CardResponseDto;
+import ru.ildar.bankcards.dto.response.CardTransactionDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.dto.response.TransferLegResultDto;
+import ru.ildar.bankcards.dto.response.TransferLegStatus;
+import ru.ildar.bankcards.entity.CardBlockRequestStatus;
 import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.entity.LedgerEntryType;
 import ru.ildar.bankcards.security.JwtAuthFilter;
 import ru.ildar.bankcards.security.JwtTokenProvider;
+import ru.ildar.bankcards.service.CardBlockRequestService;
+import ru.ildar.bankcards.service.CardIssuanceService;
 import ru.ildar.bankcards.service.CardService;
+import ru.ildar.bankcards.service.CardStatementService;
+import ru.ildar.bankcards.service.IdempotencyService;
 import ru.ildar.bankcards.service.TransferService;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -43,6 +64,18 @@ class CardControllerTest {
     @MockBean
     private TransferService transferService;
 
+    @MockBean
+    private IdempotencyService idempotencyService;
+
+    @MockBean
+    private CardStatementService cardStatementService;
+
+    @MockBean
+    private CardBlockRequestService cardBlockRequestService;
+
+    @MockBean
+    private CardIssuanceService cardIssuanceService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -162,15 +195,113 @@ class CardControllerTest {
                 .andExpect(jsonPath("$.content[0].ownerUsername").value("user"));
     }
 
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void searchCards_shouldBindFiltersFromQueryParameters() throws Exception {
+        UUID ownerId = UUID.randomUUID();
+        Mockito.when(cardService.searchCards(Mockito.any()))
+                .thenReturn(new CursorPageDto<>(List.of(), null, null));
+
+        mockMvc.perform(get("/api/admin/cards")
+                        .param("status", "BLOCKED")
+                        .param("ownerId", ownerId.toString())
+                        .param("expiresFrom", "2030-01-01")
+                        .param("minBalance", "10.50")
+                        .param("sort", "BALANCE")
+                        .param("direction", "DESC")
+                        .param("size", "50"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items").isEmpty());
+
+        ArgumentCaptor<CardSearchFilter> captor = ArgumentCaptor.forClass(CardSearchFilter.class);
+        Mockito.verify(cardService).searchCards(captor.capture());
+        CardSearchFilter filter = captor.getValue();
+        assertEquals(CardStatus.BLOCKED, filter.getStatus());
+        assertEquals(ownerId, filter.getOwnerId());
+        assertEquals(LocalDate.of(2030, 1, 1), filter.getExpiresFrom());
+        assertEquals(new BigDecimal("10.50"), filter.getMinBalance());
+        assertEquals(CardSearchSort.BALANCE, filter.getSort());
+        assertEquals(Sort.Direction.DESC, filter.getDirection());
+        assertEquals(50, filter.getSize());
+    }
+
+    @Test
+    @WithMockUser(roles = {"USER"})
+    void getUserCardsSlice_shouldReturnItemsAndCursor() throws Exception {
+        CardResponseDto dto = CardResponseDto.builder()
+                .id(UUID.randomUUID())
+                .number("**** **** **** 1234")
+                .ownerUsername("user")
+                .status(CardStatus.ACTIVE)
+                .balance(new BigDecimal("1000"))
+                .build();
+        Mockito.when(cardService.getUserCardsSlice(null, 5, true))
+                .thenReturn(new CursorPageDto<>(List.of(dto), "next", 7L));
+
+        mockMvc.perform(get("/api/cards/slice")
+                        .param("withTotal", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].number").value("**** **** **** 1234"))
+                .andExpect(jsonPath("$.nextCursor").value("next"))
+                .andExpect(jsonPath("$.approximateTotal").value(7));
+    }
+
+    @Test
+    @WithMockUser(roles = {"USER"})
+    void getCardTransactions_shouldReturnPageWithCursor() throws Exception {
+        UUID cardId = UUID.randomUUID();
+        CardTransactionDto entry = CardTransactionDto.builder()
+                .id(42L)
+                .transferId(UUID.randomUUID())
+                .counterpartyCardId(UUID.randomUUID())
+                .amount(new BigDecimal("-10.00"))
+                .type(LedgerEntryType.TRANSFER)
+                .createdAt(OffsetDateTime.parse("2025-01-01T10:00:00Z"))
+                .build();
+        Mockito.when(cardStatementService.getStatement(cardId, "abc", 1))
+                .thenReturn(new CursorPageDto<>(List.of(entry), "next", null));
+
+        mockMvc.perform(get("/api/cards/{id}/transactions", cardId)
+                        .param("cursor", "abc")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(42))
+                .andExpect(jsonPath("$.items[0].amount").value(-10.00))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
     @Test
     @WithMockUser(roles = {"USER"})
-    void requestCardBlock_shouldReturnOk() throws Exception {
+    void requestCardBlock_shouldReturnAccepted() throws Exception {
         UUID cardId = UUID.randomUUID();
+        CardBlockRequestDto request = CardBlockRequestDto.builder()
+                .id(UUID.randomUUID())
+                .cardId(cardId)
+                .status(CardBlockRequestStatus.PENDING)
+                .build();
 
-        Mockito.doNothing().when(cardService).requestCardBlock(cardId);
+        Mockito.when(cardBlockRequestService.requestBlock(cardId)).thenReturn(request);
 
         mockMvc.perform(post("/api/cards/{id}/request-block", cardId))
-                .andExpect(status().isOk());
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.id").value(request.getId().toString()))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void approveCardBlockRequest_shouldReturnAccepted() throws Exception {
+        UUID requestId = UUID.randomUUID();
+        CardBlockRequestDto request = CardBlockRequestDto.builder()
+                .id(requestId)
+                .status(CardBlockRequestStatus.APPROVED)
+                .build();
+
+        Mockito.when(cardBlockRequestService.approve(requestId)).thenReturn(request);
+
+        mockMvc.perform(post("/api/admin/card-block-requests/{id}/approve", requestId))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("APPROVED"));
     }
 
     @Test
@@ -189,4 +320,54 @@ class CardControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    @WithMockUser(roles = {"USER"})
+    void transfer_withIdempotencyKey_shouldDelegateToIdempotencyService() throws Exception {
+        TransferRequestDto dto = new TransferRequestDto();
+        dto.setFromCardId(UUID.randomUUID());
+        dto.setToCardId(UUID.randomUUID());
+        dto.setAmount(new BigDecimal("100"));
+
+        Mockito.doReturn(ResponseEntity.ok().header(IdempotencyService.REPLAYED_HEADER, "true").build())
+                .when(idempotencyService).execute(Mockito.eq("key-1"), Mockito.any(), Mockito.any());
+
+        mockMvc.perform(post("/api/cards/transfer")
+                        .header(IdempotencyService.HEADER, "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"));
+
+        Mockito.verifyNoInteractions(transferService);
+    }
+
+    @Test
+    @WithMockUser(roles = {"USER"})
+    void transferBatch_shouldReturnUnprocessableEntityWhenBatchIsRolledBack() throws Exception {
+        TransferRequestDto leg = new TransferRequestDto();
+        leg.setFromCardId(UUID.randomUUID());
+        leg.setToCardId(UUID.randomUUID());
+        leg.setAmount(new BigDecimal("100"));
+        BatchTransferRequestDto dto = new BatchTransferRequestDto();
+        dto.setTransfers(List.of(leg));
+
+        BatchTransferResponseDto response = BatchTransferResponseDto.builder()
+                .mode(BatchTransferMode.ALL_OR_NOTHING)
+                .committed(false)
+                .rejected(1)
+                .results(List.of(TransferLegResultDto.builder()
+                        .index(0)
+                        .status(TransferLegStatus.REJECTED)
+                        .error("Недостаточно средств на исходящей карте")
+                        .build()))
+                .build();
+        Mockito.when(transferService.transferBatch(Mockito.any(BatchTransferRequestDto.class))).thenReturn(response);
+
+        mockMvc.perform(post("/api/cards/transfers:batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(dto)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.committed").value(false))
+                .andExpect(jsonPath("$.results[0].status").value("REJECTED"));
+    }
 }
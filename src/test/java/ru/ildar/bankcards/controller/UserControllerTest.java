@@ -10,14 +10,26 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.ildar.bankcards.dto.request.ExportFormat;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.dto.response.UserResponseDto;
+import ru.ildar.bankcards.entity.Role;
 import ru.ildar.bankcards.entity.User;
 import ru.ildar.bankcards.security.JwtTokenProvider;
+import ru.ildar.bankcards.security.PrincipalCache;
+import ru.ildar.bankcards.security.TokenRevocationList;
 import ru.ildar.bankcards.security.UserDetailsServiceImpl;
 import ru.ildar.bankcards.service.UserService;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -31,6 +43,12 @@ class UserControllerTest {
     @MockBean
     private UserDetailsServiceImpl userDetailsService;
 
+    @MockBean
+    private PrincipalCache principalCache;
+
+    @MockBean
+    private TokenRevocationList tokenRevocationList;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -43,17 +61,46 @@ class UserControllerTest {
 
     @Test
     @WithMockUser(roles = {"ADMIN"})
-    void getAllUsers_shouldReturnList() throws Exception {
-        User user = User.builder()
+    void getUsers_shouldReturnPageWithoutPasswords() throws Exception {
+        UserResponseDto user = UserResponseDto.builder()
                 .id(UUID.randomUUID())
                 .username("user1")
+                .email("user1@test.local")
+                .roles(Set.of(Role.ROLE_USER))
                 .build();
 
-        Mockito.when(userService.getAllUsers()).thenReturn(List.of(user));
+        Mockito.when(userService.listUsers(null, 50)).thenReturn(new CursorPageDto<>(List.of(user), "next", null));
 
         mockMvc.perform(get("/api/users"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].username").value("user1"));
+                .andExpect(jsonPath("$.items[0].username").value("user1"))
+                .andExpect(jsonPath("$.items[0].roles[0]").value("ROLE_USER"))
+                .andExpect(jsonPath("$.items[0].password").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    @WithMockUser(roles = {"ADMIN"})
+    void exportUsers_shouldUseExportAsyncTimeout() throws Exception {
+        // Тело пишется после выхода из фильтров: MockMvc не рассчитан на запись ответа параллельно с ними
+        CountDownLatch filtersDone = new CountDownLatch(1);
+        Mockito.when(userService.exportUsers(ExportFormat.NDJSON)).thenReturn(out -> {
+            try {
+                filtersDone.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            out.write('\n');
+        });
+
+        MvcResult result = mockMvc.perform(get("/api/users/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        filtersDone.countDown();
+
+        // Общий тайм-аут асинхронных запросов не меняется, 30 минут получает только выгрузка
+        assertEquals(Duration.ofMinutes(30).toMillis(), result.getRequest().getAsyncContext().getTimeout());
+        mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
     }
 
     @Test
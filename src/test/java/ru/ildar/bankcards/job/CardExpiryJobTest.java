@@ -0,0 +1,107 @@
+package ru.ildar.bankcards.job;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.entity.User;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Пакетное истечение срока карт и совместная работа узлов через SKIP LOCKED.
+ */
+class CardExpiryJobTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("expiry-");
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void run_shouldExpireOverdueActiveCardsInBatches() {
+        LocalDate today = LocalDate.now();
+        Card[] overdue = new Card[5];
+        for (int i = 0; i < overdue.length; i++) {
+            overdue[i] = saveCard(CardStatus.ACTIVE, today.minusDays(i + 1));
+        }
+        Card expiresToday = saveCard(CardStatus.ACTIVE, today);
+        Card blocked = saveCard(CardStatus.BLOCKED, today.minusDays(1));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        new CardExpiryJob(cardRepository, meterRegistry, 2).run();
+
+        for (Card card : overdue) {
+            Card reloaded = cardRepository.findById(card.getId()).orElseThrow();
+            assertEquals(CardStatus.EXPIRED, reloaded.getStatus());
+            assertEquals(card.getVersion() + 1, reloaded.getVersion());
+        }
+        assertEquals(CardStatus.ACTIVE, cardRepository.findById(expiresToday.getId()).orElseThrow().getStatus());
+        assertEquals(CardStatus.BLOCKED, cardRepository.findById(blocked.getId()).orElseThrow().getStatus());
+
+        // Пачки по 2: 2 + 2 + 1
+        assertEquals(5.0, meterRegistry.get("card.expiry.expired").counter().count());
+        assertEquals(3, meterRegistry.get("card.expiry.batch").timer().count());
+        assertEquals(5.0, meterRegistry.get("card.expiry.last-run.expired").gauge().value());
+    }
+
+    @Test
+    void expireDueBatch_shouldSkipCardsLockedByAnotherTransaction() throws Exception {
+        LocalDate today = LocalDate.now();
+        Card locked = saveCard(CardStatus.ACTIVE, today.minusDays(1));
+        Card free = saveCard(CardStatus.ACTIVE, today.minusDays(1));
+
+        CountDownLatch lockHeld = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> holder = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            cardRepository.findByIdForUpdate(locked.getId()).orElseThrow();
+            lockHeld.countDown();
+            try {
+                release.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        try {
+            assertTrue(lockHeld.await(10, TimeUnit.SECONDS));
+            // Заблокированная строка пропускается без ожидания
+            int expired = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> cardRepository.expireDueBatch(today, 10));
+            assertEquals(1, expired);
+            assertEquals(CardStatus.EXPIRED, cardRepository.findById(free.getId()).orElseThrow().getStatus());
+        } finally {
+            release.countDown();
+            holder.get(10, TimeUnit.SECONDS);
+        }
+
+        // Следующий запуск подбирает освободившуюся карту
+        assertEquals(1, cardRepository.expireDueBatch(today, 10));
+        assertEquals(CardStatus.EXPIRED, cardRepository.findById(locked.getId()).orElseThrow().getStatus());
+    }
+
+    private Card saveCard(CardStatus status, LocalDate expirationDate) {
+        return cardRepository.save(card(user).status(status).expirationDate(expirationDate).build());
+    }
+}
@@ -0,0 +1,72 @@
+package ru.ildar.bankcards.job;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.util.CardNumberEncryptor;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Заполнение отпечатков у старых карт: дубликат номера пропускается, а не откатывает пачку.
+ */
+class CardNumberBackfillJobTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    private CardNumberEncryptor cardNumberEncryptor;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("backfill-");
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void run_shouldSkipDuplicateNumbersAndFillTheRest() {
+        String duplicated = randomNumber();
+        String unique = randomNumber();
+        Card first = saveLegacyCard(duplicated);
+        Card second = saveLegacyCard(duplicated);
+        Card third = saveLegacyCard(unique);
+
+        CardNumberBackfillJob job = new CardNumberBackfillJob(cardRepository, cardNumberEncryptor, transactionTemplate, 2);
+        job.run();
+        // Повторный запуск снова встречает дубликат и не падает
+        job.run();
+
+        String fingerprint = cardNumberEncryptor.fingerprint(duplicated);
+        long filled = Stream.of(first, second)
+                .map(card -> cardRepository.findById(card.getId()).orElseThrow().getFingerprint())
+                .filter(fingerprint::equals)
+                .count();
+        assertEquals(1, filled);
+        Card backfilled = cardRepository.findById(third.getId()).orElseThrow();
+        assertEquals(cardNumberEncryptor.fingerprint(unique), backfilled.getFingerprint());
+        assertEquals(unique.substring(12), backfilled.getLast4());
+    }
+
+    private Card saveLegacyCard(String number) {
+        return cardRepository.save(card(user).encryptedNumber(cardNumberEncryptor.encrypt(number)).build());
+    }
+
+    private static String randomNumber() {
+        return String.valueOf(ThreadLocalRandom.current().nextLong(4_000_000_000_000_000L, 5_000_000_000_000_000L));
+    }
+}
@@ -0,0 +1,49 @@
+package ru.ildar.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Бакет IP при входе считается по адресу клиента из X-Forwarded-For, когда запрос пришёл
+ * через доверенный прокси (тест обращается с localhost), а не по общему адресу прокси.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = "auth.rate-limit.ip.capacity=2")
+class ForwardedClientIpTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void login_shouldLimitEachForwardedClientSeparately() {
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.10"));
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.10"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.10"));
+
+        // Другой клиент за тем же прокси исчерпанным бакетом не задет
+        assertNotEquals(HttpStatus.TOO_MANY_REQUESTS, login("203.0.113.20"));
+    }
+
+    private HttpStatus login(String clientIp) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("X-Forwarded-For", clientIp);
+        // Каждый раз новое имя: проверяется только бакет IP
+        Map<String, String> body = Map.of("username", "nobody-" + UUID.randomUUID(), "password", "wrong");
+        return HttpStatus.valueOf(restTemplate.postForEntity("/api/auth/login", new HttpEntity<>(body, headers),
+                String.class).getStatusCode().value());
+    }
+}
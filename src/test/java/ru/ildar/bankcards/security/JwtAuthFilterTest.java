@@ -0,0 +1,114 @@
+package ru.ildar.bankcards.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.repository.TokenRevocationRepository;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Аутентификация по claims токена: stateless-principal без БД и отказ на некорректных claims.
+ */
+class JwtAuthFilterTest {
+
+    private final JwtTokenProvider tokenProvider = mock(JwtTokenProvider.class);
+    private final UserDetailsServiceImpl userDetailsService = mock(UserDetailsServiceImpl.class);
+    private final PrincipalCache principalCache = mock(PrincipalCache.class);
+    private final TokenRevocationList revocationList = new TokenRevocationList(
+            mock(TokenRevocationRepository.class), 3_600_000L, 100);
+
+    private JwtAuthFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        beanFactory.addBean("meterRegistry", new SimpleMeterRegistry());
+        filter = new JwtAuthFilter(tokenProvider, userDetailsService, principalCache, revocationList,
+                beanFactory.getBeanProvider(MeterRegistry.class),
+                beanFactory.getBeanProvider(ObservationRegistry.class), true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void statelessRoles_shouldBuildPrincipalFromClaimsWithoutDatabase() throws Exception {
+        UUID userId = UUID.randomUUID();
+
+        Authentication authentication = authenticate(claims(userId.toString(), List.of("ROLE_ADMIN")));
+
+        assertNotNull(authentication);
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        assertEquals(userId, principal.getId());
+        assertEquals("alice", principal.getUsername());
+        assertEquals(List.of("ROLE_ADMIN"),
+                principal.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList());
+        verifyNoInteractions(principalCache, userDetailsService);
+    }
+
+    @Test
+    void unknownRole_shouldLeaveRequestUnauthenticated() throws Exception {
+        assertNull(authenticate(claims(UUID.randomUUID().toString(), List.of("ROLE_SUPERUSER"))));
+        verifyNoInteractions(principalCache, userDetailsService);
+    }
+
+    @Test
+    void malformedUserId_shouldLeaveRequestUnauthenticated() throws Exception {
+        assertNull(authenticate(claims("not-a-uuid", List.of("ROLE_USER"))));
+        verifyNoInteractions(principalCache, userDetailsService);
+    }
+
+    @Test
+    void revokedUser_shouldLeaveRequestUnauthenticated() throws Exception {
+        UUID userId = UUID.randomUUID();
+        Claims claims = claims(userId.toString(), List.of("ROLE_USER"));
+        revocationList.revoke(userId);
+
+        assertNull(authenticate(claims));
+    }
+
+    private Authentication authenticate(Claims claims) throws Exception {
+        when(tokenProvider.parseAndValidate(any())).thenReturn(Optional.of(claims));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer token");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Некорректный токен не роняет запрос: цепочка фильтров продолжается без аутентификации
+        assertNotNull(chain.getRequest());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static Claims claims(String userId, List<String> roles) {
+        Claims claims = Jwts.claims()
+                .setSubject("alice")
+                .setIssuedAt(new Date(System.currentTimeMillis() - 1000));
+        claims.put(JwtTokenProvider.CLAIM_USER_ID, userId);
+        claims.put(JwtTokenProvider.CLAIM_ROLES, roles);
+        return claims;
+    }
+}
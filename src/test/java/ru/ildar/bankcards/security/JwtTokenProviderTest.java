@@ -0,0 +1,101 @@
+package ru.ildar.bankcards.security;
+
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.ildar.bankcards.config.JwtConfig;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "base-secret-base-secret-base-secret-base-secret-base-secret-1234";
+    private static final String ROTATED_SECRET = "rotated-secret-rotated-secret-rotated-secret-rotated-secret-1234";
+
+    @TempDir
+    Path tempDir;
+
+    private final User user = User.builder()
+            .id(UUID.randomUUID())
+            .username("user")
+            .roles(Set.of(Role.ROLE_USER))
+            .build();
+
+    @Test
+    void parseAndValidate_shouldReturnClaimsWithRoles() {
+        JwtTokenProvider provider = provider(config(""));
+
+        String token = provider.generateToken(user);
+        Claims claims = provider.parseAndValidate(token).orElseThrow();
+
+        assertEquals("user", claims.getSubject());
+        assertEquals(user.getId().toString(), claims.get(JwtTokenProvider.CLAIM_USER_ID, String.class));
+        // Повторная проверка обслуживается кэшем и возвращает те же claims
+        assertSame(claims, provider.parseAndValidate(token).orElseThrow());
+    }
+
+    @Test
+    void parseAndValidate_shouldRejectRefreshTokenAndTamperedToken() {
+        JwtTokenProvider provider = provider(config(""));
+
+        String refreshToken = provider.generateRefreshToken(user);
+        String accessToken = provider.generateToken(user);
+
+        assertTrue(provider.parseAndValidate(refreshToken).isEmpty());
+        assertTrue(provider.parseAndValidate(accessToken + "x").isEmpty());
+        assertTrue(provider.parseRefreshToken(accessToken).isEmpty());
+        assertTrue(provider.parseRefreshToken(refreshToken).isPresent());
+    }
+
+    @Test
+    void keyRotation_shouldKeepOldTokensValidUntilKeyIsRemoved() throws Exception {
+        Path ringFile = tempDir.resolve("jwt-keys.properties");
+        Files.writeString(ringFile, "active=default\ndefault=" + SECRET + "\n");
+        JwtConfig config = config(ringFile.toString());
+        JwtKeyRing keyRing = new JwtKeyRing(config);
+        JwtTokenProvider provider = new JwtTokenProvider(config, keyRing, 100);
+        provider.init();
+
+        String oldToken = provider.generateToken(user);
+
+        // Добавляем новый ключ и делаем его активным
+        rewrite(ringFile, "active=k2\ndefault=" + SECRET + "\nk2=" + ROTATED_SECRET + "\n", 1000);
+        keyRing.refresh();
+
+        String newToken = provider.generateToken(user);
+        assertEquals("k2", keyRing.activeKeyId());
+        assertTrue(provider.parseAndValidate(oldToken).isPresent());
+        assertTrue(provider.parseAndValidate(newToken).isPresent());
+
+        // Ключ из jwt.secret выведен из файла: kid=default больше не принимается без рестарта
+        rewrite(ringFile, "active=k2\nk2=" + ROTATED_SECRET + "\n", 2000);
+        keyRing.refresh();
+
+        assertNull(keyRing.resolve("default"));
+        assertTrue(provider.parseAndValidate(oldToken).isEmpty());
+        assertTrue(provider.parseAndValidate(newToken).isPresent());
+    }
+
+    private static void rewrite(Path file, String content, long shiftMillis) throws Exception {
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + shiftMillis));
+    }
+
+    private JwtConfig config(String keyRingFile) {
+        return new JwtConfig(SECRET, "default", keyRingFile, 3_600_000L, 604_800_000L);
+    }
+
+    private JwtTokenProvider provider(JwtConfig config) {
+        JwtTokenProvider provider = new JwtTokenProvider(config, new JwtKeyRing(config), 100);
+        provider.init();
+        return provider;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.ildar.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+import ru.ildar.bankcards.exception.TooManyRequestsException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginRateLimiterTest {
+
+    @Test
+    void acquire_shouldLimitAttemptsPerUsernameIgnoringCase() {
+        LoginRateLimiter limiter = new LoginRateLimiter(1000, 3, Duration.ofMinutes(1), 100, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("Alice", "10.0.0." + i);
+        }
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class,
+                () -> limiter.acquire("alice", "10.0.0.9"));
+        // Один токен из трёх возвращается за 20 секунд
+        assertTrue(ex.getRetryAfterSeconds() > 0 && ex.getRetryAfterSeconds() <= 20, "" + ex.getRetryAfterSeconds());
+
+        // Бакеты других имён не затронуты
+        limiter.acquire("bob", "10.0.0.9");
+    }
+
+    @Test
+    void acquire_shouldLimitAttemptsPerIpAcrossUsernames() {
+        LoginRateLimiter limiter = new LoginRateLimiter(1000, 100, Duration.ofMinutes(1), 2, Duration.ofMinutes(1));
+
+        limiter.acquire("user1", "10.0.0.1");
+        limiter.acquire("10.0.0.1");
+        assertThrows(TooManyRequestsException.class, () -> limiter.acquire("user3", "10.0.0.1"));
+        limiter.acquire("user3", "10.0.0.2");
+    }
+
+    @Test
+    void tokenBucket_shouldRefillContinuously() {
+        long refillNanos = TimeUnit.SECONDS.toNanos(10);
+        LoginRateLimiter.TokenBucket bucket = new LoginRateLimiter.TokenBucket(2, refillNanos);
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.tryConsume(now));
+        assertEquals(0, bucket.tryConsume(now));
+        assertEquals(refillNanos, bucket.tryConsume(now));
+
+        // Через половину периода до токена остаётся половина периода
+        assertEquals(refillNanos / 2, bucket.tryConsume(now + refillNanos / 2));
+        assertEquals(0, bucket.tryConsume(now + refillNanos));
+        // Бакет не копит больше capacity
+        long later = now + 100 * refillNanos;
+        assertEquals(0, bucket.tryConsume(later));
+        assertEquals(0, bucket.tryConsume(later));
+        assertTrue(bucket.tryConsume(later) > 0);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.ildar.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import ru.ildar.bankcards.exception.TooManyRequestsException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    private final BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4);
+
+    @Test
+    void matches_shouldVerifyOnPoolThread() throws Exception {
+        PasswordHasher hasher = new PasswordHasher(encoder, new SimpleMeterRegistry(), 1, 10);
+        String encoded = hasher.encode("secret").get(5, TimeUnit.SECONDS);
+
+        assertTrue(hasher.matches("secret", encoded).get(5, TimeUnit.SECONDS));
+        assertFalse(hasher.matches("wrong", encoded).get(5, TimeUnit.SECONDS));
+        assertFalse(hasher.matchesDummy("secret").get(5, TimeUnit.SECONDS));
+        hasher.shutdown();
+    }
+
+    @Test
+    void submit_shouldRejectWhenQueueIsFull() throws Exception {
+        PasswordHasher hasher = new PasswordHasher(new BCryptPasswordEncoder(12), new SimpleMeterRegistry(), 1, 1);
+        List<CompletableFuture<String>> accepted = new ArrayList<>();
+
+        // Один поток и очередь на одну задачу: третья задача подряд не помещается
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class, () -> {
+            for (int i = 0; i < 3; i++) {
+                accepted.add(hasher.encode("secret"));
+            }
+        });
+        assertEquals(1, ex.getRetryAfterSeconds());
+        assertEquals(2, accepted.size());
+        hasher.shutdown();
+    }
+
+    @Test
+    void matchesDummy_shouldShareQueueWithRealChecks() throws Exception {
+        BCryptPasswordEncoder slowEncoder = new BCryptPasswordEncoder(12);
+        PasswordHasher hasher = new PasswordHasher(slowEncoder, new SimpleMeterRegistry(), 1, 1);
+        String encoded = slowEncoder.encode("secret");
+
+        // Поток занят, место в очереди занято — проверка несуществующего пользователя получает тот же 429
+        hasher.matches("secret", encoded);
+        hasher.matches("secret", encoded);
+        assertThrows(TooManyRequestsException.class, () -> hasher.matchesDummy("secret"));
+        hasher.shutdown();
+    }
+}
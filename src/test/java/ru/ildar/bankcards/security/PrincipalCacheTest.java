@@ -0,0 +1,79 @@
+package ru.ildar.bankcards.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import ru.ildar.bankcards.entity.Role;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrincipalCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, UserDetails> loader = username -> {
+        loads.incrementAndGet();
+        return UserPrincipal.create(UUID.randomUUID(), username, Set.of(Role.ROLE_USER));
+    };
+
+    private PrincipalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new PrincipalCache(meterRegistry, 100, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void get_shouldLoadOnceAndExportHitsAndMisses() {
+        UserDetails first = cache.get("alice", loader);
+        UserDetails second = cache.get("alice", loader);
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tags("cache", "principal", "result", "miss")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tags("cache", "principal", "result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void invalidate_shouldReloadOnNextGet() {
+        cache.get("alice", loader);
+        cache.invalidate("alice");
+        cache.get("alice", loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidate_shouldEvictAgainAfterCommit() {
+        cache.get("alice", loader);
+        TransactionSynchronizationManager.initSynchronization();
+
+        cache.invalidate("alice");
+        // Параллельный запрос успел закэшировать состояние до коммита
+        cache.get("alice", loader);
+        assertEquals(2, loads.get());
+
+        TransactionSynchronizationUtils.invokeAfterCommit(TransactionSynchronizationManager.getSynchronizations());
+        cache.get("alice", loader);
+        assertEquals(3, loads.get());
+    }
+}
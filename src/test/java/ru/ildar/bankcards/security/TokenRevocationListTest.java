@@ -0,0 +1,66 @@
+package ru.ildar.bankcards.security;
+
+import org.junit.jupiter.api.Test;
+import ru.ildar.bankcards.entity.TokenRevocation;
+import ru.ildar.bankcards.repository.TokenRevocationRepository;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationListTest {
+
+    private final TokenRevocationRepository repository = mock(TokenRevocationRepository.class);
+    private final TokenRevocationList revocationList = new TokenRevocationList(repository, 3_600_000L, 100);
+
+    @Test
+    void revoke_shouldRejectTokensIssuedBeforeRevocation() {
+        UUID userId = UUID.randomUUID();
+        Date issuedBefore = new Date(System.currentTimeMillis() - 1000);
+
+        assertFalse(revocationList.isRevoked(userId, issuedBefore));
+        revocationList.revoke(userId);
+
+        assertTrue(revocationList.isRevoked(userId, issuedBefore));
+        verify(repository).revoke(eq(userId), any(Instant.class));
+        // Токен без iat нельзя сравнить с моментом отзыва — считается отозванным
+        assertTrue(revocationList.isRevoked(userId, null));
+    }
+
+    @Test
+    void revoke_shouldKeepTokensIssuedAfterRevocation() {
+        UUID userId = UUID.randomUUID();
+        revocationList.revoke(userId);
+
+        assertFalse(revocationList.isRevoked(userId, new Date(System.currentTimeMillis() + 1000)));
+    }
+
+    @Test
+    void isRevoked_shouldIgnoreOtherUsersAndTokensWithoutUserId() {
+        revocationList.revoke(UUID.randomUUID());
+        revocationList.revoke(null);
+
+        assertFalse(revocationList.isRevoked(UUID.randomUUID(), new Date(0)));
+        assertFalse(revocationList.isRevoked(null, new Date(0)));
+    }
+
+    @Test
+    void refresh_shouldPickUpRevocationsFromOtherNodes() {
+        UUID userId = UUID.randomUUID();
+        Instant revokedAt = Instant.now();
+        when(repository.findByRevokedAtAfter(any())).thenReturn(List.of(new TokenRevocation(userId, revokedAt)));
+
+        revocationList.refresh();
+
+        assertTrue(revocationList.isRevoked(userId, Date.from(revokedAt.minusSeconds(1))));
+        assertFalse(revocationList.isRevoked(userId, Date.from(revokedAt.plusSeconds(1))));
+        verify(repository).deleteExpired(any(), anyInt());
+    }
+}
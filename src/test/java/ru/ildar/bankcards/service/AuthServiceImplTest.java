@@ -0,0 +1,157 @@
+package ru.ildar.bankcards.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.ildar.bankcards.config.SecurityConfig;
+import ru.ildar.bankcards.dto.request.LoginDto;
+import ru.ildar.bankcards.dto.request.RefreshTokenDto;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.repository.RevokedRefreshTokenRepository;
+import ru.ildar.bankcards.repository.UserRepository;
+import ru.ildar.bankcards.security.JwtTokenProvider;
+import ru.ildar.bankcards.security.PasswordHasher;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Перехэширование пароля при входе: алгоритм новых хэшей — Argon2, старые хэши — BCrypt.
+ */
+class AuthServiceImplTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private JwtTokenProvider tokenProvider;
+
+    @Mock
+    private RevokedRefreshTokenRepository refreshTokenRepository;
+
+    private PasswordEncoder passwordEncoder;
+    private PasswordHasher passwordHasher;
+    private AuthServiceImpl authService;
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        // Минимальная стоимость, чтобы тест не тратил секунды на хэширование
+        passwordEncoder = new SecurityConfig(null).passwordEncoder("argon2", 4, 1024, 1, 1);
+        passwordHasher = new PasswordHasher(passwordEncoder, new SimpleMeterRegistry(), 1, 10);
+        authService = new AuthServiceImpl(userRepository, passwordHasher, tokenProvider, refreshTokenRepository);
+        when(tokenProvider.generateToken(any())).thenReturn("access");
+        when(tokenProvider.generateRefreshToken(any())).thenReturn("refresh");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void login_shouldRehashLegacyBcryptPassword() throws Exception {
+        // Хэш без префикса, как у пользователей, зарегистрированных до DelegatingPasswordEncoder
+        String legacyHash = new BCryptPasswordEncoder(4).encode("secret");
+        User user = user(legacyHash);
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user));
+
+        assertEquals("access", authService.login(login("secret")).get(5, TimeUnit.SECONDS).getToken());
+
+        ArgumentCaptor<String> newHash = ArgumentCaptor.forClass(String.class);
+        verify(userRepository).updatePasswordIfUnchanged(eq(user.getId()), eq(legacyHash), newHash.capture());
+        assertTrue(newHash.getValue().startsWith("{argon2}"), newHash.getValue());
+        assertTrue(passwordEncoder.matches("secret", newHash.getValue()));
+        assertFalse(passwordEncoder.upgradeEncoding(newHash.getValue()));
+    }
+
+    @Test
+    void login_shouldNotRehashCurrentPassword() throws Exception {
+        when(userRepository.findByUsername("alice")).thenReturn(Optional.of(user(passwordEncoder.encode("secret"))));
+
+        authService.login(login("secret")).get(5, TimeUnit.SECONDS);
+
+        verify(userRepository, never()).updatePasswordIfUnchanged(any(), anyString(), anyString());
+    }
+
+    @Test
+    void login_shouldNotRehashOnWrongPassword() {
+        when(userRepository.findByUsername("alice"))
+                .thenReturn(Optional.of(user(new BCryptPasswordEncoder(4).encode("secret"))));
+
+        ExecutionException ex = assertThrows(ExecutionException.class,
+                () -> authService.login(login("wrong")).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, ex.getCause());
+        verify(userRepository, never()).updatePasswordIfUnchanged(any(), anyString(), anyString());
+    }
+
+    @Test
+    void refresh_shouldRevokeUsedTokenAndRejectReuse() {
+        User user = user("hash");
+        UUID jti = UUID.randomUUID();
+        Claims claims = Jwts.claims().setId(jti.toString()).setExpiration(new Date(System.currentTimeMillis() + 60_000));
+        claims.put(JwtTokenProvider.CLAIM_USER_ID, user.getId().toString());
+        when(tokenProvider.parseRefreshToken("old-refresh")).thenReturn(Optional.of(claims));
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+        when(refreshTokenRepository.revoke(jti, claims.getExpiration().toInstant())).thenReturn(1, 0);
+
+        assertEquals("refresh", authService.refresh(refreshToken("old-refresh")).getRefreshToken());
+
+        // Второй обмен того же токена: jti уже отозван
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> authService.refresh(refreshToken("old-refresh")));
+        assertEquals("Недействительный refresh-токен", ex.getMessage());
+        verify(tokenProvider, times(1)).generateRefreshToken(user);
+    }
+
+    @Test
+    void refresh_shouldRejectTokenWithoutJti() {
+        Claims claims = Jwts.claims().setExpiration(new Date(System.currentTimeMillis() + 60_000));
+        when(tokenProvider.parseRefreshToken("legacy")).thenReturn(Optional.of(claims));
+
+        assertThrows(IllegalArgumentException.class, () -> authService.refresh(refreshToken("legacy")));
+        verifyNoInteractions(refreshTokenRepository);
+    }
+
+    private static RefreshTokenDto refreshToken(String token) {
+        RefreshTokenDto dto = new RefreshTokenDto();
+        dto.setRefreshToken(token);
+        return dto;
+    }
+
+    private static User user(String passwordHash) {
+        return User.builder()
+                .id(UUID.randomUUID())
+                .username("alice")
+                .password(passwordHash)
+                .roles(Set.of(Role.ROLE_USER))
+                .build();
+    }
+
+    private static LoginDto login(String password) {
+        LoginDto dto = new LoginDto();
+        dto.setUsername("alice");
+        dto.setPassword(password);
+        return dto;
+    }
+}
@@ -0,0 +1,256 @@
+package ru.ildar.bankcards.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.SqlCapture;
+import ru.ildar.bankcards.dto.response.CardBlockRequestDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.CardBlockRequest;
+import ru.ildar.bankcards.entity.CardBlockRequestStatus;
+import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.entity.OutboxEvent;
+import ru.ildar.bankcards.entity.OutboxEventType;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.job.OutboxDispatcherJob;
+import ru.ildar.bankcards.repository.CardBlockRequestRepository;
+import ru.ildar.bankcards.repository.OutboxEventRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Заявка на блокировку: запись заявки и события outbox в запросе, блокировка карты — диспетчером.
+ */
+@TestPropertySource(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=ru.ildar.bankcards.SqlCapture")
+class CardBlockRequestServiceTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    private CardBlockRequestService cardBlockRequestService;
+
+    @Autowired
+    private CardBlockRequestRepository cardBlockRequestRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private User admin;
+    private OutboxDispatcherJob dispatcher;
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("block-");
+        admin = saveUser("block-admin-", Role.ROLE_ADMIN);
+        dispatcher = new OutboxDispatcherJob(outboxEventRepository, cardBlockRequestService,
+                transactionManager, new SimpleMeterRegistry(), 10, 5);
+    }
+
+    @AfterEach
+    void cleanup() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteById(user.getId());
+        userRepository.deleteById(admin.getId());
+    }
+
+    @Test
+    void approvedRequest_shouldBlockCardOnlyAfterDispatch() {
+        Card card = saveCard();
+
+        authenticate(user);
+        CardBlockRequestDto request = cardBlockRequestService.requestBlock(card.getId());
+        assertEquals(CardBlockRequestStatus.PENDING, request.getStatus());
+        assertEquals(user.getId(), request.getRequestedBy());
+        CardOperationException duplicate = assertThrows(CardOperationException.class,
+                () -> cardBlockRequestService.requestBlock(card.getId()));
+        assertEquals("Заявка на блокировку карты уже подана", duplicate.getMessage());
+
+        authenticate(admin);
+        assertEquals(CardBlockRequestStatus.APPROVED, cardBlockRequestService.approve(request.getId()).getStatus());
+        // Одобрение только ставит событие в outbox — карта ещё активна
+        assertEquals(CardStatus.ACTIVE, cardRepository.findById(card.getId()).orElseThrow().getStatus());
+        assertThrows(CardOperationException.class, () -> cardBlockRequestService.reject(request.getId()));
+
+        dispatcher.run();
+
+        Card blocked = cardRepository.findById(card.getId()).orElseThrow();
+        assertEquals(CardStatus.BLOCKED, blocked.getStatus());
+        assertEquals(card.getVersion() + 1, blocked.getVersion());
+        var completed = cardBlockRequestRepository.findById(request.getId()).orElseThrow();
+        assertEquals(CardBlockRequestStatus.COMPLETED, completed.getStatus());
+        assertEquals(admin.getId(), completed.getDecidedBy());
+        assertNotNull(completed.getCompletedAt());
+
+        List<OutboxEvent> events = outboxEventRepository.findAll().stream()
+                .filter(event -> event.getAggregateId().equals(request.getId()))
+                .toList();
+        assertEquals(2, events.size());
+        assertTrue(events.stream().allMatch(event -> event.getProcessedAt() != null && event.getLastError() == null));
+    }
+
+    @Test
+    void rejectedRequest_shouldKeepCardActiveAndAllowNewRequest() {
+        Card card = saveCard();
+
+        authenticate(user);
+        CardBlockRequestDto request = cardBlockRequestService.requestBlock(card.getId());
+
+        authenticate(admin);
+        assertEquals(CardBlockRequestStatus.REJECTED, cardBlockRequestService.reject(request.getId()).getStatus());
+        dispatcher.run();
+        assertEquals(CardStatus.ACTIVE, cardRepository.findById(card.getId()).orElseThrow().getStatus());
+
+        authenticate(user);
+        assertEquals(CardBlockRequestStatus.PENDING, cardBlockRequestService.requestBlock(card.getId()).getStatus());
+    }
+
+    @Test
+    void requestBlock_shouldHideForeignCard() {
+        Card card = saveCard();
+
+        authenticate(admin);
+        CardOperationException ex = assertThrows(CardOperationException.class,
+                () -> cardBlockRequestService.requestBlock(card.getId()));
+        assertEquals("Карта не найдена", ex.getMessage());
+    }
+
+    @Test
+    void getRequests_shouldPageQueueOldestFirst() {
+        authenticate(user);
+        List<UUID> requested = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            requested.add(cardBlockRequestService.requestBlock(saveCard().getId()).getId());
+        }
+
+        authenticate(admin);
+        List<UUID> queue = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPageDto<CardBlockRequestDto> page =
+                    cardBlockRequestService.getRequests(CardBlockRequestStatus.PENDING, cursor, 2);
+            assertTrue(page.getItems().size() <= 2);
+            page.getItems().forEach(item -> queue.add(item.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        List<UUID> ours = queue.stream().filter(requested::contains).toList();
+        assertEquals(requested, ours);
+
+        // Курсор — граница сканирования индекса (status, created_at, id), а не фильтр по всем заявкам в статусе
+        String plan = SqlCapture.genericPlan(jdbcTemplate, SqlCapture.last("created_at>=?"));
+        assertTrue(plan.contains("ix_card_block_requests_status_created_id"), plan);
+        assertTrue(plan.matches("(?s).*Index Cond: \\(.*created_at >= \\$\\d+.*"), plan);
+    }
+
+    @Test
+    void requestBlock_shouldRejectConcurrentDuplicateAsClientError() throws Exception {
+        Card card = saveCard();
+        CountDownLatch inserted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        // Первая заявка вставлена, но ещё не зафиксирована: проверка дубликата её не видит
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transaction.executeWithoutResult(status -> {
+            cardBlockRequestRepository.saveAndFlush(CardBlockRequest.builder()
+                    .cardId(card.getId())
+                    .requestedBy(user.getId())
+                    .status(CardBlockRequestStatus.PENDING)
+                    .createdAt(Instant.now())
+                    .build());
+            inserted.countDown();
+            await(commit);
+        }));
+        assertTrue(inserted.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<CardOperationException> second = CompletableFuture.supplyAsync(() -> {
+            authenticate(user);
+            try {
+                return assertThrows(CardOperationException.class, () -> cardBlockRequestService.requestBlock(card.getId()));
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        });
+        // Вторая вставка ждёт на уникальном индексе, пока первая транзакция не завершится
+        Thread.sleep(500);
+        commit.countDown();
+        first.get(10, TimeUnit.SECONDS);
+
+        assertEquals("Заявка на блокировку карты уже подана", second.get(10, TimeUnit.SECONDS).getMessage());
+    }
+
+    @Test
+    void dispatcher_shouldParkFailingEventWithoutBlockingQueue() {
+        OutboxEvent poison = outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(OutboxEventType.CARD_BLOCK_REQUESTED).aggregateId(UUID.randomUUID()).build());
+        OutboxEvent next = outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(OutboxEventType.CARD_BLOCK_REQUESTED).aggregateId(UUID.randomUUID()).build());
+        CardBlockRequestService failing = mock(CardBlockRequestService.class);
+        doThrow(new IllegalStateException("broker unavailable")).when(failing)
+                .handle(argThat(event -> event.getId().equals(poison.getId())));
+        OutboxDispatcherJob job = new OutboxDispatcherJob(outboxEventRepository, failing,
+                transactionManager, new SimpleMeterRegistry(), 100, 2);
+
+        job.run();
+
+        OutboxEvent retried = outboxEventRepository.findById(poison.getId()).orElseThrow();
+        assertNull(retried.getProcessedAt());
+        assertEquals(1, retried.getAttempts());
+        assertTrue(retried.getLastError().contains("broker unavailable"));
+        // Ошибка одного события не откатывает остальные события пачки
+        assertNotNull(outboxEventRepository.findById(next.getId()).orElseThrow().getProcessedAt());
+
+        job.run();
+
+        OutboxEvent parked = outboxEventRepository.findById(poison.getId()).orElseThrow();
+        assertNotNull(parked.getProcessedAt());
+        assertEquals(2, parked.getAttempts());
+    }
+
+    private Card saveCard() {
+        return saveCard(user, "0.00");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void authenticate(User principal) {
+        Role role = principal.getRoles().iterator().next();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                principal.getUsername(), null, List.of(new SimpleGrantedAuthority(role.name()))));
+    }
+}
@@ -0,0 +1,102 @@
+package ru.ildar.bankcards.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.dto.request.CardIssueBatchDto;
+import ru.ildar.bankcards.dto.response.CardIssueBatchResponseDto;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.util.CardNumberEncryptor;
+import ru.ildar.bankcards.util.Luhn;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Массовый выпуск: JDBC-батчи карт и проводок OPENING в одной транзакции.
+ */
+class CardIssuanceServiceTest extends AbstractPostgresIntegrationTest {
+
+    private static final int COUNT = 2_500;
+
+    @Autowired
+    private CardIssuanceService cardIssuanceService;
+
+    @Autowired
+    private CardNumberEncryptor cardNumberEncryptor;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("issue-");
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void issueCards_shouldInsertLuhnValidUniqueCardsWithOpeningEntries() {
+        CardIssueBatchResponseDto response = cardIssuanceService.issueCards(request(COUNT));
+
+        assertEquals(COUNT, response.getIssued());
+        assertEquals("400000", response.getBin());
+        assertEquals(COUNT, cardRepository.countByOwnerId(user.getId()));
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, encrypted_number, last4, fingerprint FROM cards WHERE user_id = ?", user.getId());
+        Set<String> numbers = new HashSet<>();
+        for (Map<String, Object> row : rows) {
+            String pan = cardNumberEncryptor.decrypt((String) row.get("encrypted_number"));
+            assertTrue(pan.startsWith("400000"), pan);
+            assertTrue(Luhn.isValid(pan), pan);
+            assertEquals(pan.substring(12), row.get("last4"));
+            assertEquals(cardNumberEncryptor.fingerprint(pan), row.get("fingerprint"));
+            numbers.add(pan);
+        }
+        assertEquals(COUNT, numbers.size());
+
+        UUID cardId = (UUID) rows.get(0).get("id");
+        assertEquals(0, new BigDecimal("25.00").compareTo(ledgerService.derivedBalance(cardId)));
+    }
+
+    @Test
+    void issueCards_shouldRejectUnknownUserAndBin() {
+        CardIssueBatchDto unknownUser = request(1);
+        unknownUser.setUserId(UUID.randomUUID());
+        assertThrows(CardOperationException.class, () -> cardIssuanceService.issueCards(unknownUser));
+
+        CardIssueBatchDto unknownBin = request(1);
+        unknownBin.setBin("999999");
+        assertThrows(CardOperationException.class, () -> cardIssuanceService.issueCards(unknownBin));
+        assertEquals(0, cardRepository.countByOwnerId(user.getId()));
+    }
+
+    private CardIssueBatchDto request(int count) {
+        CardIssueBatchDto dto = new CardIssueBatchDto();
+        dto.setUserId(user.getId());
+        dto.setCount(count);
+        dto.setExpirationDate(LocalDate.now().plusYears(3));
+        dto.setInitialBalance(new BigDecimal("25.00"));
+        return dto;
+    }
+}
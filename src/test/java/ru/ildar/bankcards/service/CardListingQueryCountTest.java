@@ -0,0 +1,92 @@
+package ru.ildar.bankcards.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.TestPropertySource;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.dto.response.CardResponseDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.security.UserPrincipal;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Число запросов на страницу листинга карт по статистике Hibernate:
+ * от размера страницы оно не зависит, сущности User и роли не загружаются.
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CardListingQueryCountTest extends AbstractPostgresIntegrationTest {
+
+    private static final int CARDS = 12;
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User user;
+    private Statistics statistics;
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("listing-");
+        for (int i = 0; i < CARDS; i++) {
+            cardRepository.save(card(user)
+                    .last4(String.format("%04d", i))
+                    .balance(new BigDecimal("10.00"))
+                    .build());
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void cleanup() {
+        SecurityContextHolder.clearContext();
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void getCardsForUser_shouldUseOneSelectAndOneCountPerPage() {
+        Page<CardResponseDto> page = cardService.getCardsForUser(user.getUsername(), PageRequest.of(0, 10));
+
+        assertEquals(10, page.getNumberOfElements());
+        assertEquals(CARDS, page.getTotalElements());
+        page.forEach(card -> assertEquals(user.getUsername(), card.getOwnerUsername()));
+        // Проекция с join users и COUNT; без проекции было бы ещё по запросу users и user_roles на карту
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void getUserCardsSlice_shouldUseOneSelectPerPage() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                UserPrincipal.create(user.getId(), user.getUsername(), Set.of(Role.ROLE_USER)), null, List.of()));
+
+        CursorPageDto<CardResponseDto> first = cardService.getUserCardsSlice(null, 10, false);
+        CursorPageDto<CardResponseDto> second = cardService.getUserCardsSlice(first.getNextCursor(), 10, false);
+
+        assertEquals(10, first.getItems().size());
+        assertEquals(CARDS - 10, second.getItems().size());
+        assertNull(second.getNextCursor());
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+}
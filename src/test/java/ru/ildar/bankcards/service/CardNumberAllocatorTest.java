@@ -0,0 +1,89 @@
+package ru.ildar.bankcards.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.util.Luhn;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Номера из блоков, зарезервированных разными узлами, не пересекаются и проходят проверку Луна.
+ */
+class CardNumberAllocatorTest extends AbstractPostgresIntegrationTest {
+
+    private static final String BIN = "52000042";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void luhn_shouldValidateKnownNumbers() {
+        assertTrue(Luhn.isValid("4111111111111111"));
+        assertTrue(Luhn.isValid("5500000000000004"));
+        assertFalse(Luhn.isValid("4111111111111112"));
+        assertEquals(1, Luhn.checkDigit("411111111111111"));
+    }
+
+    @Test
+    void allocate_shouldNotRepeatNumbersAcrossNodes() throws Exception {
+        // Два аллокатора — два узла со своими блоками в одной БД
+        List<CardNumberAllocator> nodes = List.of(allocator(), allocator());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<List<String>>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < 8; i++) {
+                CardNumberAllocator node = nodes.get(i % 2);
+                int count = 37 + i;
+                futures.add(executor.submit((Callable<List<String>>) () -> {
+                    List<String> numbers = new ArrayList<>();
+                    for (int j = 0; j < 5; j++) {
+                        numbers.addAll(node.allocate(BIN, count));
+                    }
+                    return numbers;
+                }));
+            }
+
+            Set<String> unique = new HashSet<>();
+            int total = 0;
+            for (Future<List<String>> future : futures) {
+                for (String pan : future.get()) {
+                    total++;
+                    assertEquals(CardNumberAllocator.PAN_LENGTH, pan.length());
+                    assertTrue(pan.startsWith(BIN), pan);
+                    assertTrue(Luhn.isValid(pan), pan);
+                    unique.add(pan);
+                }
+            }
+            assertEquals(total, unique.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void allocate_shouldRejectUnknownBin() {
+        CardOperationException ex = assertThrows(CardOperationException.class,
+                () -> allocator().allocate("999999"));
+        assertEquals("BIN не поддерживается: 999999", ex.getMessage());
+    }
+
+    private CardNumberAllocator allocator() {
+        return new CardNumberAllocator(jdbcTemplate, transactionManager, List.of(BIN), 100);
+    }
+}
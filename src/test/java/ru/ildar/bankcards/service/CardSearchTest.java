@@ -0,0 +1,168 @@
+package ru.ildar.bankcards.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.SqlCapture;
+import ru.ildar.bankcards.dto.request.CardSearchFilter;
+import ru.ildar.bankcards.dto.request.CardSearchSort;
+import ru.ildar.bankcards.dto.response.CardResponseDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.exception.CardOperationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Фильтры, сортировка и keyset-пагинация поиска карт администратором.
+ */
+@TestPropertySource(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=ru.ildar.bankcards.SqlCapture")
+class CardSearchTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    private CardService cardService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User alice;
+    private User bob;
+
+    @BeforeEach
+    void setup() {
+        alice = saveUser("search-");
+        bob = saveUser("search-");
+        LocalDate today = LocalDate.now();
+
+        // Баланс 50.00 у трёх карт — сортировка по балансу должна разрешать равенство по id
+        saveCard(alice, CardStatus.ACTIVE, today.plusMonths(1), "50.00");
+        saveCard(alice, CardStatus.ACTIVE, today.plusMonths(2), "50.00");
+        saveCard(alice, CardStatus.BLOCKED, today.plusMonths(3), "50.00");
+        saveCard(alice, CardStatus.BLOCKED, today.plusYears(2), "10.00");
+        saveCard(alice, CardStatus.ACTIVE, today.plusYears(3), "500.00");
+        saveCard(bob, CardStatus.BLOCKED, today.plusMonths(1), "70.00");
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteById(alice.getId());
+        userRepository.deleteById(bob.getId());
+    }
+
+    @Test
+    void search_shouldCombineFilters() {
+        CardSearchFilter filter = new CardSearchFilter();
+        filter.setOwnerUsername(alice.getUsername());
+        filter.setStatus(CardStatus.BLOCKED);
+        assertEquals(2, walk(filter).size());
+
+        filter = new CardSearchFilter();
+        filter.setOwnerId(alice.getId());
+        filter.setExpiresTo(LocalDate.now().plusMonths(6));
+        filter.setMinBalance(new BigDecimal("50.00"));
+        filter.setMaxBalance(new BigDecimal("60.00"));
+        List<CardResponseDto> found = walk(filter);
+        assertEquals(3, found.size());
+        found.forEach(card -> assertEquals(alice.getUsername(), card.getOwnerUsername()));
+
+        filter = new CardSearchFilter();
+        filter.setOwnerUsername("nobody-" + UUID.randomUUID());
+        assertTrue(walk(filter).isEmpty());
+    }
+
+    @Test
+    void search_shouldPageByBalanceDescendingWithoutGapsOrDuplicates() {
+        CardSearchFilter filter = new CardSearchFilter();
+        filter.setOwnerId(alice.getId());
+        filter.setSort(CardSearchSort.BALANCE);
+        filter.setDirection(Sort.Direction.DESC);
+        filter.setSize(2);
+
+        List<CardResponseDto> cards = walk(filter);
+
+        assertEquals(5, cards.size());
+        assertEquals(5, cards.stream().map(CardResponseDto::getId).distinct().count());
+        for (int i = 1; i < cards.size(); i++) {
+            assertTrue(cards.get(i - 1).getBalance().compareTo(cards.get(i).getBalance()) >= 0);
+        }
+        assertEquals(0, new BigDecimal("500.00").compareTo(cards.get(0).getBalance()));
+    }
+
+    @Test
+    void search_shouldPageByExpirationDate() {
+        CardSearchFilter filter = new CardSearchFilter();
+        filter.setOwnerId(alice.getId());
+        filter.setSort(CardSearchSort.EXPIRATION_DATE);
+        filter.setSize(1);
+
+        List<CardResponseDto> cards = walk(filter);
+
+        assertEquals(5, cards.size());
+        for (int i = 1; i < cards.size(); i++) {
+            assertFalse(cards.get(i - 1).getExpirationDate().isAfter(cards.get(i).getExpirationDate()));
+        }
+    }
+
+    @Test
+    void search_cursorShouldBoundIndexScanBySortKey() {
+        CardSearchFilter filter = new CardSearchFilter();
+        filter.setOwnerId(alice.getId());
+        filter.setSort(CardSearchSort.BALANCE);
+        filter.setDirection(Sort.Direction.DESC);
+        filter.setSize(1);
+        filter.setCursor(cardService.searchCards(filter).getNextCursor());
+
+        SqlCapture.clear();
+        cardService.searchCards(filter);
+        String plan = SqlCapture.genericPlan(jdbcTemplate, SqlCapture.last("order by"));
+
+        // Без ведущего balance <= ? ключ курсора попадает только в Filter, и индекс читается с начала
+        assertTrue(plan.contains("Index Scan Backward using ix_cards_balance_id"), plan);
+        assertTrue(plan.matches("(?s).*Index Cond: \\(balance <= \\$\\d+\\).*"), plan);
+    }
+
+    @Test
+    void search_shouldRejectCursorFromAnotherSort() {
+        CardSearchFilter filter = new CardSearchFilter();
+        filter.setOwnerId(alice.getId());
+        filter.setSize(1);
+        String cursor = cardService.searchCards(filter).getNextCursor();
+
+        filter.setSort(CardSearchSort.BALANCE);
+        filter.setCursor(cursor);
+        assertThrows(CardOperationException.class, () -> cardService.searchCards(filter));
+    }
+
+    private List<CardResponseDto> walk(CardSearchFilter filter) {
+        List<CardResponseDto> all = new ArrayList<>();
+        filter.setCursor(null);
+        do {
+            CursorPageDto<CardResponseDto> page = cardService.searchCards(filter);
+            all.addAll(page.getItems());
+            filter.setCursor(page.getNextCursor());
+        } while (filter.getCursor() != null);
+        return all;
+    }
+
+    private void saveCard(User owner, CardStatus status, LocalDate expirationDate, String balance) {
+        cardRepository.save(card(owner)
+                .last4("1234")
+                .status(status)
+                .expirationDate(expirationDate)
+                .balance(new BigDecimal(balance))
+                .build());
+    }
+}
@@ -4,21 +4,30 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
 import org.springframework.data.domain.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 
 import ru.ildar.bankcards.dto.request.CardCreateDto;
 import ru.ildar.bankcards.dto.response.CardResponseDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
 import ru.ildar.bankcards.entity.*;
 import ru.ildar.bankcards.exception.CardOperationException;
 import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.repository.CardView;
 import ru.ildar.bankcards.repository.UserRepository;
 import ru.ildar.bankcards.util.CardNumberEncryptor;
+import ru.ildar.bankcards.security.UserPrincipal;
 import ru.ildar.bankcards.util.CardNumberMasker;
+import ru.ildar.bankcards.util.UuidOrder;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class CardServiceImplTest {
@@ -35,6 +44,15 @@ class CardServiceImplTest {
     @Mock
     private CardNumberMasker cardNumberMasker;
 
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private CardCountCache cardCountCache;
+
+    @Mock
+    private CardNumberAllocator cardNumberAllocator;
+
     @InjectMocks
     private CardServiceImpl cardService;
 
@@ -65,6 +83,8 @@ class CardServiceImplTest {
         // Но проще мокнуть cardNumberEncryptor и cardNumberMasker.
 
         // Мокируем шифрование и маскирование
+        when(cardNumberAllocator.defaultBin()).thenReturn("400000");
+        when(cardNumberAllocator.allocate("400000")).thenReturn("4000001234561234");
         when(cardNumberEncryptor.encrypt(anyString())).thenReturn("encryptedNumber");
         when(cardNumberMasker.mask(anyString())).thenReturn("**** **** **** 1234");
 
@@ -93,6 +113,7 @@ class CardServiceImplTest {
         verify(cardRepository).save(any(Card.class));
         verify(cardNumberEncryptor).encrypt(anyString());
         verify(cardNumberMasker).mask(anyString());
+        verify(ledgerService).recordOpening(savedCard.getId(), dto.getInitialBalance());
     }
 
     @Test
@@ -140,6 +161,30 @@ class CardServiceImplTest {
         verify(cardRepository).findById(cardId);
     }
 
+    @Test
+    void getCardById_shouldMaskByLast4WithoutDecrypting() {
+        UUID cardId = UUID.randomUUID();
+        User user = User.builder().id(UUID.randomUUID()).username("testuser").build();
+
+        Card card = Card.builder()
+                .id(cardId)
+                .encryptedNumber("encryptedNumber")
+                .last4("3456")
+                .owner(user)
+                .expirationDate(LocalDate.now().plusYears(1))
+                .status(CardStatus.ACTIVE)
+                .balance(new BigDecimal("500.00"))
+                .build();
+
+        when(cardRepository.findById(cardId)).thenReturn(Optional.of(card));
+        when(cardNumberMasker.maskLast4("3456")).thenReturn("**** **** **** 3456");
+
+        CardResponseDto dto = cardService.getCardById(cardId);
+
+        assertEquals("**** **** **** 3456", dto.getNumber());
+        verifyNoInteractions(cardNumberEncryptor);
+    }
+
     @Test
     void getCardById_shouldThrowExceptionIfNotFound() {
         UUID cardId = UUID.randomUUID();
@@ -276,30 +321,15 @@ class CardServiceImplTest {
         String username = "user";
         Pageable pageable = PageRequest.of(0, 2);
 
-        User user = User.builder().username(username).build();
-
-        Card card1 = Card.builder()
-                .id(UUID.randomUUID())
-                .encryptedNumber("encrypted1")
-                .owner(user)
-                .expirationDate(LocalDate.now().plusYears(1))
-                .status(CardStatus.ACTIVE)
-                .balance(new BigDecimal("100"))
-                .build();
-
-        Card card2 = Card.builder()
-                .id(UUID.randomUUID())
-                .encryptedNumber("encrypted2")
-                .owner(user)
-                .expirationDate(LocalDate.now().plusYears(2))
-                .status(CardStatus.BLOCKED)
-                .balance(new BigDecimal("200"))
-                .build();
+        CardView card1 = new CardView(UUID.randomUUID(), null, "encrypted1", username,
+                LocalDate.now().plusYears(1), CardStatus.ACTIVE, new BigDecimal("100"));
+        CardView card2 = new CardView(UUID.randomUUID(), null, "encrypted2", username,
+                LocalDate.now().plusYears(2), CardStatus.BLOCKED, new BigDecimal("200"));
 
-        List<Card> cards = List.of(card1, card2);
-        Page<Card> cardPage = new PageImpl<>(cards, pageable, cards.size());
+        List<CardView> cards = List.of(card1, card2);
+        Page<CardView> cardPage = new PageImpl<>(cards, pageable, cards.size());
 
-        when(cardRepository.findAllByOwnerUsername(username, pageable)).thenReturn(cardPage);
+        when(cardRepository.findViewsByOwnerUsername(username, pageable)).thenReturn(cardPage);
         when(cardNumberEncryptor.decrypt("encrypted1")).thenReturn("1234 5678 9012 3456");
         when(cardNumberEncryptor.decrypt("encrypted2")).thenReturn("2345 6789 0123 4567");
         when(cardNumberMasker.mask("1234 5678 9012 3456")).thenReturn("**** **** **** 3456");
@@ -310,13 +340,65 @@ class CardServiceImplTest {
         assertEquals(2, dtoPage.getTotalElements());
 
         CardResponseDto firstDto = dtoPage.getContent().get(0);
-        assertEquals(card1.getId(), firstDto.getId());
+        assertEquals(card1.id(), firstDto.getId());
         assertEquals("**** **** **** 3456", firstDto.getNumber());
+        assertEquals(username, firstDto.getOwnerUsername());
 
         CardResponseDto secondDto = dtoPage.getContent().get(1);
-        assertEquals(card2.getId(), secondDto.getId());
+        assertEquals(card2.id(), secondDto.getId());
         assertEquals("**** **** **** 4567", secondDto.getNumber());
 
-        verify(cardRepository).findAllByOwnerUsername(username, pageable);
+        verify(cardRepository).findViewsByOwnerUsername(username, pageable);
+    }
+
+    @Test
+    void getUserCardsSlice_shouldUseKeysetWithoutCountAndReturnCursor() {
+        UUID userId = UUID.randomUUID();
+        User user = User.builder().id(userId).username("user").build();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                UserPrincipal.create(userId, "user", Set.of(Role.ROLE_USER)), null, List.of()));
+
+        List<CardView> cards = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            cards.add(new CardView(new UUID(0, i + 1), "000" + i, "encrypted" + i, user.getUsername(),
+                    LocalDate.now().plusYears(1), CardStatus.ACTIVE, BigDecimal.TEN));
+        }
+        when(cardRepository.findViewsByOwnerIdAfter(eq(userId), any(UUID.class), eq(Limit.of(3))))
+                .thenReturn(cards);
+        when(cardNumberMasker.maskLast4(anyString())).thenReturn("**** **** **** 0000");
+
+        try {
+            CursorPageDto<CardResponseDto> first = cardService.getUserCardsSlice(null, 2, false);
+
+            assertEquals(2, first.getItems().size());
+            assertNotNull(first.getNextCursor());
+            assertNull(first.getApproximateTotal());
+            verify(cardRepository).findViewsByOwnerIdAfter(userId, UuidOrder.MIN, Limit.of(3));
+
+            // Следующая страница начинается после последней карты предыдущей
+            when(cardRepository.findViewsByOwnerIdAfter(userId, cards.get(1).id(), Limit.of(3)))
+                    .thenReturn(List.of(cards.get(2)));
+            when(cardCountCache.get(eq(userId), any())).thenReturn(3L);
+
+            CursorPageDto<CardResponseDto> second = cardService.getUserCardsSlice(first.getNextCursor(), 2, true);
+
+            assertEquals(1, second.getItems().size());
+            assertNull(second.getNextCursor());
+            assertEquals(3L, second.getApproximateTotal());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        verifyNoInteractions(userRepository, cardNumberEncryptor);
+    }
+
+    @Test
+    void getUserCardsSlice_shouldRejectMalformedCursor() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                UserPrincipal.create(UUID.randomUUID(), "user", Set.of(Role.ROLE_USER)), null, List.of()));
+        try {
+            assertThrows(CardOperationException.class, () -> cardService.getUserCardsSlice("not-a-cursor", 2, false));
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
     }
 }
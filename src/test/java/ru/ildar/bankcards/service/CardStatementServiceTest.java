@@ -0,0 +1,131 @@
+package ru.ildar.bankcards.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.dto.request.ExportFormat;
+import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.dto.response.CardTransactionDto;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.exception.CardOperationException;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keyset-пагинация выписки и потоковая выгрузка по журналу проводок.
+ */
+class CardStatementServiceTest extends AbstractPostgresIntegrationTest {
+
+    private static final int TRANSFERS = 25;
+
+    @Autowired
+    private CardStatementService cardStatementService;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private Card from;
+    private Card to;
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("statement-");
+        from = saveCard(user, "1000.00");
+        to = saveCard(user, "0.00");
+        ledgerService.recordOpening(from.getId(), from.getBalance());
+
+        for (int i = 1; i <= TRANSFERS; i++) {
+            TransferRequestDto dto = new TransferRequestDto();
+            dto.setFromCardId(from.getId());
+            dto.setToCardId(to.getId());
+            dto.setAmount(BigDecimal.valueOf(i));
+            transferService.transferBetweenCards(user.getId(), dto);
+        }
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                user.getUsername(), null, List.of(new SimpleGrantedAuthority(Role.ROLE_USER.name()))));
+    }
+
+    @AfterEach
+    void cleanup() {
+        SecurityContextHolder.clearContext();
+        jdbcTemplate.update("DELETE FROM ledger_entries WHERE card_id IN (?, ?)", from.getId(), to.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void getStatement_shouldWalkAllEntriesNewestFirstWithoutGapsOrDuplicates() {
+        List<CardTransactionDto> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPageDto<CardTransactionDto> page = cardStatementService.getStatement(from.getId(), cursor, 7);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // 25 списаний и начальный баланс
+        assertEquals(TRANSFERS + 1, all.size());
+        assertEquals(4, pages);
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getId() > all.get(i).getId(), "Порядок от новых к старым нарушен");
+        }
+        assertEquals(0, new BigDecimal(-TRANSFERS).compareTo(all.get(0).getAmount()));
+        assertEquals(to.getId(), all.get(0).getCounterpartyCardId());
+    }
+
+    @Test
+    void exportStatement_shouldStreamCsvInChronologicalOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardStatementService.exportStatement(to.getId(), ExportFormat.CSV, null, null).writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(TRANSFERS + 1, lines.length);
+        assertTrue(lines[0].startsWith("id,created_at"));
+        assertTrue(lines[1].endsWith(",TRANSFER,1.00"));
+        assertTrue(lines[TRANSFERS].endsWith(",TRANSFER," + TRANSFERS + ".00"));
+    }
+
+    @Test
+    void exportStatement_shouldStreamNdjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cardStatementService.exportStatement(from.getId(), ExportFormat.NDJSON, null, null).writeTo(out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(TRANSFERS + 1, lines.length);
+        assertTrue(lines[0].contains("\"type\":\"OPENING\""));
+    }
+
+    @Test
+    void getStatement_shouldRejectForeignCard() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "someone-else", null, List.of(new SimpleGrantedAuthority(Role.ROLE_USER.name()))));
+
+        assertThrows(CardOperationException.class, () -> cardStatementService.getStatement(from.getId(), null, 10));
+        assertThrows(CardOperationException.class,
+                () -> cardStatementService.exportStatement(from.getId(), ExportFormat.CSV, null, null));
+    }
+}
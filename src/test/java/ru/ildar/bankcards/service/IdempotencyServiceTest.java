@@ -0,0 +1,212 @@
+package ru.ildar.bankcards.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.entity.IdempotencyKey;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.exception.ErrorReason;
+import ru.ildar.bankcards.exception.IdempotencyConflictException;
+import ru.ildar.bankcards.exception.TransientOperationException;
+import ru.ildar.bankcards.repository.IdempotencyKeyRepository;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceTest {
+
+    @Mock
+    private IdempotencyKeyRepository repository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private IdempotencyService idempotencyService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        when(repository.claim(anyString(), anyString())).thenReturn(1);
+        idempotencyService = new IdempotencyService(repository, new TransactionTemplate(transactionManager),
+                objectMapper, 100, Duration.ofHours(1), Duration.ofSeconds(5), 3, 1);
+    }
+
+    @Test
+    void execute_shouldReplayStoredResultWithoutRunningActionAgain() {
+        TransferRequestDto dto = request("10.00");
+
+        ResponseEntity<?> first = idempotencyService.execute("key-1", dto, this::transfer);
+        ResponseEntity<?> second = idempotencyService.execute("key-1", dto, this::transfer);
+
+        assertEquals(1, executions.get());
+        assertEquals(200, first.getStatusCode().value());
+        assertEquals(200, second.getStatusCode().value());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        verify(repository).complete(anyString(), eq(200), isNull());
+    }
+
+    @Test
+    void execute_shouldRejectSameKeyWithDifferentBody() {
+        idempotencyService.execute("key-1", request("10.00"), this::transfer);
+
+        TransferRequestDto other = request("20.00");
+        assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute("key-1", other, this::transfer));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void execute_shouldReplayBusinessError() {
+        TransferRequestDto dto = request("10.00");
+        when(repository.saveIfAbsent(anyString(), anyString(), eq(400), anyString())).thenReturn(1);
+
+        assertThrows(CardOperationException.class, () -> idempotencyService.execute("key-1", dto, () -> {
+            executions.incrementAndGet();
+            throw new CardOperationException(ErrorReason.INSUFFICIENT_FUNDS, "Недостаточно средств на исходящей карте");
+        }));
+        ResponseEntity<?> replayed = idempotencyService.execute("key-1", dto, this::transfer);
+
+        assertEquals(1, executions.get());
+        assertEquals(400, replayed.getStatusCode().value());
+        assertTrue(replayed.getBody().toString().contains("Недостаточно средств"));
+    }
+
+    @Test
+    void execute_shouldRetryTransientFailureInNewTransaction() {
+        TransferRequestDto dto = request("10.00");
+
+        ResponseEntity<?> response = idempotencyService.execute("key-1", dto, () -> {
+            if (executions.incrementAndGet() == 1) {
+                throw conflict();
+            }
+            return ResponseEntity.ok().build();
+        });
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(2, executions.get());
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(transactionManager).rollback(any());
+        verify(repository, never()).saveIfAbsent(anyString(), anyString(), anyInt(), anyString());
+    }
+
+    @Test
+    void execute_shouldReleaseKeyWhenTransientFailuresPersist() {
+        TransferRequestDto dto = request("10.00");
+
+        assertThrows(TransientOperationException.class, () -> idempotencyService.execute("key-1", dto, () -> {
+            executions.incrementAndGet();
+            throw conflict();
+        }));
+        assertEquals(3, executions.get());
+        verify(repository, never()).saveIfAbsent(anyString(), anyString(), anyInt(), anyString());
+
+        // Отказ не запомнен: повтор с тем же ключом выполняет операцию
+        ResponseEntity<?> retried = idempotencyService.execute("key-1", dto, this::transfer);
+        assertEquals(200, retried.getStatusCode().value());
+        assertNull(retried.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(4, executions.get());
+    }
+
+    @Test
+    void execute_shouldReplayResultCommittedByAnotherNode() throws Exception {
+        TransferRequestDto dto = request("10.00");
+        // Ключ уже занят и выполнен другим узлом: вставка дождалась его коммита и ничего не вставила
+        when(repository.claim(anyString(), anyString())).thenReturn(0);
+        when(repository.findById(":key-1")).thenReturn(Optional.of(IdempotencyKey.builder()
+                .id(":key-1")
+                .requestHash(sha256(objectMapper.writeValueAsString(dto)))
+                .responseStatus(200)
+                .createdAt(Instant.now())
+                .build()));
+
+        ResponseEntity<?> replayed = idempotencyService.execute("key-1", dto, this::transfer);
+
+        assertEquals(0, executions.get());
+        assertEquals(200, replayed.getStatusCode().value());
+        assertEquals("true", replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    void execute_shouldMakeConcurrentDuplicateWaitForFirstRequest() throws Exception {
+        TransferRequestDto dto = request("10.00");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<?>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", dto, () -> {
+                    started.countDown();
+                    await(release);
+                    return transfer();
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<ResponseEntity<?>> duplicate = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("key-1", dto, this::transfer));
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone());
+
+        release.countDown();
+        assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatusCode().value());
+        assertEquals("true", duplicate.get(5, TimeUnit.SECONDS).getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(1, executions.get());
+        verify(repository, times(1)).claim(anyString(), anyString());
+    }
+
+    private ResponseEntity<?> transfer() {
+        executions.incrementAndGet();
+        return ResponseEntity.ok().build();
+    }
+
+    private static TransientOperationException conflict() {
+        return new TransientOperationException(ErrorReason.CONCURRENT_MODIFICATION,
+                "Карта изменена параллельной операцией, повторите перевод позже", null);
+    }
+
+    private static String sha256(String value) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static TransferRequestDto request(String amount) {
+        TransferRequestDto dto = new TransferRequestDto();
+        dto.setFromCardId(UUID.fromString("10000000-0000-0000-0000-000000000000"));
+        dto.setToCardId(UUID.fromString("20000000-0000-0000-0000-000000000000"));
+        dto.setAmount(new BigDecimal(amount));
+        return dto;
+    }
+}
@@ -0,0 +1,111 @@
+package ru.ildar.bankcards.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.repository.IdempotencyKeyRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Дубликаты одного запроса, пришедшие одновременно на два узла (два экземпляра сервиса
+ * со своими локальными кэшами), выполняют перевод ровно один раз.
+ */
+class IdempotentTransferTest extends AbstractPostgresIntegrationTest {
+
+    private static final int DUPLICATES = 40;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private User user;
+    private Card from;
+    private Card to;
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("idempotency-");
+        from = saveCard(user, "1000.00");
+        to = saveCard(user, "0.00");
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void concurrentDuplicatesOnTwoNodes_shouldTransferOnce() throws Exception {
+        List<IdempotencyService> nodes = List.of(node(), node());
+        TransferRequestDto dto = new TransferRequestDto();
+        dto.setFromCardId(from.getId());
+        dto.setToCardId(to.getId());
+        dto.setAmount(new BigDecimal("100.00"));
+        String key = UUID.randomUUID().toString();
+
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<ResponseEntity<?>>> responses = new ArrayList<>();
+
+        for (int i = 0; i < DUPLICATES; i++) {
+            IdempotencyService node = nodes.get(i % nodes.size());
+            responses.add(executor.submit(() -> {
+                start.await();
+                return node.execute(key, dto, () -> {
+                    executions.incrementAndGet();
+                    transferService.transferBetweenCards(user.getId(), dto);
+                    return ResponseEntity.ok().build();
+                });
+            }));
+        }
+        start.countDown();
+
+        for (Future<ResponseEntity<?>> response : responses) {
+            assertEquals(200, response.get().getStatusCode().value());
+        }
+        executor.shutdown();
+
+        assertEquals(1, executions.get());
+        assertEquals(0, new BigDecimal("900.00").compareTo(balance(from)));
+        assertEquals(0, new BigDecimal("100.00").compareTo(balance(to)));
+        assertTrue(idempotencyKeyRepository.findById(":" + key).isPresent());
+    }
+
+    private IdempotencyService node() {
+        return new IdempotencyService(idempotencyKeyRepository, transactionTemplate, objectMapper,
+                1000, Duration.ofHours(1), Duration.ofSeconds(30), 5, 10);
+    }
+
+    private BigDecimal balance(Card card) {
+        return cardRepository.findById(card.getId()).orElseThrow().getBalance();
+    }
+}
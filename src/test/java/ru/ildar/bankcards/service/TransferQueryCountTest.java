@@ -0,0 +1,165 @@
+package ru.ildar.bankcards.service;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.dto.request.BatchTransferMode;
+import ru.ildar.bankcards.dto.request.BatchTransferRequestDto;
+import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.dto.response.BatchTransferResponseDto;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.repository.TransferGuard;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Число SQL-запросов на перевод в каждом режиме и на пакет переводов, проверки атомарного запроса.
+ */
+@TestPropertySource(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                + "ru.ildar.bankcards.service.TransferQueryCountTest$CountingInspector")
+class TransferQueryCountTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+    private Card from;
+    private Card to;
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("query-count-");
+        from = saveCard(user, "100.00", CardStatus.ACTIVE);
+        to = saveCard(user, "0.00", CardStatus.ACTIVE);
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void atomic_shouldUseSingleStatement() {
+        assertEquals(1, countStatements(TransferLockingMode.ATOMIC));
+        assertBalances("90.00", "10.00");
+    }
+
+    @Test
+    void pessimistic_shouldUseSelectForUpdateAndBatchedUpdates() {
+        // Два SELECT ... FOR UPDATE и оба UPDATE одним JDBC-батчем
+        assertEquals(3, countStatements(TransferLockingMode.PESSIMISTIC));
+        assertBalances("90.00", "10.00");
+    }
+
+    @Test
+    void optimistic_shouldUseTwoSelectsAndBatchedVersionedUpdates() {
+        assertEquals(3, countStatements(TransferLockingMode.OPTIMISTIC));
+        assertBalances("90.00", "10.00");
+        assertEquals(1L, cardRepository.findById(from.getId()).orElseThrow().getVersion());
+    }
+
+    @Test
+    void batch_shouldLockOnceAndSendUpdatesAsOneJdbcBatch() {
+        List<Card> cards = new ArrayList<>(List.of(from, to));
+        for (int i = 0; i < 8; i++) {
+            cards.add(saveCard(user, "100.00", CardStatus.ACTIVE));
+        }
+        BatchTransferRequestDto dto = new BatchTransferRequestDto();
+        dto.setMode(BatchTransferMode.ALL_OR_NOTHING);
+        dto.setTransfers(new ArrayList<>());
+        // 100 переводов с первой карты на остальные девять
+        for (int i = 0; i < 100; i++) {
+            dto.getTransfers().add(transfer(from.getId(), cards.get(1 + i % 9).getId(), "1.00"));
+        }
+        TransferService transferService = new TransferServiceImpl(
+                cardRepository, userRepository, ledgerService, transactionTemplate, TransferLockingMode.ATOMIC, 3, 1);
+
+        CountingInspector.COUNT.set(0);
+        BatchTransferResponseDto response = transferService.transferBatch(user.getId(), dto);
+
+        assertTrue(response.isCommitted());
+        assertEquals(100, response.getApplied());
+        // Один SELECT ... FOR UPDATE на все карты и один подготовленный UPDATE на JDBC-батч из 10 строк
+        assertEquals(2, CountingInspector.COUNT.get());
+        assertBalances("0.00", "12.00");
+    }
+
+    @Test
+    void atomic_shouldReportGuardsAndLeaveBalancesUntouched() {
+        User stranger = saveUser("query-count-");
+        Card foreign = saveCard(stranger, "100.00", CardStatus.ACTIVE);
+        Card blocked = saveCard(user, "100.00", CardStatus.BLOCKED);
+
+        assertEquals(TransferGuard.INSUFFICIENT_FUNDS, guard(from.getId(), to.getId(), "100.01"));
+        assertEquals(TransferGuard.SOURCE_NOT_FOUND, guard(UUID.randomUUID(), to.getId(), "1.00"));
+        assertEquals(TransferGuard.TARGET_NOT_FOUND, guard(from.getId(), UUID.randomUUID(), "1.00"));
+        assertEquals(TransferGuard.NOT_OWNER, guard(from.getId(), foreign.getId(), "1.00"));
+        assertEquals(TransferGuard.SOURCE_NOT_ACTIVE, guard(blocked.getId(), to.getId(), "1.00"));
+        assertEquals(TransferGuard.TARGET_NOT_ACTIVE, guard(from.getId(), blocked.getId(), "1.00"));
+        assertBalances("100.00", "0.00");
+
+        userRepository.deleteById(stranger.getId());
+    }
+
+    private int countStatements(TransferLockingMode mode) {
+        TransferService transferService = new TransferServiceImpl(
+                cardRepository, userRepository, ledgerService, transactionTemplate, mode, 3, 1);
+
+        CountingInspector.COUNT.set(0);
+        transferService.transferBetweenCards(user.getId(), transfer(from.getId(), to.getId(), "10.00"));
+        return CountingInspector.COUNT.get();
+    }
+
+    private static TransferRequestDto transfer(UUID fromId, UUID toId, String amount) {
+        TransferRequestDto dto = new TransferRequestDto();
+        dto.setFromCardId(fromId);
+        dto.setToCardId(toId);
+        dto.setAmount(new BigDecimal(amount));
+        return dto;
+    }
+
+    private TransferGuard guard(UUID fromId, UUID toId, String amount) {
+        return TransferGuard.valueOf(
+                cardRepository.transferAtomically(fromId, toId, user.getId(), new BigDecimal(amount), UUID.randomUUID()));
+    }
+
+    private void assertBalances(String fromBalance, String toBalance) {
+        assertEquals(0, new BigDecimal(fromBalance).compareTo(
+                cardRepository.findById(from.getId()).orElseThrow().getBalance()));
+        assertEquals(0, new BigDecimal(toBalance).compareTo(
+                cardRepository.findById(to.getId()).orElseThrow().getBalance()));
+    }
+
+    private Card saveCard(User owner, String balance, CardStatus status) {
+        return cardRepository.save(card(owner).balance(new BigDecimal(balance)).status(status).build());
+    }
+
+    public static class CountingInspector implements StatementInspector {
+
+        static final AtomicInteger COUNT = new AtomicInteger();
+
+        @Override
+        public String inspect(String sql) {
+            COUNT.incrementAndGet();
+            return sql;
+        }
+    }
+}
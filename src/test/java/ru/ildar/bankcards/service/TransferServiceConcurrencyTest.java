@@ -0,0 +1,144 @@
+package ru.ildar.bankcards.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.repository.LedgerEntryRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сотни параллельных переводов между несколькими картами, в том числе встречных.
+ * Сумма балансов не должна меняться, балансы не уходят в минус, взаимных блокировок нет.
+ */
+class TransferServiceConcurrencyTest extends AbstractPostgresIntegrationTest {
+
+    private static final int CARDS = 6;
+    private static final int TRANSFERS = 600;
+    private static final int THREADS = 32;
+    private static final BigDecimal INITIAL_BALANCE = new BigDecimal("1000.00");
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+    private final List<UUID> cardIds = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        user = saveUser("stress-");
+
+        for (int i = 0; i < CARDS; i++) {
+            Card card = cardRepository.save(card(user).balance(INITIAL_BALANCE).build());
+            cardIds.add(card.getId());
+            ledgerService.recordOpening(card.getId(), INITIAL_BALANCE);
+        }
+    }
+
+    @AfterEach
+    void cleanup() {
+        UUID[] ids = cardIds.toArray(UUID[]::new);
+        jdbcTemplate.update("DELETE FROM card_balance_snapshots WHERE card_id = ANY(?)", (Object) ids);
+        jdbcTemplate.update("DELETE FROM ledger_entries WHERE card_id = ANY(?)", (Object) ids);
+        cardRepository.deleteAllById(cardIds);
+        userRepository.deleteById(user.getId());
+    }
+
+    @ParameterizedTest
+    @EnumSource(TransferLockingMode.class)
+    void parallelTransfers_shouldPreserveTotalBalance(TransferLockingMode mode) throws Exception {
+        TransferService transferService = new TransferServiceImpl(
+                cardRepository, userRepository, ledgerService, transactionTemplate, mode, 50, 5);
+
+        AtomicInteger succeeded = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (int i = 0; i < TRANSFERS; i++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int from = random.nextInt(CARDS);
+                int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+
+                TransferRequestDto dto = new TransferRequestDto();
+                dto.setFromCardId(cardIds.get(from));
+                dto.setToCardId(cardIds.get(to));
+                dto.setAmount(BigDecimal.valueOf(random.nextInt(1, 200)));
+
+                try {
+                    start.await();
+                    transferService.transferBetweenCards(user.getId(), dto);
+                    succeeded.incrementAndGet();
+                } catch (CardOperationException e) {
+                    // Недостаточно средств или исчерпаны повторы — допустимый отказ
+                } catch (Throwable e) {
+                    unexpected.add(e);
+                }
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES), "Переводы не завершились — возможна взаимная блокировка");
+
+        assertTrue(unexpected.isEmpty(), () -> "Неожиданные ошибки: " + unexpected);
+        assertTrue(succeeded.get() > 0);
+
+        List<Card> cards = cardRepository.findAllById(cardIds);
+        BigDecimal total = cards.stream().map(Card::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertEquals(0, INITIAL_BALANCE.multiply(BigDecimal.valueOf(CARDS)).compareTo(total));
+        cards.forEach(card -> assertTrue(card.getBalance().signum() >= 0));
+
+        // Журнал сходится с балансами и по полному хвосту, и после свёртки хвоста в снимок
+        assertLedgerMatches(cards);
+        ledgerEntryRepository.snapshot(cardIds);
+        assertLedgerMatches(cards);
+
+        // Каждый перевод — ровно две проводки с нулевой суммой
+        Integer unbalanced = jdbcTemplate.queryForObject("""
+                SELECT count(*) FROM (
+                    SELECT transfer_id FROM ledger_entries
+                    WHERE card_id = ANY(?) AND entry_type = 'TRANSFER'
+                    GROUP BY transfer_id
+                    HAVING count(*) <> 2 OR SUM(amount) <> 0
+                ) t
+                """, Integer.class, (Object) cardIds.toArray(UUID[]::new));
+        assertEquals(0, unbalanced);
+    }
+
+    private void assertLedgerMatches(List<Card> cards) {
+        cards.forEach(card -> assertEquals(0, card.getBalance().compareTo(ledgerService.derivedBalance(card.getId())),
+                () -> "Баланс по журналу не совпадает с балансом карты " + card.getId()));
+    }
+}
@@ -0,0 +1,214 @@
+package ru.ildar.bankcards.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.ildar.bankcards.dto.request.BatchTransferMode;
+import ru.ildar.bankcards.dto.request.BatchTransferRequestDto;
+import ru.ildar.bankcards.dto.request.TransferRequestDto;
+import ru.ildar.bankcards.dto.response.BatchTransferResponseDto;
+import ru.ildar.bankcards.dto.response.TransferLegStatus;
+import ru.ildar.bankcards.entity.Card;
+import ru.ildar.bankcards.entity.CardStatus;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.exception.CardOperationException;
+import ru.ildar.bankcards.repository.CardRepository;
+import ru.ildar.bankcards.repository.TransferGuard;
+import ru.ildar.bankcards.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TransferServiceImplTest {
+
+    // В порядке PostgreSQL LOW < HIGH, хотя UUID.compareTo считает иначе (старший бит — знак)
+    private static final UUID LOW = UUID.fromString("10000000-0000-0000-0000-000000000000");
+    private static final UUID HIGH = UUID.fromString("f0000000-0000-0000-0000-000000000000");
+
+    @Mock
+    private CardRepository cardRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final User user = User.builder().id(UUID.randomUUID()).username("testuser").build();
+
+    @BeforeEach
+    void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void atomic_shouldTransferWithSingleRepositoryCall() {
+        when(cardRepository.transferAtomically(eq(LOW), eq(HIGH), eq(user.getId()), eq(new BigDecimal("10.00")), any()))
+                .thenReturn(TransferGuard.OK.name());
+
+        service(TransferLockingMode.ATOMIC).transferBetweenCards(user.getId(), request(LOW, HIGH, "10.00"));
+
+        verify(cardRepository).transferAtomically(eq(LOW), eq(HIGH), eq(user.getId()), eq(new BigDecimal("10.00")), any());
+        verifyNoMoreInteractions(cardRepository);
+        // Проводки пишет сам SQL-запрос
+        verifyNoInteractions(userRepository, ledgerService);
+    }
+
+    @Test
+    void atomic_shouldReportFailedGuard() {
+        when(cardRepository.transferAtomically(any(), any(), any(), any(), any()))
+                .thenReturn(TransferGuard.INSUFFICIENT_FUNDS.name());
+
+        TransferService service = service(TransferLockingMode.ATOMIC);
+        TransferRequestDto dto = request(LOW, HIGH, "10.00");
+
+        CardOperationException ex = assertThrows(CardOperationException.class,
+                () -> service.transferBetweenCards(user.getId(), dto));
+        assertEquals(TransferGuard.INSUFFICIENT_FUNDS.getMessage(), ex.getMessage());
+    }
+
+    @Test
+    void pessimistic_shouldLockCardsInIdOrderRegardlessOfDirection() {
+        Card low = card(LOW, "100.00");
+        Card high = card(HIGH, "100.00");
+        when(cardRepository.findByIdForUpdate(LOW)).thenReturn(Optional.of(low));
+        when(cardRepository.findByIdForUpdate(HIGH)).thenReturn(Optional.of(high));
+
+        service(TransferLockingMode.PESSIMISTIC).transferBetweenCards(user.getId(), request(HIGH, LOW, "30.00"));
+
+        InOrder inOrder = inOrder(cardRepository);
+        inOrder.verify(cardRepository).findByIdForUpdate(LOW);
+        inOrder.verify(cardRepository).findByIdForUpdate(HIGH);
+        assertEquals(new BigDecimal("70.00"), high.getBalance());
+        assertEquals(new BigDecimal("130.00"), low.getBalance());
+    }
+
+    @Test
+    void optimistic_shouldRetryOnVersionConflict() {
+        Card low = card(LOW, "100.00");
+        Card high = card(HIGH, "100.00");
+        when(cardRepository.findById(LOW)).thenReturn(Optional.of(low));
+        when(cardRepository.findById(HIGH)).thenReturn(Optional.of(high));
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, LOW))
+                .doNothing()
+                .when(transactionManager).commit(any());
+
+        service(TransferLockingMode.OPTIMISTIC).transferBetweenCards(user.getId(), request(LOW, HIGH, "10.00"));
+
+        verify(transactionManager, times(2)).commit(any());
+        verify(cardRepository, never()).findByIdForUpdate(any());
+    }
+
+    @Test
+    void optimistic_shouldFailAfterMaxAttempts() {
+        when(cardRepository.findById(LOW)).thenReturn(Optional.of(card(LOW, "100.00")));
+        when(cardRepository.findById(HIGH)).thenReturn(Optional.of(card(HIGH, "100.00")));
+        doThrow(new ObjectOptimisticLockingFailureException(Card.class, LOW))
+                .when(transactionManager).commit(any());
+
+        TransferService service = service(TransferLockingMode.OPTIMISTIC);
+        TransferRequestDto dto = request(LOW, HIGH, "10.00");
+
+        assertThrows(CardOperationException.class, () -> service.transferBetweenCards(user.getId(), dto));
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    void batch_allOrNothing_shouldLeaveBalancesWhenAnyLegIsRejected() {
+        Card low = card(LOW, "100.00");
+        Card high = card(HIGH, "0.00");
+        when(cardRepository.findAllByIdInForUpdate(any())).thenReturn(List.of(low, high));
+
+        BatchTransferResponseDto response = service(TransferLockingMode.ATOMIC).transferBatch(user.getId(),
+                batch(BatchTransferMode.ALL_OR_NOTHING, request(LOW, HIGH, "60.00"), request(LOW, HIGH, "60.00")));
+
+        assertFalse(response.isCommitted());
+        assertEquals(0, response.getApplied());
+        assertEquals(TransferLegStatus.ROLLED_BACK, response.getResults().get(0).getStatus());
+        assertEquals(TransferLegStatus.REJECTED, response.getResults().get(1).getStatus());
+        assertEquals(TransferGuard.INSUFFICIENT_FUNDS.getMessage(), response.getResults().get(1).getError());
+        assertEquals(new BigDecimal("100.00"), low.getBalance());
+        assertEquals(new BigDecimal("0.00"), high.getBalance());
+    }
+
+    @Test
+    void batch_bestEffort_shouldApplyValidLegsUsingRunningBalances() {
+        Card low = card(LOW, "100.00");
+        Card high = card(HIGH, "0.00");
+        when(cardRepository.findAllByIdInForUpdate(any())).thenReturn(List.of(low, high));
+
+        BatchTransferResponseDto response = service(TransferLockingMode.ATOMIC).transferBatch(user.getId(),
+                batch(BatchTransferMode.BEST_EFFORT,
+                        request(LOW, HIGH, "60.00"),
+                        request(LOW, HIGH, "60.00"),
+                        // Средства, зачисленные первым переводом, уже доступны
+                        request(HIGH, LOW, "50.00"),
+                        request(LOW, UUID.randomUUID(), "1.00")));
+
+        assertTrue(response.isCommitted());
+        assertEquals(2, response.getApplied());
+        assertEquals(2, response.getRejected());
+        assertEquals(TransferLegStatus.REJECTED, response.getResults().get(3).getStatus());
+        assertEquals(TransferGuard.TARGET_NOT_FOUND.getMessage(), response.getResults().get(3).getError());
+        assertEquals(new BigDecimal("90.00"), low.getBalance());
+        assertEquals(new BigDecimal("10.00"), high.getBalance());
+        verify(cardRepository, times(1)).findAllByIdInForUpdate(any());
+    }
+
+    @Test
+    void transfer_shouldRejectSameCard() {
+        TransferService service = service(TransferLockingMode.PESSIMISTIC);
+        TransferRequestDto dto = request(LOW, LOW, "10.00");
+
+        assertThrows(CardOperationException.class, () -> service.transferBetweenCards(user.getId(), dto));
+        verifyNoInteractions(cardRepository);
+    }
+
+    private TransferService service(TransferLockingMode mode) {
+        return new TransferServiceImpl(cardRepository, userRepository, ledgerService, transactionTemplate, mode, 3, 1);
+    }
+
+    private Card card(UUID id, String balance) {
+        return Card.builder()
+                .id(id)
+                .owner(user)
+                .status(CardStatus.ACTIVE)
+                .balance(new BigDecimal(balance))
+                .build();
+    }
+
+    private static BatchTransferRequestDto batch(BatchTransferMode mode, TransferRequestDto... legs) {
+        BatchTransferRequestDto dto = new BatchTransferRequestDto();
+        dto.setMode(mode);
+        dto.setTransfers(List.of(legs));
+        return dto;
+    }
+
+    private static TransferRequestDto request(UUID from, UUID to, String amount) {
+        TransferRequestDto dto = new TransferRequestDto();
+        dto.setFromCardId(from);
+        dto.setToCardId(to);
+        dto.setAmount(new BigDecimal(amount));
+        return dto;
+    }
+}
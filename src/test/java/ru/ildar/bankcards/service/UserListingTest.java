@@ -0,0 +1,107 @@
+package ru.ildar.bankcards.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import ru.ildar.bankcards.AbstractPostgresIntegrationTest;
+import ru.ildar.bankcards.dto.request.ExportFormat;
+import ru.ildar.bankcards.dto.response.CursorPageDto;
+import ru.ildar.bankcards.dto.response.UserResponseDto;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Листинг пользователей страницами и потоковая выгрузка.
+ */
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class UserListingTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<User> users = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        String prefix = "ul-" + UUID.randomUUID().toString().substring(0, 8);
+        for (int i = 0; i < 5; i++) {
+            Set<Role> roles = i == 0 ? Set.of(Role.ROLE_USER, Role.ROLE_ADMIN) : Set.of(Role.ROLE_USER);
+            users.add(userRepository.save(User.builder()
+                    .username(prefix + "-" + i + (i == 1 ? ",\"quoted\"" : ""))
+                    .password("password")
+                    .email(UUID.randomUUID() + "@test.local")
+                    .roles(roles)
+                    .build()));
+        }
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteAllById(users.stream().map(User::getId).toList());
+    }
+
+    @Test
+    void listUsers_shouldPageWithTwoQueriesPerPage() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Map<UUID, UserResponseDto> seen = new HashMap<>();
+        String cursor = null;
+        int pages = 0;
+
+        statistics.clear();
+        do {
+            CursorPageDto<UserResponseDto> page = userService.listUsers(cursor, 2);
+            page.getItems().forEach(user -> assertNull(seen.put(user.getId(), user), "Пользователь на двух страницах"));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        // Пользователи и роли страницы — два запроса, сущности User не загружаются
+        assertEquals(2L * pages, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+        for (User user : users) {
+            UserResponseDto dto = seen.get(user.getId());
+            assertNotNull(dto);
+            assertEquals(user.getUsername(), dto.getUsername());
+            assertEquals(user.getRoles(), dto.getRoles());
+        }
+    }
+
+    @Test
+    void exportUsers_shouldStreamCsvAndNdjson() throws Exception {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        userService.exportUsers(ExportFormat.CSV).writeTo(csv);
+        String csvText = csv.toString(StandardCharsets.UTF_8);
+
+        assertTrue(csvText.startsWith("id,username,email,roles\n"));
+        assertTrue(csvText.contains(users.get(0).getId() + "," + users.get(0).getUsername() + ","));
+        assertTrue(csvText.contains("\"" + users.get(1).getUsername().replace("\"", "\"\"") + "\""));
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        userService.exportUsers(ExportFormat.NDJSON).writeTo(ndjson);
+        String admin = ndjson.toString(StandardCharsets.UTF_8).lines()
+                .filter(line -> line.contains(users.get(0).getId().toString()))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(admin.contains("ROLE_ADMIN") && admin.contains("ROLE_USER"));
+        assertFalse(admin.contains("password"));
+    }
+}
@@ -0,0 +1,74 @@
+package ru.ildar.bankcards.service;
+
+import org.junit.jupiter.api.Test;
+import ru.ildar.bankcards.entity.Role;
+import ru.ildar.bankcards.entity.User;
+import ru.ildar.bankcards.repository.UserRepository;
+import ru.ildar.bankcards.security.PrincipalCache;
+import ru.ildar.bankcards.security.TokenRevocationList;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Отзыв токенов при изменении данных, которые попадают в claims.
+ */
+class UserServiceImplTest {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final PrincipalCache principalCache = mock(PrincipalCache.class);
+    private final TokenRevocationList revocationList = mock(TokenRevocationList.class);
+    private final UserServiceImpl userService =
+            new UserServiceImpl(userRepository, principalCache, revocationList, mock(StreamingExporter.class));
+
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    void updateUser_shouldRevokeTokensWhenRolesChange() {
+        stubExisting(user("admin", Role.ROLE_USER, Role.ROLE_ADMIN));
+
+        userService.updateUser(user("admin", Role.ROLE_USER));
+
+        verify(revocationList).revoke(userId);
+    }
+
+    @Test
+    void updateUser_shouldRevokeTokensWhenUsernameChanges() {
+        stubExisting(user("alice", Role.ROLE_USER));
+
+        userService.updateUser(user("alice2", Role.ROLE_USER));
+
+        verify(revocationList).revoke(userId);
+        verify(principalCache).invalidate("alice");
+        verify(principalCache).invalidate("alice2");
+    }
+
+    @Test
+    void updateUser_shouldKeepTokensWhenClaimsAreUnchanged() {
+        stubExisting(user("alice", Role.ROLE_USER));
+
+        User updated = user("alice", Role.ROLE_USER);
+        updated.setEmail("new@test.local");
+        userService.updateUser(updated);
+
+        verify(revocationList, never()).revoke(any());
+    }
+
+    private void stubExisting(User existing) {
+        when(userRepository.findById(userId)).thenReturn(Optional.of(existing));
+        when(userRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    private User user(String username, Role... roles) {
+        return User.builder()
+                .id(userId)
+                .username(username)
+                .email(username + "@test.local")
+                .roles(Set.of(roles))
+                .build();
+    }
+}
@@ -0,0 +1,79 @@
+package ru.ildar.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CardNumberEncryptorTest {
+
+    private final CardNumberEncryptor encryptor = new CardNumberEncryptor("test-fingerprint-secret");
+
+    @Test
+    void encrypt_shouldUseRandomIvAndDecryptBack() {
+        String first = encryptor.encrypt("2200 7012 3456 7890");
+        String second = encryptor.encrypt("2200 7012 3456 7890");
+
+        assertNotEquals(first, second);
+        assertFalse(encryptor.isLegacy(first));
+        assertEquals("2200 7012 3456 7890", encryptor.decrypt(first));
+        assertEquals("2200 7012 3456 7890", encryptor.decrypt(second));
+    }
+
+    @Test
+    void decrypt_shouldReadLegacyFixedIvFormat() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec("1234567890123456".getBytes(), "AES"),
+                new GCMParameterSpec(128, new byte[12]));
+        String legacy = Base64.getEncoder().encodeToString(cipher.doFinal("1234 5678 9012 3456".getBytes()));
+
+        assertTrue(encryptor.isLegacy(legacy));
+        assertEquals("1234 5678 9012 3456", encryptor.decrypt(legacy));
+    }
+
+    @Test
+    void fingerprint_shouldBeDeterministicAndIgnoreSeparators() {
+        String fingerprint = encryptor.fingerprint("2200 7012 3456 7890");
+
+        assertEquals(64, fingerprint.length());
+        assertEquals(fingerprint, encryptor.fingerprint("2200701234567890"));
+        assertNotEquals(fingerprint, encryptor.fingerprint("2200701234567891"));
+        assertNotEquals(fingerprint, new CardNumberEncryptor("other-secret").fingerprint("2200701234567890"));
+    }
+
+    @Test
+    void pooledContexts_shouldServeMoreThreadsThanPoolSize() throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors() * 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads * 50; i++) {
+                String number = String.format("2200%012d", i);
+                results.add(executor.submit(() -> encryptor.decrypt(encryptor.encrypt(number))));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(String.format("2200%012d", i), results.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void decrypt_shouldKeepContextUsableAfterTamperedInput() {
+        String cipherText = encryptor.encrypt("2200701234567890");
+        String tampered = cipherText.substring(0, cipherText.length() - 2) + (cipherText.endsWith("A=") ? "B=" : "A=");
+
+        assertThrows(RuntimeException.class, () -> encryptor.decrypt(tampered));
+        assertEquals("2200701234567890", encryptor.decrypt(cipherText));
+    }
+}